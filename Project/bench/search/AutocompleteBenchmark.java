@@ -0,0 +1,109 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the memory footprint and the lookup latency of the autocomplete trie on a synthetic catalog.
+ * <p>
+ * Titles and authors are generated from a fixed vocabulary with a fixed seed, and sales follow a skewed
+ * distribution, so runs are comparable. The benchmark does not need a database. It lives in the
+ * {@code bench} source root, next to {@code src}, so it is not packaged with the application:
+ * </p>
+ * <pre>
+ * javac -d out -sourcepath src:bench bench/search/AutocompleteBenchmark.java
+ * java -cp out search.AutocompleteBenchmark [books] [lookups]
+ * </pre>
+ * It prints the retained heap of the trie, the build time and the p50, p90, p99 and maximum latency of
+ * top-10 lookups for prefixes of one to eight characters, taken from random titles and authors.
+ */
+
+public class AutocompleteBenchmark {
+
+    private static final String[] WORDS = {
+            "the", "of", "and", "a", "in", "night", "dark", "house", "war", "peace", "love", "time", "history",
+            "secret", "garden", "river", "city", "king", "queen", "shadow", "light", "winter", "summer", "stone",
+            "fire", "sea", "island", "road", "journey", "letters", "silence", "memory", "empire", "storm", "glass",
+            "mountain", "forest", "dream", "blood", "song", "book", "children", "world", "last", "first", "lost"
+    };
+    private static final String[] FIRST_NAMES = {
+            "Ana", "Ivan", "Marko", "Petra", "John", "Mary", "Elena", "Luka", "Sara", "Tomas", "Iris", "Karl"
+    };
+    private static final String[] LAST_NAMES = {
+            "Horvat", "Kovac", "Babic", "Smith", "Jones", "Novak", "Marin", "Weber", "Rossi", "Dubois", "Berg"
+    };
+
+    public static void main(String[] args) {
+        int bookCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int lookupCount = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        Random random = new Random(42);
+
+        List<String> texts = new ArrayList<>(bookCount);
+        long heapBefore = usedHeap();
+        long buildStart = System.nanoTime();
+        RadixTrie<Suggestion> trie = new RadixTrie<>();
+        for (int id = 1; id <= bookCount; id++) {
+            StringBuilder title = new StringBuilder();
+            int words = 1 + random.nextInt(5);
+            for (int w = 0; w < words; w++) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                title.append(w == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : " " + word);
+            }
+            title.append(' ').append(id);
+            int sold = (int) (1000 / Math.pow(1 + random.nextInt(1000), 1.2));
+            AutocompleteService.insert(trie, new Suggestion(Suggestion.Type.TITLE, title.toString(), id, sold + 1));
+            texts.add(title.toString());
+        }
+        for (String first : FIRST_NAMES) {
+            for (String last : LAST_NAMES) {
+                String author = first + " " + last;
+                AutocompleteService.insert(trie, new Suggestion(Suggestion.Type.AUTHOR, author, 0, random.nextInt(5000)));
+                texts.add(author);
+            }
+        }
+        double buildMillis = (System.nanoTime() - buildStart) / 1_000_000.0;
+        long heapAfter = usedHeap();
+
+        String[] prefixes = new String[lookupCount];
+        for (int i = 0; i < lookupCount; i++) {
+            List<String> keys = new ArrayList<>(AutocompleteService.keysOf(texts.get(random.nextInt(texts.size()))));
+            String key = keys.get(random.nextInt(keys.size()));
+            prefixes[i] = key.substring(0, Math.min(key.length(), 1 + random.nextInt(8)));
+        }
+
+        // Warm up the JIT before measuring.
+        for (int i = 0; i < Math.min(lookupCount, 50000); i++) {
+            trie.top(prefixes[i], 10);
+        }
+        long[] nanos = new long[lookupCount];
+        long found = 0;
+        for (int i = 0; i < lookupCount; i++) {
+            long start = System.nanoTime();
+            found += trie.top(prefixes[i], 10).size();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+
+        System.out.printf("books=%d keys=%d nodes=%d build=%.0fms retainedHeap=%.1fMB (%.0f bytes/book, including %d texts)%n",
+                bookCount, trie.size(), trie.nodeCount(), buildMillis, (heapAfter - heapBefore) / (1024.0 * 1024.0),
+                (heapAfter - heapBefore) / (double) bookCount, texts.size());
+        System.out.printf("lookups=%d avgResults=%.1f p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus%n",
+                lookupCount, found / (double) lookupCount, percentile(nanos, 0.50), percentile(nanos, 0.90),
+                percentile(nanos, 0.99), nanos[nanos.length - 1] / 1000.0);
+    }
+
+    private static double percentile(long[] sortedNanos, double percentile) {
+        int index = (int) Math.min(sortedNanos.length - 1, Math.ceil(percentile * sortedNanos.length) - 1);
+        return sortedNanos[Math.max(0, index)] / 1000.0;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,18 @@
+-- Change tracking for the books table, so in-memory copies of the catalog can be brought up to date by
+-- reading only the rows written since a watermark. Read by database.BookDAO#getBooksChangedSince.
+
+ALTER TABLE books
+    ADD COLUMN updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+    ADD INDEX idx_books_updated_at (updated_at);
+
+-- Deleted rows leave no updated_at behind, so deletions are recorded separately.
+CREATE TABLE IF NOT EXISTS book_deletions (
+    book_id    INT          NOT NULL,
+    deleted_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (book_id),
+    INDEX idx_book_deletions_deleted_at (deleted_at)
+);
+
+CREATE TRIGGER trg_books_deleted AFTER DELETE ON books FOR EACH ROW
+    INSERT INTO book_deletions (book_id) VALUES (OLD.id)
+    ON DUPLICATE KEY UPDATE deleted_at = CURRENT_TIMESTAMP(3);
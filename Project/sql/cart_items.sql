@@ -0,0 +1,13 @@
+-- Persistent shopping carts: one row per book in a user's cart.
+-- Written by database.CartDAO; restored on login with a single join against books.
+
+CREATE TABLE IF NOT EXISTS cart_items (
+    user_id    INT       NOT NULL,
+    book_id    INT       NOT NULL,
+    quantity   INT       NOT NULL,
+    added_at   TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, book_id),
+    CONSTRAINT fk_cart_items_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE,
+    CONSTRAINT fk_cart_items_book FOREIGN KEY (book_id) REFERENCES books (id) ON DELETE CASCADE
+);
@@ -1,9 +1,18 @@
+import catalog.CatalogStore;
+import database.CatalogSync;
 import view.LoginFrame;
 
 import javax.swing.*;
 
 public class Main {
     public static void main(String[] args) {
+        if (CatalogSync.isEnabled()) {
+            CatalogSync.getInstance();
+        }
+        if (CatalogStore.isEnabled()) {
+            // Start mapping the catalog snapshot while the login window is shown.
+            CatalogStore.getInstance();
+        }
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
@@ -0,0 +1,91 @@
+package catalog;
+
+import model.Book;
+import model.Category;
+import model.Language;
+
+/**
+ * A lightweight, read-only view of one row of a {@link ColumnarCatalog}, with the getters of {@link Book}.
+ * <p>
+ * A view holds no book data, only its catalog and row: every getter reads the columns, so numbers and enums
+ * cost no allocation and the view always shows the current stock and price. {@link #getTitle()} builds a
+ * new string from the title characters on each call. During scans one view is moved from row to row with
+ * {@link #moveTo(int)}; use {@link #toBook()} to keep a book beyond the scan.
+ * </p>
+ */
+
+public final class BookView {
+
+    private final ColumnarCatalog catalog;
+    private int row;
+
+    BookView(ColumnarCatalog catalog, int row) {
+        this.catalog = catalog;
+        this.row = row;
+    }
+
+    /**
+     * Positions the view on another row of the same catalog.
+     *
+     * @return This view.
+     */
+    public BookView moveTo(int row) {
+        this.row = row;
+        return this;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getId() {
+        return catalog.idAt(row);
+    }
+
+    public String getTitle() {
+        return catalog.titleAt(row);
+    }
+
+    public String getAuthor() {
+        return catalog.authorAt(row);
+    }
+
+    public double getPrice() {
+        return catalog.priceAt(row);
+    }
+
+    public int getQuantity() {
+        return catalog.quantityAt(row);
+    }
+
+    public boolean isInStock() {
+        return catalog.quantityAt(row) > 0;
+    }
+
+    public Language getLanguage() {
+        return catalog.languageAt(row);
+    }
+
+    public Category getCategory() {
+        return catalog.categoryAt(row);
+    }
+
+    /**
+     * @return true if the book was deleted after the view was positioned on it.
+     */
+    public boolean isDeleted() {
+        return catalog.isDeleted(row);
+    }
+
+    /**
+     * @return A standalone copy of the book.
+     */
+    public Book toBook() {
+        return new Book(getId(), getTitle(), getAuthor(), getPrice(), getQuantity(), getLanguage(), getCategory());
+    }
+
+    @Override
+    public String toString() {
+        return getTitle() + " - $" + getPrice();
+    }
+}
@@ -0,0 +1,324 @@
+package catalog;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.TreeMap;
+
+/**
+ * A versioned binary copy of a {@link ColumnarCatalog} on local disk, read through a memory mapping.
+ * <p>
+ * The file is the columns laid out one after another behind a fixed header, so every field of row {@code r}
+ * sits at a computable offset:
+ * </p>
+ * <pre>
+ * header   magic "BKCS", format version, watermark (long), rows, authors, title bytes, author bytes, reserved
+ * columns  ids int[rows] (ascending), title refs long[rows], author codes int[rows], prices double[rows],
+ *          quantities int[rows], categories byte[rows], languages byte[rows]
+ * strings  author refs long[authors], title bytes, author bytes (UTF-8; a ref packs offset and length)
+ * </pre>
+ * {@link #toCatalog()} copies the columns in bulk, one read per column, into the catalog that is served. The
+ * watermark records up to when the database had been read into the snapshot. Files of another format version
+ * are rejected.
+ * <p>
+ * Each {@link #write} creates a new file, {@code <path>.<n>} with the next version number {@code n}, and
+ * moves it into place atomically, so a reader never sees a half-written file and a file that is still mapped
+ * is never replaced, which some platforms refuse. Older versions are deleted after the new one is in place;
+ * one that cannot be deleted yet because it is still mapped is deleted by a later write.
+ * </p>
+ */
+
+public final class CatalogSnapshot {
+
+    private static final int MAGIC = 0x424B4353;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+
+    private final ByteBuffer buffer;
+    private final long watermark;
+    private final int rows;
+    private final int authorCount;
+    private final int titleByteCount;
+    private final int authorByteCount;
+
+    private CatalogSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a catalog snapshot.");
+        }
+        int version = buffer.getInt(4);
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported catalog snapshot version " + version + ".");
+        }
+        this.watermark = buffer.getLong(8);
+        this.rows = buffer.getInt(16);
+        this.authorCount = buffer.getInt(20);
+        this.titleByteCount = buffer.getInt(24);
+        this.authorByteCount = buffer.getInt(28);
+        if (buffer.capacity() != authorBytesOffset() + authorByteCount) {
+            throw new IOException("Truncated catalog snapshot.");
+        }
+    }
+
+    /**
+     * Maps a snapshot file into memory.
+     *
+     * @throws IOException If the file cannot be read or is not a snapshot of the current format.
+     */
+    public static CatalogSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new CatalogSnapshot(buffer);
+        }
+    }
+
+    /**
+     * Finds the newest snapshot written by {@link #write} for the given path.
+     *
+     * @return The file of the newest version, or null if there is none.
+     * @throws IOException If the directory cannot be listed.
+     */
+    public static Path latest(Path path) throws IOException {
+        TreeMap<Long, Path> versions = versions(path);
+        return versions.isEmpty() ? null : versions.lastEntry().getValue();
+    }
+
+    /**
+     * Writes the live rows of a catalog to a temporary file and moves it into place as the next version for
+     * {@code path}, then deletes the older versions. The catalog is locked against updates while it is written.
+     *
+     * @param watermark Up to when the database had been read into the catalog.
+     * @return The file written.
+     */
+    public static Path write(ColumnarCatalog catalog, Path path, long watermark) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        TreeMap<Long, Path> older = versions(path);
+        long version = older.isEmpty() ? 1 : older.lastKey() + 1;
+        Path target = path.resolveSibling(path.getFileName() + "." + version);
+        Path temp = path.resolveSibling(target.getFileName() + ".tmp");
+        synchronized (catalog) {
+            int rowCount = catalog.getRowCount();
+            int live = 0;
+            long titleBytes = 0;
+            for (int row = 0; row < rowCount; row++) {
+                if (!catalog.isDeleted(row)) {
+                    live++;
+                    titleBytes += Math.max(0, catalog.titleLengthAt(row));
+                }
+            }
+            byte[][] authors = new byte[catalog.authorCount()][];
+            long authorBytes = 0;
+            for (int code = 0; code < authors.length; code++) {
+                authors[code] = catalog.authorOf(code).getBytes(StandardCharsets.UTF_8);
+                authorBytes += authors[code].length;
+            }
+            if (titleBytes > Integer.MAX_VALUE || authorBytes > Integer.MAX_VALUE) {
+                throw new IOException("Catalog too large for a snapshot.");
+            }
+
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(watermark);
+                out.writeInt(live);
+                out.writeInt(authors.length);
+                out.writeInt((int) titleBytes);
+                out.writeInt((int) authorBytes);
+                out.writeLong(0);
+
+                for (int row = 0; row < rowCount; row++) {
+                    if (!catalog.isDeleted(row)) {
+                        out.writeInt(catalog.idAt(row));
+                    }
+                }
+                long offset = 0;
+                for (int row = 0; row < rowCount; row++) {
+                    if (!catalog.isDeleted(row)) {
+                        int length = catalog.titleLengthAt(row);
+                        out.writeLong(offset << 32 | (length & 0xFFFFFFFFL));
+                        offset += Math.max(0, length);
+                    }
+                }
+                for (int row = 0; row < rowCount; row++) {
+                    if (!catalog.isDeleted(row)) {
+                        out.writeInt(catalog.authorCodeAt(row));
+                    }
+                }
+                for (int row = 0; row < rowCount; row++) {
+                    if (!catalog.isDeleted(row)) {
+                        out.writeDouble(catalog.priceAt(row));
+                    }
+                }
+                for (int row = 0; row < rowCount; row++) {
+                    if (!catalog.isDeleted(row)) {
+                        out.writeInt(catalog.quantityAt(row));
+                    }
+                }
+                for (int row = 0; row < rowCount; row++) {
+                    if (!catalog.isDeleted(row)) {
+                        out.writeByte(code(catalog.categoryAt(row)));
+                    }
+                }
+                for (int row = 0; row < rowCount; row++) {
+                    if (!catalog.isDeleted(row)) {
+                        out.writeByte(code(catalog.languageAt(row)));
+                    }
+                }
+                offset = 0;
+                for (byte[] author : authors) {
+                    out.writeLong(offset << 32 | author.length);
+                    offset += author.length;
+                }
+                for (int row = 0; row < rowCount; row++) {
+                    if (!catalog.isDeleted(row)) {
+                        catalog.writeTitle(row, out);
+                    }
+                }
+                for (byte[] author : authors) {
+                    out.write(author);
+                }
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+
+        for (Path file : older.values()) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // Still mapped by a reader; the next write tries again.
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Lists the versions written for a path, by version number.
+     */
+    private static TreeMap<Long, Path> versions(Path path) throws IOException {
+        TreeMap<Long, Path> versions = new TreeMap<>();
+        Path directory = path.toAbsolutePath().getParent();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return versions;
+        }
+        String prefix = path.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(prefix) && name.length() > prefix.length()
+                        && name.substring(prefix.length()).chars().allMatch(Character::isDigit)) {
+                    try {
+                        versions.put(Long.parseLong(name.substring(prefix.length())), file);
+                    } catch (NumberFormatException e) {
+                        // Not a version number after all.
+                    }
+                }
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * @return Up to when the database had been read into this snapshot, as recorded by {@link #write}.
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    /**
+     * Copies the whole snapshot into a new in-memory catalog, one bulk read per column.
+     */
+    public ColumnarCatalog toCatalog() {
+        int capacity = Math.max(rows, 16);
+        int[] ids = new int[capacity];
+        long[] titleRefs = new long[capacity];
+        int[] authorCodes = new int[capacity];
+        double[] prices = new double[capacity];
+        int[] quantities = new int[capacity];
+        byte[] categories = new byte[capacity];
+        byte[] languages = new byte[capacity];
+        byte[] titles = new byte[titleByteCount];
+
+        buffer.duplicate().position(HEADER_SIZE).slice().asIntBuffer().get(ids, 0, rows);
+        buffer.duplicate().position(titleRefsOffset()).slice().asLongBuffer().get(titleRefs, 0, rows);
+        buffer.duplicate().position(authorsOffset()).slice().asIntBuffer().get(authorCodes, 0, rows);
+        buffer.duplicate().position(pricesOffset()).slice().asDoubleBuffer().get(prices, 0, rows);
+        buffer.duplicate().position(quantitiesOffset()).slice().asIntBuffer().get(quantities, 0, rows);
+        buffer.duplicate().position(categoriesOffset()).get(categories, 0, rows);
+        buffer.duplicate().position(languagesOffset()).get(languages, 0, rows);
+        buffer.duplicate().position(titleBytesOffset()).get(titles, 0, titleByteCount);
+
+        String[] authors = new String[authorCount];
+        for (int code = 0; code < authorCount; code++) {
+            authors[code] = author(code);
+        }
+        return new ColumnarCatalog(rows, ids, titleRefs, titles, authorCodes, authors, prices, quantities,
+                categories, languages);
+    }
+
+    private String author(int code) {
+        long ref = buffer.getLong(authorRefsOffset() + code * 8);
+        return string(authorBytesOffset() + (int) (ref >>> 32), (int) ref);
+    }
+
+    private String string(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.duplicate().position(offset).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte code(Enum<?> value) {
+        return value == null ? -1 : (byte) value.ordinal();
+    }
+
+    private int titleRefsOffset() {
+        return HEADER_SIZE + rows * 4;
+    }
+
+    private int authorsOffset() {
+        return titleRefsOffset() + rows * 8;
+    }
+
+    private int pricesOffset() {
+        return authorsOffset() + rows * 4;
+    }
+
+    private int quantitiesOffset() {
+        return pricesOffset() + rows * 8;
+    }
+
+    private int categoriesOffset() {
+        return quantitiesOffset() + rows * 4;
+    }
+
+    private int languagesOffset() {
+        return categoriesOffset() + rows;
+    }
+
+    private int authorRefsOffset() {
+        return languagesOffset() + rows;
+    }
+
+    private int titleBytesOffset() {
+        return authorRefsOffset() + authorCount * 8;
+    }
+
+    private int authorBytesOffset() {
+        return titleBytesOffset() + titleByteCount;
+    }
+}
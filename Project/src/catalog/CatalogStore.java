@@ -0,0 +1,360 @@
+package catalog;
+
+import database.BookDAO;
+import database.CatalogCache;
+import database.CatalogChanges;
+import database.CatalogSync;
+import database.DatabaseConnectionManager;
+import event.CatalogChangeEvent;
+import event.CatalogChangeListener;
+import model.Book;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a {@link ColumnarCatalog} of the whole catalog in memory for scans that should not build one
+ * {@link Book} per row, and persists it as a {@link CatalogSnapshot} so the next start does not wait for the
+ * database.
+ * <p>
+ * On start the store maps the newest snapshot written for {@code catalog.snapshot.path}, if there is one, and
+ * is ready as soon as its columns are copied; it then reconciles with the database in the background by
+ * applying the books written and deleted since the snapshot's watermark. Where the books table has no change tracking, one
+ * narrow query refreshes prices and stock and drops deleted books instead, and the books added since the
+ * snapshot's highest id are appended. Without a usable snapshot the catalog is streamed from the database.
+ * Either way the database time at which it was read is kept as the watermark of the next snapshot.
+ * </p>
+ * Afterwards the store follows the {@link CatalogChangeEvent}s of the {@link CatalogCache} like the search
+ * services: loaded books overwrite their row, books whose stock was written are re-read in one batched query,
+ * added books are fetched by id and appended, and a reset reloads everything. Changes are saved to the
+ * snapshot every {@code catalog.snapshot.saveIntervalMillis}. All of this runs on the "catalog-columns"
+ * thread; until a catalog is available, {@link #isReady()} is false and callers fall back to {@link Book}
+ * lists. The store is enabled with {@code catalog.columnar.enabled}.
+ *
+ * @see controller.BookController
+ */
+
+public class CatalogStore implements CatalogChangeListener {
+
+    private static final int CATCH_UP_PAGE_SIZE = 1000;
+
+    private static CatalogStore instance;
+
+    private volatile ColumnarCatalog catalog = new ColumnarCatalog();
+    private volatile boolean ready;
+    private volatile long watermark;
+    private final Path snapshotPath;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final ScheduledExecutorService maintainer;
+    private final Set<Integer> stale = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong snapshotSaves = new AtomicLong();
+    private volatile long lastLoadMillis;
+    private volatile boolean loadedFromSnapshot;
+
+    private CatalogStore() {
+        DatabaseConnectionManager config = DatabaseConnectionManager.getInstance();
+        String path = config.getProperty("catalog.snapshot.path", "catalog/catalog.snapshot");
+        this.snapshotPath = path == null || path.isBlank() ? null : Paths.get(path);
+        long saveInterval = Math.max(1000, config.getLongProperty("catalog.snapshot.saveIntervalMillis", 60000));
+        this.maintainer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "catalog-columns");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CatalogCache.getInstance().addCatalogChangeListener(this);
+        maintainer.execute(this::start);
+        maintainer.scheduleWithFixedDelay(this::saveIfChanged, saveInterval, saveInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return true if {@code catalog.columnar.enabled} is set.
+     */
+    public static boolean isEnabled() {
+        return DatabaseConnectionManager.getInstance().getBooleanProperty("catalog.columnar.enabled", true);
+    }
+
+    public static synchronized CatalogStore getInstance() {
+        if (instance == null) {
+            instance = new CatalogStore();
+        }
+        return instance;
+    }
+
+    /**
+     * @return true once the catalog has been loaded from the database.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return The current catalog. A reload replaces it, so callers should not hold on to it for long.
+     */
+    public ColumnarCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * @return When the database was last read in full or reconciled with, in milliseconds since the epoch by
+     *         the database clock; 0 before that has happened.
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    @Override
+    public void catalogChanged(CatalogChangeEvent event) {
+        switch (event.getType()) {
+            case LOADED:
+                List<Book> books = new ArrayList<>(event.getBooks());
+                maintainer.execute(() -> putBooks(books));
+                break;
+            case INVALIDATED:
+                stale.addAll(event.getBookIds());
+                if (refreshScheduled.compareAndSet(false, true)) {
+                    maintainer.execute(this::refreshStale);
+                }
+                break;
+            case DELETED:
+                List<Integer> deleted = new ArrayList<>(event.getBookIds());
+                maintainer.execute(() -> removeBooks(deleted));
+                break;
+            case ADDED:
+                maintainer.execute(this::catchUp);
+                break;
+            case RESET:
+                maintainer.execute(this::reload);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Serves the snapshot from disk if there is a usable one and reconciles it, or loads from the database.
+     */
+    private void start() {
+        if (snapshotPath != null) {
+            try {
+                long start = System.currentTimeMillis();
+                Path latest = CatalogSnapshot.latest(snapshotPath);
+                if (latest != null) {
+                    CatalogSnapshot snapshot = CatalogSnapshot.open(latest);
+                    catalog = snapshot.toCatalog();
+                    watermark = snapshot.getWatermark();
+                    loadedFromSnapshot = true;
+                    ready = true;
+                    lastLoadMillis = System.currentTimeMillis() - start;
+                    System.out.println("Columnar catalog mapped from " + latest + ": " + catalog.size() + " books in "
+                            + lastLoadMillis + " ms");
+                    reconcile();
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                // A damaged or outdated snapshot is replaced by the next save.
+                e.printStackTrace();
+            }
+        }
+        reload();
+    }
+
+    /**
+     * Brings a catalog restored from disk up to date with the changes since its watermark, or with a full
+     * price and stock scan when the books table has no change tracking.
+     */
+    private void reconcile() {
+        CatalogChanges changes = watermark > 0 && CatalogSync.isChangeTrackingAvailable()
+                ? BookDAO.getBooksChangedSince(watermark - CatalogSync.getOverlapMillis()) : null;
+        if (changes == null) {
+            reconcileAll();
+            return;
+        }
+        ColumnarCatalog current = catalog;
+        for (Book book : changes.getBooks()) {
+            if (!current.accepts(book.getId())) {
+                reload();
+                return;
+            }
+            current.put(book);
+        }
+        for (Integer id : changes.getDeletedIds()) {
+            current.remove(id);
+        }
+        System.out.println("Columnar catalog reconciled: " + changes.getBooks().size() + " changed, "
+                + changes.getDeletedIds().size() + " deleted since the snapshot");
+        watermark = changes.getWatermark();
+        save();
+    }
+
+    /**
+     * Reconciles without change tracking: refreshes prices and stock in one narrow query, drops the books
+     * that no longer exist and appends the books added since the snapshot.
+     */
+    private void reconcileAll() {
+        long started = databaseTime();
+        ColumnarCatalog current = catalog;
+        BitSet seen = new BitSet(current.getRowCount());
+        List<Integer> unknown = BookDAO.readPricesAndStockInto(current, seen);
+        if (unknown == null) {
+            return;
+        }
+        for (int row = seen.nextClearBit(0); row < current.getRowCount(); row = seen.nextClearBit(row + 1)) {
+            current.remove(current.idAt(row));
+        }
+        int maxBookId = current.getMaxBookId();
+        for (Integer id : unknown) {
+            if (id < maxBookId) {
+                // Rows follow the ids, so a book below the highest stored id means starting over.
+                reload();
+                return;
+            }
+        }
+        catchUp();
+        watermark = started;
+        save();
+    }
+
+    /**
+     * Streams a new catalog from the database and swaps it in; readers keep using the old one meanwhile.
+     */
+    private void reload() {
+        long start = System.currentTimeMillis();
+        long readAt = databaseTime();
+        ColumnarCatalog loaded = new ColumnarCatalog();
+        if (!BookDAO.readAllBooksInto(loaded)) {
+            return;
+        }
+        catalog = loaded;
+        watermark = readAt;
+        ready = true;
+        loadedFromSnapshot = false;
+        loads.incrementAndGet();
+        lastLoadMillis = System.currentTimeMillis() - start;
+        System.out.println("Columnar catalog loaded: " + loaded.size() + " books, " + loaded.getDistinctAuthorCount()
+                + " authors in " + lastLoadMillis + " ms");
+        save();
+    }
+
+    /**
+     * @return The database time, or the time of this machine if the database clock cannot be read.
+     */
+    private static long databaseTime() {
+        long time = BookDAO.getDatabaseTime();
+        return time > 0 ? time : System.currentTimeMillis();
+    }
+
+    private void saveIfChanged() {
+        if (dirty.get() && watermark != 0) {
+            save();
+        }
+    }
+
+    /**
+     * Writes the catalog to the snapshot file.
+     */
+    private void save() {
+        if (snapshotPath == null) {
+            return;
+        }
+        dirty.set(false);
+        try {
+            CatalogSnapshot.write(catalog, snapshotPath, watermark);
+            snapshotSaves.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            dirty.set(true);
+            e.printStackTrace();
+        }
+    }
+
+    private void putBooks(List<Book> books) {
+        ColumnarCatalog current = catalog;
+        for (Book book : books) {
+            if (!current.accepts(book.getId())) {
+                // Rows follow the ids, so a book below the highest stored id means starting over.
+                reload();
+                return;
+            }
+            if (current.put(book)) {
+                dirty.set(true);
+            }
+        }
+    }
+
+    /**
+     * Re-reads the books written since the last refresh through the cache, which publishes them as loaded.
+     */
+    private void refreshStale() {
+        refreshScheduled.set(false);
+        List<Integer> ids = new ArrayList<>(stale);
+        stale.removeAll(ids);
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            List<Integer> missing = new ArrayList<>(ids);
+            missing.removeAll(CatalogCache.getInstance().getBooks(ids).keySet());
+            removeBooks(missing);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void removeBooks(List<Integer> ids) {
+        ColumnarCatalog current = catalog;
+        for (Integer id : ids) {
+            if (current.remove(id)) {
+                dirty.set(true);
+            }
+        }
+    }
+
+    private void catchUp() {
+        List<Book> page;
+        do {
+            page = BookDAO.getBooksAfterId(catalog.getMaxBookId(), CATCH_UP_PAGE_SIZE);
+            putBooks(page);
+        } while (page.size() == CATCH_UP_PAGE_SIZE);
+    }
+
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    public long getLastLoadMillis() {
+        return lastLoadMillis;
+    }
+
+    /**
+     * @return true if the current catalog was restored from the snapshot rather than loaded from the database.
+     */
+    public boolean isLoadedFromSnapshot() {
+        return loadedFromSnapshot;
+    }
+
+    public long getSnapshotSaveCount() {
+        return snapshotSaves.get();
+    }
+
+    @Override
+    public String toString() {
+        ColumnarCatalog current = catalog;
+        return String.format("CatalogStore[ready=%b, fromSnapshot=%b, books=%d, authors=%d, titleBytes=%d, loads=%d, "
+                        + "lastLoad=%dms, snapshotSaves=%d]",
+                isReady(), isLoadedFromSnapshot(), current.size(), current.getDistinctAuthorCount(),
+                current.getTitleByteCount(), getLoadCount(), getLastLoadMillis(), getSnapshotSaveCount());
+    }
+}
@@ -0,0 +1,394 @@
+package catalog;
+
+import model.Book;
+import model.Category;
+import model.Language;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A read-optimized copy of the catalog that keeps every field of the books in its own primitive array instead
+ * of one {@link Book} object per row.
+ * <p>
+ * Rows are ordered by book id: ids are an {@code int[]}, prices a {@code double[]}, quantities an
+ * {@code int[]}, and categories and languages {@code byte[]} enum codes. Titles are stored back to back as
+ * UTF-8 in one shared {@code byte[]} and addressed by a packed offset and length per row; authors, which
+ * repeat across books, are deduplicated in a {@link StringPool} and stored as codes. A row costs 31 bytes
+ * plus its title bytes, against three objects and two arrays per {@link Book}.
+ * </p>
+ * Scans and filters walk the columns with one reusable {@link BookView} and allocate nothing per row.
+ * <p>
+ * There is a single writer at a time ({@code put} and {@code remove} are synchronized) and any number of
+ * lock-free readers. Columns only grow, by replacing the array, and an update writes each field of a row with
+ * one array store, so readers always see a valid value of every field, though a row being updated may show
+ * some old and some new fields. Books can only be appended in id order; see {@link #accepts(int)}.
+ * </p>
+ *
+ * @see CatalogStore
+ */
+
+public class ColumnarCatalog {
+
+    private static final Category[] CATEGORIES = Category.values();
+    private static final Language[] LANGUAGES = Language.values();
+    private static final byte NONE = -1;
+
+    private volatile int[] ids = new int[1024];
+    private volatile long[] titleRefs = new long[1024];
+    private volatile int[] authors = new int[1024];
+    private volatile double[] prices = new double[1024];
+    private volatile int[] quantities = new int[1024];
+    private volatile byte[] categories = new byte[1024];
+    private volatile byte[] languages = new byte[1024];
+    private volatile boolean[] deleted = new boolean[1024];
+    private volatile byte[] titleBytes = new byte[16384];
+    private final StringPool authorPool = new StringPool();
+    private volatile int rowCount;
+    private int titleByteCount;
+    private int liveCount;
+
+    public ColumnarCatalog() {
+    }
+
+    /**
+     * Adopts columns read in bulk, for example from a {@link CatalogSnapshot}. The arrays are not copied and
+     * must hold {@code rows} live rows in id order; author codes index {@code authorStrings}.
+     */
+    ColumnarCatalog(int rows, int[] ids, long[] titleRefs, byte[] titleBytes, int[] authors, String[] authorStrings,
+                    double[] prices, int[] quantities, byte[] categories, byte[] languages) {
+        for (String author : authorStrings) {
+            authorPool.intern(author);
+        }
+        this.ids = ids;
+        this.titleRefs = titleRefs;
+        this.titleBytes = titleBytes;
+        this.titleByteCount = titleBytes.length;
+        this.authors = authors;
+        this.prices = prices;
+        this.quantities = quantities;
+        this.categories = categories;
+        this.languages = languages;
+        this.deleted = new boolean[ids.length];
+        this.liveCount = rows;
+        this.rowCount = rows;
+    }
+
+    /**
+     * @return false if the book is not stored and its id is lower than the highest stored id, so it cannot be
+     *         appended in id order.
+     */
+    public boolean accepts(int bookId) {
+        int rows = rowCount;
+        return rows == 0 || bookId > ids[rows - 1] || rowOf(bookId) >= 0;
+    }
+
+    /**
+     * Appends a book or overwrites the row of a stored one. The book must be {@linkplain #accepts accepted}.
+     *
+     * @return true if any field changed.
+     * @throws IllegalArgumentException If the book would have to be inserted before the last row.
+     */
+    public boolean put(Book book) {
+        return put(book.getId(), book.getTitle(), book.getAuthor(), book.getPrice(), book.getQuantity(),
+                book.getLanguage(), book.getCategory());
+    }
+
+    /**
+     * Appends or overwrites a row from its fields, for loaders that read them without building a {@link Book}.
+     *
+     * @see #put(Book)
+     */
+    public synchronized boolean put(int id, String title, String author, double price, int quantity,
+                                    Language language, Category category) {
+        int row = rowOf(id);
+        if (row < 0) {
+            if (rowCount > 0 && id < ids[rowCount - 1]) {
+                throw new IllegalArgumentException("Book " + id + " is below the highest stored id.");
+            }
+            ensureRowCapacity(rowCount + 1);
+            row = rowCount;
+            ids[row] = id;
+            titleRefs[row] = appendTitle(title);
+            writeFields(row, author, price, quantity, language, category);
+            liveCount++;
+            rowCount = row + 1;
+            return true;
+        }
+
+        boolean changed = deleted[row];
+        if (deleted[row]) {
+            deleted[row] = false;
+            liveCount++;
+        }
+        if (!equalsTitle(row, title)) {
+            titleRefs[row] = appendTitle(title);
+            changed = true;
+        }
+        changed |= !Objects.equals(authorPool.get(authors[row]), author) || prices[row] != price
+                || quantities[row] != quantity || languages[row] != code(language) || categories[row] != code(category);
+        writeFields(row, author, price, quantity, language, category);
+        return changed;
+    }
+
+    /**
+     * Overwrites the price and stock of a stored row, for reconciling with the database column by column.
+     *
+     * @return true if either changed.
+     */
+    public synchronized boolean updatePriceAndStock(int row, double price, int quantity) {
+        boolean changed = prices[row] != price || quantities[row] != quantity;
+        prices[row] = price;
+        quantities[row] = quantity;
+        return changed;
+    }
+
+    /**
+     * Marks a book as deleted; its row stays in place and is skipped by scans.
+     *
+     * @return true if the book was stored.
+     */
+    public synchronized boolean remove(int bookId) {
+        int row = rowOf(bookId);
+        if (row < 0 || deleted[row]) {
+            return false;
+        }
+        deleted[row] = true;
+        liveCount--;
+        return true;
+    }
+
+    /**
+     * @return The row of a book, or a negative number if it is not stored.
+     */
+    public int rowOf(int bookId) {
+        return Arrays.binarySearch(ids, 0, rowCount, bookId);
+    }
+
+    /**
+     * Returns a view positioned on a book. The view reads the columns, so it reflects later updates of the book.
+     *
+     * @return The view, or null if the book is not stored or deleted.
+     */
+    public BookView view(int bookId) {
+        int row = rowOf(bookId);
+        return row < 0 || deleted[row] ? null : new BookView(this, row);
+    }
+
+    /**
+     * @return A view positioned on a row, for example one returned by {@link #filter}.
+     */
+    public BookView viewAt(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rowCount);
+        }
+        return new BookView(this, row);
+    }
+
+    /**
+     * Visits the stored books in id order with a single view that is moved from row to row; the view must not
+     * be kept after {@code action} returns.
+     *
+     * @param filter Which books to visit, tested against the same view; null visits all.
+     * @param action What to do with every visited book.
+     * @return The number of visited books.
+     */
+    public int scan(Predicate<BookView> filter, Consumer<BookView> action) {
+        BookView view = new BookView(this, 0);
+        int rows = rowCount;
+        int visited = 0;
+        for (int row = 0; row < rows; row++) {
+            if (deleted[row]) {
+                continue;
+            }
+            view.moveTo(row);
+            if (filter == null || filter.test(view)) {
+                action.accept(view);
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * @return The rows of the stored books that pass the filter, in id order.
+     */
+    public int[] filter(Predicate<BookView> filter) {
+        BookView view = new BookView(this, 0);
+        int rows = rowCount;
+        int[] matches = new int[Math.min(rows, 1024)];
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            if (deleted[row] || !filter.test(view.moveTo(row))) {
+                continue;
+            }
+            if (count == matches.length) {
+                matches = Arrays.copyOf(matches, count * 2);
+            }
+            matches[count++] = row;
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * @return The number of stored books, not counting deleted ones.
+     */
+    public synchronized int size() {
+        return liveCount;
+    }
+
+    /**
+     * @return The number of rows, including deleted ones; rows are numbered from 0.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return The highest book id ever stored, or 0 if the catalog is empty.
+     */
+    public int getMaxBookId() {
+        int rows = rowCount;
+        return rows == 0 ? 0 : ids[rows - 1];
+    }
+
+    public synchronized int getDistinctAuthorCount() {
+        return authorPool.size();
+    }
+
+    /**
+     * @return The size of the title pool in bytes, including titles that were replaced.
+     */
+    public synchronized int getTitleByteCount() {
+        return titleByteCount;
+    }
+
+    int idAt(int row) {
+        return ids[row];
+    }
+
+    String titleAt(int row) {
+        long ref = titleRefs[row];
+        int length = (int) ref;
+        return length < 0 ? null : new String(titleBytes, (int) (ref >>> 32), length, StandardCharsets.UTF_8);
+    }
+
+    String authorAt(int row) {
+        return authorPool.get(authors[row]);
+    }
+
+    double priceAt(int row) {
+        return prices[row];
+    }
+
+    int quantityAt(int row) {
+        return quantities[row];
+    }
+
+    Category categoryAt(int row) {
+        byte value = categories[row];
+        return value == NONE ? null : CATEGORIES[value];
+    }
+
+    Language languageAt(int row) {
+        byte value = languages[row];
+        return value == NONE ? null : LANGUAGES[value];
+    }
+
+    boolean isDeleted(int row) {
+        return deleted[row];
+    }
+
+    int authorCodeAt(int row) {
+        return authors[row];
+    }
+
+    String authorOf(int code) {
+        return authorPool.get(code);
+    }
+
+    int authorCount() {
+        return authorPool.size();
+    }
+
+    /**
+     * @return The UTF-8 length of the title of a row, or -1 for no title.
+     */
+    int titleLengthAt(int row) {
+        return (int) titleRefs[row];
+    }
+
+    /**
+     * Writes the UTF-8 bytes of the title of a row.
+     */
+    void writeTitle(int row, OutputStream out) throws IOException {
+        long ref = titleRefs[row];
+        if ((int) ref > 0) {
+            out.write(titleBytes, (int) (ref >>> 32), (int) ref);
+        }
+    }
+
+    private void writeFields(int row, String author, double price, int quantity, Language language, Category category) {
+        authors[row] = authorPool.intern(author);
+        prices[row] = price;
+        quantities[row] = quantity;
+        languages[row] = code(language);
+        categories[row] = code(category);
+    }
+
+    private static byte code(Enum<?> value) {
+        return value == null ? NONE : (byte) value.ordinal();
+    }
+
+    private boolean equalsTitle(int row, String title) {
+        long ref = titleRefs[row];
+        int length = (int) ref;
+        if (title == null || length < 0) {
+            return title == null && length < 0;
+        }
+        byte[] encoded = title.getBytes(StandardCharsets.UTF_8);
+        int start = (int) (ref >>> 32);
+        return Arrays.equals(titleBytes, start, start + length, encoded, 0, encoded.length);
+    }
+
+    /**
+     * Appends a title to the pool as UTF-8.
+     *
+     * @return The pool offset in the high and the length in the low 32 bits; a length of -1 stands for null.
+     */
+    private long appendTitle(String title) {
+        if (title == null) {
+            return -1L & 0xFFFFFFFFL;
+        }
+        byte[] encoded = title.getBytes(StandardCharsets.UTF_8);
+        byte[] pool = titleBytes;
+        if (titleByteCount + encoded.length > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(titleByteCount + encoded.length, pool.length * 2));
+        }
+        System.arraycopy(encoded, 0, pool, titleByteCount, encoded.length);
+        titleBytes = pool;
+        long ref = ((long) titleByteCount << 32) | encoded.length;
+        titleByteCount += encoded.length;
+        return ref;
+    }
+
+    private void ensureRowCapacity(int rows) {
+        if (rows <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(rows, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        titleRefs = Arrays.copyOf(titleRefs, capacity);
+        authors = Arrays.copyOf(authors, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        languages = Arrays.copyOf(languages, capacity);
+        deleted = Arrays.copyOf(deleted, capacity);
+    }
+}
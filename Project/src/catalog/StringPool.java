@@ -0,0 +1,51 @@
+package catalog;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores each distinct string once and hands out dense integer codes for it, so a column of repeated values,
+ * such as author names, costs one {@code int} per row. Codes are never reused. Callers synchronize writes;
+ * {@link #get(int)} may be called concurrently for codes that were handed out before.
+ */
+
+final class StringPool {
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private volatile String[] strings = new String[256];
+    private int size;
+
+    /**
+     * @return The code of the string, adding it if it is new; -1 for null.
+     */
+    int intern(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        String[] current = strings;
+        if (size == current.length) {
+            String[] grown = new String[size * 2];
+            System.arraycopy(current, 0, grown, 0, size);
+            current = grown;
+        }
+        current[size] = value;
+        strings = current;
+        codes.put(value, size);
+        return size++;
+    }
+
+    /**
+     * @return The string with the given code, or null for -1.
+     */
+    String get(int code) {
+        return code < 0 ? null : strings[code];
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -1,38 +1,270 @@
 package controller;
 
+import catalog.BookView;
+import catalog.CatalogStore;
+import catalog.ColumnarCatalog;
 import database.BookDAO;
+import database.CancellationToken;
+import database.CatalogCache;
+import database.DatabaseConnectionManager;
 import model.Book;
+import model.BookSearchCriteria;
 import model.Category;
+import model.Language;
+import search.FacetResult;
+import search.FacetService;
+import search.SearchHit;
+import search.SearchMode;
+import search.SearchService;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /***
  * Manages the retrieval, update, and manipulation of book-related data.
  * This includes operations such as fetching all books, searching books
  * by specific criteria, and handling book-specific tasks.
- * Communicates with the BookDAO class
+ * Communicates with the BookDAO class; catalog reads go through the shared CatalogCache.
+ * Queries with a title fragment are answered by the in-memory {@link SearchService} once its index is
+ * ready: the ranked hits are loaded through the cache, filtered and sorted in memory, and kept for paging
+ * until the query or the index changes. A search that finds nothing is retried typo-tolerant.
+ * Category, language and stock filters are evaluated on the bitmaps of the {@link FacetService}: browsing
+ * without a search text or price filter in id order is answered from them directly, and search hits are
+ * narrowed down by them before any book is loaded. Whole-catalog scans are served as {@link BookView}s over the
+ * columnar {@link CatalogStore}.
  */
 
 public class BookController {
 
     private BookDAO bookDAO;
+    private final int maxSearchResults;
+    private final int searchDebounceMillis;
+    private String lastSearchKey;
+    private List<Book> lastSearchResult;
+    private FacetResult lastSearchFacets;
 
     public BookController() {
         this.bookDAO = new BookDAO();
+        this.maxSearchResults = Math.max(1, DatabaseConnectionManager.getInstance().getIntProperty("search.maxResults", 1000));
+        this.searchDebounceMillis = Math.max(0, DatabaseConnectionManager.getInstance().getIntProperty("search.debounceMillis", 200));
+    }
+
+    /**
+     * @return How long search-as-you-type waits after the last keystroke before searching, from
+     *         {@code search.debounceMillis}.
+     */
+    public int getSearchDebounceMillis() {
+        return searchDebounceMillis;
     }
 
     public List<Book> getAllBooks() {
-        return bookDAO.getAllBooks();
+        return CatalogCache.getInstance().getAllBooks();
     }
 
     public Book getBookById(int id) {
-        return BookDAO.getBookById(id);
+        return CatalogCache.getInstance().getBook(id);
     }
 
     public List<Book> searchBooksByTitle(String title) {
+        if (isIndexReady()) {
+            return loadHits(searchWithFallback(title, SearchMode.ALL, maxSearchResults));
+        }
         return bookDAO.searchBooksByTitle(title);
     }
 
+    /**
+     * Searches titles and authors in the given mode, for example {@link SearchMode#FUZZY} to tolerate typos.
+     * Without the search index, every mode falls back to a substring match on the title.
+     *
+     * @param text The words to look for.
+     * @param mode How the words are matched.
+     * @return The matching books, best match first.
+     */
+    public List<Book> searchBooksByTitle(String text, SearchMode mode) {
+        if (isIndexReady()) {
+            return loadHits(SearchService.getInstance().search(text, mode, maxSearchResults));
+        }
+        return bookDAO.searchBooksByTitle(text);
+    }
+
+    /**
+     * Fetches the books matching the given criteria. Category, language and stock filters in id order are
+     * answered by the facet bitmaps, other filters in id order by a scan of the columnar catalog, and title
+     * searches by the search index; only when none of them is ready does the database filter, and the
+     * returned books are then added to the catalog cache for later lookups by id.
+     *
+     * @param criteria The filters, sort order and limit to apply.
+     * @return A list of matching books.
+     */
+    public List<Book> searchBooks(BookSearchCriteria criteria) {
+        if (usesFacets(criteria)) {
+            FacetResult facets = queryFacets(criteria, null);
+            return loadBooks(facets.getBookIds(0, criteria.getLimit() > 0 ? criteria.getLimit() : facets.getCount()));
+        }
+        if (usesColumns(criteria)) {
+            ColumnarCatalog catalog = CatalogStore.getInstance().getCatalog();
+            int[] rows = catalog.filter(viewFilter(criteria));
+            return booksAt(catalog, rows, 0, criteria.getLimit() > 0 ? criteria.getLimit() : rows.length);
+        }
+        if (usesIndex(criteria)) {
+            List<Book> matches = searchIndex(criteria);
+            return criteria.getLimit() > 0 && matches.size() > criteria.getLimit()
+                    ? new ArrayList<>(matches.subList(0, criteria.getLimit())) : matches;
+        }
+        List<Book> books = bookDAO.findBooks(criteria);
+        CatalogCache.getInstance().putAll(books);
+        return books;
+    }
+
+    /**
+     * Counts the books matching the given criteria.
+     */
+    public int countBooks(BookSearchCriteria criteria) {
+        return countBooks(criteria, CancellationToken.NONE);
+    }
+
+    /**
+     * Counts the books matching the given criteria, unless the token is cancelled first.
+     *
+     * @throws java.util.concurrent.CancellationException If the token was cancelled.
+     */
+    public int countBooks(BookSearchCriteria criteria, CancellationToken token) {
+        token.throwIfCancelled();
+        if (usesFacets(criteria)) {
+            return queryFacets(criteria, null).getCount();
+        }
+        if (usesColumns(criteria)) {
+            return CatalogStore.getInstance().getCatalog().filter(viewFilter(criteria)).length;
+        }
+        if (usesIndex(criteria)) {
+            return searchIndex(criteria).size();
+        }
+        return bookDAO.countBooks(criteria, token);
+    }
+
+    /**
+     * Fetches the page of matching books that follows {@code lastSeen}, or the first page if it is null.
+     */
+    public List<Book> getBooksAfter(BookSearchCriteria criteria, Book lastSeen, int pageSize) {
+        return getBooksAfter(criteria, lastSeen, pageSize, CancellationToken.NONE);
+    }
+
+    /**
+     * Fetches the page of matching books that follows {@code lastSeen}, unless the token is cancelled first;
+     * a database query in progress is cancelled with it.
+     *
+     * @throws java.util.concurrent.CancellationException If the token was cancelled.
+     */
+    public List<Book> getBooksAfter(BookSearchCriteria criteria, Book lastSeen, int pageSize, CancellationToken token) {
+        token.throwIfCancelled();
+        if (usesFacets(criteria)) {
+            return loadBooks(queryFacets(criteria, null).getBookIdsAfter(lastSeen == null ? 0 : lastSeen.getId(), pageSize));
+        }
+        if (usesColumns(criteria)) {
+            ColumnarCatalog catalog = CatalogStore.getInstance().getCatalog();
+            int[] rows = catalog.filter(viewFilter(criteria));
+            int offset = 0;
+            if (lastSeen != null) {
+                // Rows are in id order, so the first row after the last seen book is a binary search away.
+                int low = 0;
+                int high = rows.length;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (catalog.viewAt(rows[mid]).getId() <= lastSeen.getId()) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+                offset = low;
+            }
+            return booksAt(catalog, rows, offset, pageSize);
+        }
+        if (usesIndex(criteria)) {
+            List<Book> matches = searchIndex(criteria);
+            return page(matches, lastSeen == null ? 0 : positionAfter(matches, lastSeen, comparator(criteria.getSort())), pageSize);
+        }
+        List<Book> books = bookDAO.findBooksAfter(criteria, lastSeen, pageSize, token);
+        CatalogCache.getInstance().putAll(books);
+        return books;
+    }
+
+    /**
+     * Tells callers that page through results whether to ask for a page by the last book of the page before it
+     * ({@link #getBooksAfter}) or by its offset ({@link #getBooksAt}).
+     *
+     * @return true if the matches are ranked in memory, where the last book seen may have left the result
+     *         since, for example because it sold out, and only its position still says where the next page starts.
+     */
+    public boolean pagesByPosition(BookSearchCriteria criteria) {
+        return usesIndex(criteria);
+    }
+
+    /**
+     * Fetches a page of matching books by row offset.
+     */
+    public List<Book> getBooksAt(BookSearchCriteria criteria, int offset, int pageSize) {
+        return getBooksAt(criteria, offset, pageSize, CancellationToken.NONE);
+    }
+
+    /**
+     * Fetches a page of matching books by row offset, unless the token is cancelled first; a database query
+     * in progress is cancelled with it.
+     *
+     * @throws java.util.concurrent.CancellationException If the token was cancelled.
+     */
+    public List<Book> getBooksAt(BookSearchCriteria criteria, int offset, int pageSize, CancellationToken token) {
+        token.throwIfCancelled();
+        if (usesFacets(criteria)) {
+            return loadBooks(queryFacets(criteria, null).getBookIds(offset, pageSize));
+        }
+        if (usesColumns(criteria)) {
+            ColumnarCatalog catalog = CatalogStore.getInstance().getCatalog();
+            return booksAt(catalog, catalog.filter(viewFilter(criteria)), offset, pageSize);
+        }
+        if (usesIndex(criteria)) {
+            return page(searchIndex(criteria), offset, pageSize);
+        }
+        List<Book> books = bookDAO.findBooksAt(criteria, offset, pageSize, token);
+        CatalogCache.getInstance().putAll(books);
+        return books;
+    }
+
+    /**
+     * Returns a lightweight view of a book from the columnar catalog.
+     *
+     * @param id The unique identifier of the book.
+     * @return The view, or null if the book does not exist.
+     */
+    public BookView getBookView(int id) {
+        if (isCatalogStoreReady()) {
+            return CatalogStore.getInstance().getCatalog().view(id);
+        }
+        Book book = getBookById(id);
+        return book == null ? null : columnsOf(List.of(book)).view(id);
+    }
+
+    /**
+     * Visits every book matching the criteria in id order, without building a {@link Book} per row. The
+     * action receives one view that is moved from book to book; use {@link BookView#toBook()} to keep one.
+     * The title fragment is matched as a case-insensitive substring; sort order and limit are ignored.
+     *
+     * @param criteria The filters to apply.
+     * @param action   What to do with every matching book.
+     * @return The number of matching books.
+     */
+    public int forEachBook(BookSearchCriteria criteria, Consumer<BookView> action) {
+        ColumnarCatalog catalog = isCatalogStoreReady()
+                ? CatalogStore.getInstance().getCatalog() : columnsOf(getAllBooks());
+        return catalog.scan(viewFilter(criteria), action);
+    }
+
     /**
      * Fetches books of a given category.
      *
@@ -43,4 +275,251 @@ public class BookController {
         return bookDAO.getBooksByCategory(category);
     }
 
+    /**
+     * Counts the books behind every category and language choice, for the search text and stock filter of
+     * the criteria; the price filter is not taken into account.
+     *
+     * @return The facet counts, or null while the facet index is not available.
+     */
+    public FacetResult getFacetCounts(BookSearchCriteria criteria) {
+        if (!areFacetsReady()) {
+            return null;
+        }
+        if (usesIndex(criteria)) {
+            searchIndex(criteria);
+            return lastSearchFacets;
+        }
+        return queryFacets(criteria, null);
+    }
+
+    private static boolean isIndexReady() {
+        return SearchService.isEnabled() && SearchService.getInstance().isReady();
+    }
+
+    private static boolean usesIndex(BookSearchCriteria criteria) {
+        return criteria.hasTitleFragment() && isIndexReady();
+    }
+
+    private static boolean isCatalogStoreReady() {
+        return CatalogStore.isEnabled() && CatalogStore.getInstance().isReady();
+    }
+
+    /**
+     * @return true if the facets cannot answer the criteria but a scan of the columnar catalog can, for
+     *         example right after starting from a catalog snapshot, before the facet index is built.
+     */
+    private static boolean usesColumns(BookSearchCriteria criteria) {
+        return !criteria.hasTitleFragment() && criteria.getSort() == BookSearchCriteria.Sort.ID
+                && isCatalogStoreReady();
+    }
+
+    /**
+     * Copies a page of filtered rows out of the catalog.
+     */
+    private static List<Book> booksAt(ColumnarCatalog catalog, int[] rows, int offset, int count) {
+        List<Book> books = new ArrayList<>();
+        for (int i = Math.max(0, offset); i < rows.length && books.size() < count; i++) {
+            books.add(catalog.viewAt(rows[i]).toBook());
+        }
+        return books;
+    }
+
+    private static ColumnarCatalog columnsOf(List<Book> books) {
+        List<Book> sorted = new ArrayList<>(books);
+        sorted.sort(Comparator.comparingInt(Book::getId));
+        ColumnarCatalog catalog = new ColumnarCatalog();
+        for (Book book : sorted) {
+            catalog.put(book);
+        }
+        return catalog;
+    }
+
+    /**
+     * @return The criteria as a test on catalog views, reading only the columns it needs.
+     */
+    private static Predicate<BookView> viewFilter(BookSearchCriteria criteria) {
+        Category category = criteria.hasCategory() ? criteria.getCategory() : null;
+        Language language = criteria.hasLanguage() ? criteria.getLanguage() : null;
+        boolean inStockOnly = criteria.isInStockOnly();
+        double minPrice = criteria.getMinPrice() == null ? Double.NEGATIVE_INFINITY : criteria.getMinPrice();
+        double maxPrice = criteria.getMaxPrice() == null ? Double.POSITIVE_INFINITY : criteria.getMaxPrice();
+        String fragment = criteria.hasTitleFragment() ? criteria.getTitleFragment().trim().toLowerCase(Locale.ROOT) : null;
+        return view -> (category == null || view.getCategory() == category)
+                && (language == null || view.getLanguage() == language)
+                && (!inStockOnly || view.isInStock())
+                && view.getPrice() >= minPrice && view.getPrice() <= maxPrice
+                && (fragment == null || (view.getTitle() != null && view.getTitle().toLowerCase(Locale.ROOT).contains(fragment)));
+    }
+
+    private static boolean areFacetsReady() {
+        return FacetService.isEnabled() && FacetService.getInstance().isReady();
+    }
+
+    /**
+     * @return true if the facet bitmaps alone decide which books match, in the order they list them.
+     */
+    private static boolean usesFacets(BookSearchCriteria criteria) {
+        return !criteria.hasTitleFragment() && criteria.getMinPrice() == null && criteria.getMaxPrice() == null
+                && criteria.getSort() == BookSearchCriteria.Sort.ID && areFacetsReady();
+    }
+
+    private static FacetResult queryFacets(BookSearchCriteria criteria, List<Integer> within) {
+        EnumSet<Category> categories = criteria.hasCategory() ? EnumSet.of(criteria.getCategory()) : EnumSet.noneOf(Category.class);
+        EnumSet<Language> languages = criteria.hasLanguage() ? EnumSet.of(criteria.getLanguage()) : EnumSet.noneOf(Language.class);
+        return FacetService.getInstance().query(categories, languages, criteria.isInStockOnly(), within);
+    }
+
+    /**
+     * Loads books by id through the catalog cache, keeping the order of the ids.
+     */
+    private static List<Book> loadBooks(List<Integer> ids) {
+        return new ArrayList<>(CatalogCache.getInstance().getBooks(ids).values());
+    }
+
+    /**
+     * Returns the {@code search.maxResults} best ranked books that pass every filter, in the requested order;
+     * the facet counts cover all hits. The result of the last query is reused while the index is unchanged,
+     * so paging through it costs no further searches.
+     */
+    private synchronized List<Book> searchIndex(BookSearchCriteria criteria) {
+        SearchService searchService = SearchService.getInstance();
+        boolean facetsReady = areFacetsReady();
+        String key = searchService.getVersion() + "|" + (facetsReady ? FacetService.getInstance().getVersion() : -1)
+                + "|" + criteria.getTitleFragment().trim() + "|" + criteria.isFuzzy()
+                + "|" + criteria.getCategory()
+                + "|" + criteria.getLanguage() + "|" + criteria.isInStockOnly() + "|" + criteria.getMinPrice()
+                + "|" + criteria.getMaxPrice() + "|" + criteria.getSort();
+        if (key.equals(lastSearchKey)) {
+            return lastSearchResult;
+        }
+
+        SearchMode mode = criteria.isFuzzy() ? SearchMode.FUZZY : SearchMode.ALL;
+        // Every hit is kept until the filters have run, so search.maxResults caps the matches, not the hits.
+        List<SearchHit> hits = searchWithFallback(criteria.getTitleFragment(), mode, Integer.MAX_VALUE);
+        FacetResult facets = null;
+        if (facetsReady) {
+            List<Integer> hitIds = new ArrayList<>(hits.size());
+            for (SearchHit hit : hits) {
+                hitIds.add(hit.getBookId());
+            }
+            facets = queryFacets(criteria, hitIds);
+            List<SearchHit> filtered = new ArrayList<>(facets.getCount());
+            for (SearchHit hit : hits) {
+                if (facets.contains(hit.getBookId())) {
+                    filtered.add(hit);
+                }
+            }
+            hits = filtered;
+        }
+
+        List<Book> matches = new ArrayList<>();
+        for (int from = 0; from < hits.size() && matches.size() < maxSearchResults; from += maxSearchResults) {
+            for (Book book : loadHits(hits.subList(from, Math.min(hits.size(), from + maxSearchResults)))) {
+                if (matches.size() < maxSearchResults && matches(criteria, book)) {
+                    matches.add(book);
+                }
+            }
+        }
+        Comparator<Book> order = comparator(criteria.getSort());
+        if (order != null) {
+            matches.sort(order);
+        }
+
+        lastSearchKey = key;
+        lastSearchResult = matches;
+        lastSearchFacets = facets;
+        return matches;
+    }
+
+    /**
+     * Searches in the given mode and, if an exact search finds nothing, tries again tolerating typos.
+     */
+    private static List<SearchHit> searchWithFallback(String text, SearchMode mode, int limit) {
+        List<SearchHit> hits = SearchService.getInstance().search(text, mode, limit);
+        if (hits.isEmpty() && mode == SearchMode.ALL) {
+            hits = SearchService.getInstance().search(text, SearchMode.FUZZY, limit);
+        }
+        return hits;
+    }
+
+    /**
+     * Loads the books behind search hits through the catalog cache, keeping the ranking. Hits whose book
+     * no longer exists are dropped from the index.
+     */
+    private static List<Book> loadHits(List<SearchHit> hits) {
+        List<Integer> ids = new ArrayList<>(hits.size());
+        for (SearchHit hit : hits) {
+            ids.add(hit.getBookId());
+        }
+        Map<Integer, Book> books = CatalogCache.getInstance().getBooks(ids);
+
+        List<Book> ranked = new ArrayList<>(books.size());
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            Book book = books.get(id);
+            if (book != null) {
+                ranked.add(book);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            SearchService.getInstance().removeBooks(missing);
+        }
+        return ranked;
+    }
+
+    private static boolean matches(BookSearchCriteria criteria, Book book) {
+        return (!criteria.hasCategory() || criteria.getCategory() == book.getCategory())
+                && (!criteria.hasLanguage() || criteria.getLanguage() == book.getLanguage())
+                && (!criteria.isInStockOnly() || book.getQuantity() > 0)
+                && (criteria.getMinPrice() == null || book.getPrice() >= criteria.getMinPrice())
+                && (criteria.getMaxPrice() == null || book.getPrice() <= criteria.getMaxPrice());
+    }
+
+    /**
+     * @return The in-memory equivalent of the database ordering, or null to keep the relevance order.
+     */
+    private static Comparator<Book> comparator(BookSearchCriteria.Sort sort) {
+        switch (sort) {
+            case TITLE: return Comparator.comparing(Book::getTitle).thenComparingInt(Book::getId);
+            case AUTHOR: return Comparator.comparing(Book::getAuthor).thenComparingInt(Book::getId);
+            case PRICE_ASCENDING: return Comparator.comparingDouble(Book::getPrice).thenComparingInt(Book::getId);
+            case PRICE_DESCENDING: return Comparator.comparingDouble(Book::getPrice).thenComparingInt(Book::getId).reversed();
+            case ID: return Comparator.comparingInt(Book::getId);
+            default: return null;
+        }
+    }
+
+    /**
+     * @return The position of the first match after the given book. A book that has left the matches is placed
+     *         by the sort order; in relevance order it has no place, and nothing is taken to follow it, rather
+     *         than starting over at the first match.
+     */
+    private static int positionAfter(List<Book> matches, Book lastSeen, Comparator<Book> order) {
+        int index = matches.indexOf(lastSeen);
+        if (index >= 0) {
+            return index + 1;
+        }
+        if (order == null) {
+            return matches.size();
+        }
+        int low = 0;
+        int high = matches.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (order.compare(matches.get(mid), lastSeen) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static List<Book> page(List<Book> matches, int offset, int pageSize) {
+        int from = Math.min(Math.max(0, offset), matches.size());
+        return new ArrayList<>(matches.subList(from, Math.min(matches.size(), from + pageSize)));
+    }
+
 }
@@ -1,36 +1,135 @@
 package controller;
 
+import database.CartPersistence;
+import inventory.CartReservations;
 import model.Book;
 import model.Cart;
+import model.SessionManager;
+import model.User;
+
+import java.util.Map;
 
 /**
  * Oversees the user's shopping cart operations.
  * This includes adding/removing items to/from the cart, calculating cart totals,
  * and ensuring the cart is correctly represented throughout the user's session.
+ * When cart holds are enabled, the copies in the cart are held in stock for a limited time
+ * (see {@link CartReservations}). The cart itself belongs to the session, so every frame sees the same
+ * cart, and it is saved per user by {@link CartPersistence}.
  */
 
 public class CartController {
 
-    private Cart cart;
-
     public CartController() {
-        this.cart = new Cart();
     }
 
-    public void addBookToCart(Book book, int quantity) {
+    /**
+     * Loads the saved cart of the user who just logged in into the session cart, with a single query,
+     * and starts persisting its changes.
+     *
+     * @param user The logged-in user.
+     */
+    public void restoreCart(User user) {
+        if (CartPersistence.isEnabled()) {
+            CartPersistence.getInstance().restore(user.getId(), getCart());
+        }
+    }
+
+    /**
+     * Stops persisting the session cart and releases its holds, before the user logs out. Changes that
+     * are still pending are written in the background.
+     */
+    public void closeCart() {
+        Cart cart = getCart();
+        if (CartPersistence.isEnabled()) {
+            CartPersistence.getInstance().detach(cart);
+            CartPersistence.getInstance().flushSoon();
+        }
+        if (CartReservations.isEnabled()) {
+            CartReservations.getInstance().releaseAll(cart);
+        }
+    }
+
+    /**
+     * Writes the pending cart changes without waiting for the next interval, for example after checkout.
+     */
+    public void flushCart() {
+        if (CartPersistence.isEnabled()) {
+            CartPersistence.getInstance().flushSoon();
+        }
+    }
+
+    /**
+     * Adds copies of a book to the cart, holding them in stock when cart holds are enabled.
+     *
+     * @return true if the book was added, false if the copies could not be held because the book is out of stock.
+     */
+    public boolean addBookToCart(Book book, int quantity) {
+        Cart cart = getCart();
+        if (CartReservations.isEnabled() && !CartReservations.getInstance().hold(cart, book.getId(), quantity)) {
+            return false;
+        }
         cart.addBook(book, quantity);
+        return true;
+    }
+
+    /**
+     * Changes the number of copies of a book in the cart. When cart holds are enabled, the difference is
+     * held or released; otherwise the stock is checked afterwards by a {@link CartValidator}.
+     *
+     * @return true if the quantity was changed, false if the extra copies could not be held.
+     */
+    public boolean setBookQuantity(Book book, int quantity) {
+        Cart cart = getCart();
+        int difference = quantity - cart.getQuantity(book.getId());
+        if (CartReservations.isEnabled()) {
+            if (difference > 0 && !CartReservations.getInstance().hold(cart, book.getId(), difference)) {
+                return false;
+            }
+            if (difference < 0) {
+                CartReservations.getInstance().release(cart, book.getId(), -difference);
+            }
+        }
+        cart.setQuantity(book, quantity);
+        return true;
     }
 
+    /**
+     * Removes one copy of a book from the cart and releases its hold.
+     */
     public void removeBookFromCart(Book book) {
+        Cart cart = getCart();
         cart.removeBook(book);
+        if (CartReservations.isEnabled()) {
+            CartReservations.getInstance().release(cart, book.getId(), 1);
+        }
     }
 
+    /**
+     * @return The cart of the current session; every controller instance shares it.
+     */
     public Cart getCart() {
-        return cart;
+        return SessionManager.getInstance().getCart();
     }
 
     public void emptyCart() {
+        Cart cart = getCart();
         cart.clearCart();
+        if (CartReservations.isEnabled()) {
+            CartReservations.getInstance().releaseAll(cart);
+        }
+    }
+
+    /**
+     * Takes over the holds of this cart for checkout, so they are converted into the order instead of expiring.
+     *
+     * @return The number of held copies, by book id; empty if cart holds are disabled.
+     */
+    public Map<Integer, Integer> claimHolds() {
+        if (!CartReservations.isEnabled()) {
+            return Map.of();
+        }
+        return CartReservations.getInstance().claim(getCart());
     }
 
 }
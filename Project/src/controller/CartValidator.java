@@ -0,0 +1,130 @@
+package controller;
+
+import database.BookDAO;
+import database.DatabaseConnectionManager;
+import inventory.CartReservations;
+import model.Book;
+import model.BookAvailability;
+import model.Cart;
+import model.CartValidation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Checks all lines of a cart against the current stock and prices in the background.
+ * <p>
+ * Each call to {@link #requestValidation()} restarts a short timer ({@code cart.validation.debounceMillis});
+ * only when the cart has been left alone for that long is it checked, with a single
+ * {@link BookDAO#getAvailability} query for all of its books. Rapid quantity edits therefore cost one
+ * query, and none of them block the Event Dispatch Thread.
+ * </p>
+ * The listener is called on the validator's own thread; Swing callers hand the result over to the EDT.
+ * Copies held for the cart count as available to it.
+ */
+
+public class CartValidator {
+
+    private final Cart cart;
+    private final Consumer<CartValidation> listener;
+    private final long debounceMillis;
+    private final ScheduledExecutorService executor;
+    private ScheduledFuture<?> pending;
+
+    public CartValidator(Cart cart, Consumer<CartValidation> listener) {
+        this.cart = cart;
+        this.listener = listener;
+        this.debounceMillis = Math.max(0, DatabaseConnectionManager.getInstance().getLongProperty("cart.validation.debounceMillis", 300));
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cart-validator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Schedules a check of the cart, replacing a check that has not started yet.
+     */
+    public synchronized void requestValidation() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        pending = executor.schedule(this::validate, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks the cart right away on the calling thread.
+     *
+     * @return The outcome, or null if the stock could not be read.
+     */
+    public CartValidation validateNow() {
+        return check(cart);
+    }
+
+    /**
+     * Re-reads the current stock and price of every line of a cart with one query and compares them
+     * with the cart. Blocks on the database.
+     *
+     * @param cart The cart to check.
+     * @return The outcome, or null if the stock could not be read.
+     */
+    public static CartValidation check(Cart cart) {
+        Map<Integer, Integer> held = CartReservations.isEnabled() ? CartReservations.getInstance().getHeld(cart) : Map.of();
+        return check(cart.getItems(), held);
+    }
+
+    /**
+     * Re-reads the current stock and price of the given books with one query and compares them with the
+     * quantities asked for. Blocks on the database.
+     *
+     * @param items The books to check, mapped to their quantities.
+     * @param held  The copies held for the buyer, by book id; they count as available.
+     * @return The outcome, or null if the stock could not be read.
+     */
+    private static CartValidation check(Map<Book, Integer> items, Map<Integer, Integer> held) {
+        List<Integer> ids = new ArrayList<>();
+        for (Book book : items.keySet()) {
+            ids.add(book.getId());
+        }
+        Map<Integer, BookAvailability> availability = BookDAO.getAvailability(ids);
+        if (availability == null) {
+            return null;
+        }
+
+        for (Map.Entry<Integer, Integer> entry : held.entrySet()) {
+            BookAvailability current = availability.get(entry.getKey());
+            if (current != null) {
+                availability.put(entry.getKey(), new BookAvailability(entry.getKey(),
+                        current.getAvailable() + entry.getValue(), current.getPrice()));
+            }
+        }
+        return new CartValidation(items, availability);
+    }
+
+    /**
+     * Cancels any pending check and stops the background thread.
+     */
+    public synchronized void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void validate() {
+        try {
+            CartValidation validation = validateNow();
+            if (validation != null) {
+                listener.accept(validation);
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,14 +1,23 @@
 package controller;
 
+import database.CheckoutResult;
 import database.OrderDAO;
+import database.OrderSubmissionQueue;
+import inventory.CartReservations;
 import model.Book;
+import model.Cart;
+import model.CartValidation;
 import model.Order;
 import model.OrderItem;
 import model.User;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /***
  * Responsible for managing customer orders.
@@ -25,8 +34,28 @@ public class OrderController {
         this.orderDAO = new OrderDAO();
     }
 
-    public boolean createOrder(User user, Map<Book, Integer> cartItems) {
+    /**
+     * Creates an order for the given cart contents and stores it through the group-commit
+     * {@link OrderSubmissionQueue}, waiting until its batch has been committed. Must not be called
+     * on the Event Dispatch Thread.
+     *
+     * @param user      The user placing the order.
+     * @param cartItems The books in the cart and their quantities.
+     * @return The checkout outcome; its reservation lists any lines that were out of stock.
+     */
+    public CheckoutResult createOrder(User user, Map<Book, Integer> cartItems) {
+        return createOrder(user, cartItems, Map.of());
+    }
+
+    /**
+     * Creates an order as {@link #createOrder(User, Map)} does, converting the copies held for the cart
+     * into the order's reservation.
+     *
+     * @param heldQuantities The copies held for the cart, by book id, from {@link CartController#claimHolds()}.
+     */
+    public CheckoutResult createOrder(User user, Map<Book, Integer> cartItems, Map<Integer, Integer> heldQuantities) {
         Order order = new Order(0, user, new ArrayList<>());
+        order.setHeldQuantities(heldQuantities);
 
         for (Map.Entry<Book, Integer> cartItem : cartItems.entrySet()) {
             Book book = cartItem.getKey();
@@ -36,12 +65,57 @@ public class OrderController {
             order.addOrderItem(orderItem);
 
         }
-        System.out.println("Number of order items: " + order.getOrderItems().size());
 
-        if(orderDAO.processOrder(order)){
-            return orderDAO.saveOrder(order);
+        OrderSubmissionQueue submissionQueue = OrderSubmissionQueue.getInstance();
+        CompletableFuture<CheckoutResult> future = submissionQueue.submit(order);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    // An order still waiting in the queue never ran; once its batch has it, its outcome is awaited.
+                    if (submissionQueue.withdraw(future)) {
+                        return notSubmitted(heldQuantities);
+                    }
+                } catch (ExecutionException e) {
+                    System.out.println("Order was not submitted: " + e.getCause().getMessage());
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RejectedExecutionException || cause instanceof InterruptedException) {
+                        return notSubmitted(heldQuantities);
+                    }
+                    // The batch failed without an outcome for this order, so its claimed copies are left as they are.
+                    return new CheckoutResult(false, 0, null, new LinkedHashMap<>());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
-        return false;
+    }
+
+    /**
+     * Gives the copies claimed for an order that never reached the database back to the holds of the cart.
+     */
+    private CheckoutResult notSubmitted(Map<Integer, Integer> heldQuantities) {
+        if (!heldQuantities.isEmpty()) {
+            CartReservations.getInstance().releaseClaimed(heldQuantities);
+        }
+        return new CheckoutResult(false, 0, null, new LinkedHashMap<>());
+    }
+
+    /**
+     * Checkout pre-flight: re-reads the current price and stock of every line in the cart with a single
+     * query, so price changes and short lines can be shown before payment. Must not be called on the
+     * Event Dispatch Thread.
+     *
+     * @param cart The cart about to be checked out.
+     * @return The differences between the cart and the catalog, or null if the catalog could not be read.
+     */
+    public CartValidation preflight(Cart cart) {
+        return CartValidator.check(cart);
     }
 
     /**
@@ -57,4 +131,13 @@ public class OrderController {
      return orderDAO.getOrdersByUserId(userId);
     }
 
+    /**
+     * Loads the line items of the given orders, if they were fetched as summaries only.
+     *
+     * @param orders The orders whose items are about to be shown.
+     */
+    public void loadOrderItems(List<Order> orders) {
+        orderDAO.loadOrderItems(orders);
+    }
+
 }
@@ -38,13 +38,18 @@ public class UserController {
         Optional<User> user = verifyLogin(username, password);
         if (user.isPresent()) {
             SessionManager.getInstance().login(user.get());
+            cartController.restoreCart(user.get());
             return Optional.of(user.get().getRole());
         } else {
             return Optional.empty();
         }
     }
 
+    /**
+     * Logs the current user out. Their cart stays saved and is restored on the next login.
+     */
     public void logout(){
+        cartController.closeCart();
         SessionManager.getInstance().logout();
     }
 
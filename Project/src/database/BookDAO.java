@@ -1,15 +1,28 @@
 package database;
 
+import catalog.ColumnarCatalog;
+import inventory.InventoryEngine;
 import model.Book;
+import model.BookAvailability;
+import model.BookSearchCriteria;
 import model.Category;
 import model.Language;
+import model.OrderItem;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Manages database connection configurations and provides a Singleton instance for creating
@@ -27,12 +40,8 @@ import java.util.List;
  */
 
 public class BookDAO {
-    private Connection connection;
-
-    public BookDAO() {
-        this.connection = DatabaseConnectionManager.getInstance().getConnection();
-    }
 
+    private static final int MAX_IN_LIST = 512;
     /**
      * Retrieves a list of all books in the database.
      *
@@ -56,6 +65,63 @@ public class BookDAO {
         return books;
     }
 
+    /**
+     * Streams every book into a columnar catalog, one row at a time, without building {@link Book} objects
+     * or buffering the whole result set. Rows arrive ordered by id.
+     *
+     * @param catalog The empty catalog to fill.
+     * @return true if the whole table was read.
+     */
+    public static boolean readAllBooksInto(ColumnarCatalog catalog) {
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM books ORDER BY id")) {
+            // Makes MySQL Connector/J stream the rows instead of reading them all into memory first.
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    catalog.put(rs.getInt("id"), rs.getString("title"), rs.getString("author"), rs.getDouble("price"),
+                            rs.getInt("quantity"), Language.valueOf(rs.getString("lang").toUpperCase()),
+                            Category.fromString(rs.getString("category")));
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Streams only the id, price and quantity of every book into the matching rows of a columnar catalog,
+     * for reconciling a catalog restored from disk without reading titles and authors again.
+     *
+     * @param catalog  The catalog to update.
+     * @param seenRows Receives the rows of the catalog that still exist in the database.
+     * @return The ids of books that are not in the catalog, or null if the query failed.
+     */
+    public static List<Integer> readPricesAndStockInto(ColumnarCatalog catalog, BitSet seenRows) {
+        List<Integer> unknown = new ArrayList<>();
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT id, price, quantity FROM books ORDER BY id")) {
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int row = catalog.rowOf(rs.getInt("id"));
+                    if (row >= 0) {
+                        catalog.updatePriceAndStock(row, rs.getDouble("price"), rs.getInt("quantity"));
+                        seenRows.set(row);
+                    } else {
+                        unknown.add(rs.getInt("id"));
+                    }
+                }
+            }
+            return unknown;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     /**
      * Fetches a book by its unique identifier from the database.
      *
@@ -81,6 +147,158 @@ public class BookDAO {
         return book;
     }
 
+    /**
+     * Fetches all books with the given identifiers, using one query per chunk of ids
+     * instead of one query per book.
+     *
+     * @param ids The unique identifiers of the desired books.
+     * @return A list of the books that were found, in no particular order.
+     */
+    public static List<Book> getBooksByIds(Collection<Integer> ids) {
+        List<Book> books = new ArrayList<>();
+        List<Integer> idList = new ArrayList<>(ids);
+        if (idList.isEmpty()) {
+            return books;
+        }
+
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection()) {
+            for (int from = 0; from < idList.size(); from += MAX_IN_LIST) {
+                List<Integer> chunk = idList.subList(from, Math.min(from + MAX_IN_LIST, idList.size()));
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM books WHERE id IN (" + SqlHelper.inList(chunk.size()) + ")")) {
+                    SqlHelper.bindInList(stmt, 1, chunk);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            books.add(readBook(rs));
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return books;
+    }
+
+    /**
+     * Fetches the books added after a known book, ordered by id, for example to catch an in-memory index up
+     * with newly added books without reloading the catalog.
+     *
+     * @param afterId The highest book id already known.
+     * @param limit   The maximum number of books to return.
+     * @return The next books by id; fewer than {@code limit} when the end of the catalog is reached.
+     */
+    public static List<Book> getBooksAfterId(int afterId, int limit) {
+        List<Book> books = new ArrayList<>();
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM books WHERE id > ? ORDER BY id LIMIT ?")) {
+            stmt.setInt(1, afterId);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    books.add(readBook(rs));
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return books;
+    }
+
+    /**
+     * Fetches the books written and the ids of the books deleted since a watermark, using the indexed
+     * {@code updated_at} column of the books table and the {@code book_deletions} log, so the cost follows
+     * the number of changes rather than the size of the catalog. Deletions are read first: a book deleted
+     * while its row is being read is reported by the next call.
+     *
+     * @param since Database time in milliseconds since the epoch; changes at or after it are returned.
+     * @return The changes, or null if the query failed, for example because the change tracking columns
+     *         have not been added yet.
+     */
+    public static CatalogChanges getBooksChangedSince(long since) {
+        Timestamp watermark = new Timestamp(Math.max(0, since));
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection()) {
+            CatalogChanges changes = new CatalogChanges(readDatabaseTime(conn));
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT book_id, deleted_at FROM book_deletions WHERE deleted_at >= ?")) {
+                stmt.setTimestamp(1, watermark);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        changes.addDeletion(rs.getInt("book_id"), rs.getTimestamp("deleted_at").getTime());
+                    }
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT * FROM books WHERE updated_at >= ? ORDER BY updated_at, id")) {
+                stmt.setFetchSize(Integer.MIN_VALUE);
+                stmt.setTimestamp(1, watermark);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        changes.addBook(readBook(rs), rs.getTimestamp("updated_at").getTime());
+                    }
+                }
+            }
+            return changes;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether the change tracking of {@code sql/books_change_tracking.sql} is installed, without
+     * reading any rows.
+     *
+     * @return false if the {@code updated_at} column or the {@code book_deletions} table is missing; true if
+     *         both exist or the check itself could not be made.
+     */
+    public static boolean isChangeTrackingAvailable() {
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection()) {
+            for (String probe : new String[]{"SELECT updated_at FROM books LIMIT 0", "SELECT deleted_at FROM book_deletions LIMIT 0"}) {
+                try (PreparedStatement stmt = conn.prepareStatement(probe);
+                     ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            if (SqlHelper.isMissingSchema(e)) {
+                return false;
+            }
+            e.printStackTrace();
+            return true;
+        }
+    }
+
+    /**
+     * @return The current time of the database clock in milliseconds since the epoch, or 0 if it could not be
+     *         read.
+     */
+    public static long getDatabaseTime() {
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection()) {
+            return readDatabaseTime(conn);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    private static long readDatabaseTime(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT CURRENT_TIMESTAMP(3)");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getTimestamp(1).getTime();
+        }
+    }
+
+    /**
+     * Builds a Book from the current row of a result set over the books table.
+     */
+    static Book readBook(ResultSet rs) throws SQLException {
+        Language language = Language.valueOf(rs.getString("lang").toUpperCase());
+        Category category = Category.fromString(rs.getString("category"));
+        return new Book(rs.getInt("id"), rs.getString("title"), rs.getString("author"), rs.getDouble("price"), rs.getInt("quantity"), language, category);
+    }
+
     /**
      * Searches for books with a title matching the provided keyword or phrase.
      *
@@ -112,6 +330,205 @@ public class BookDAO {
         return matchingBooks;
     }
 
+    /**
+     * Finds the books matching the given criteria with a single parameterized query, so that filtering,
+     * sorting and limiting happen in MySQL and only matching rows are transferred.
+     *
+     * @param criteria The filters, sort order and limit to apply.
+     * @return A list of matching books in the requested order. If no books match, returns an empty list.
+     */
+    public List<Book> findBooks(BookSearchCriteria criteria) {
+        return queryBooks(criteria, null, -1, criteria.getLimit(), CancellationToken.NONE);
+    }
+
+    /**
+     * Fetches the page of books that follows {@code lastSeen} in the criteria's sort order (keyset pagination).
+     * The position is expressed by the sort key and id of the last book of the previous page, so the cost
+     * of a page does not grow with its distance from the start of the catalog.
+     *
+     * @param criteria The filters and sort order to apply; its limit is ignored.
+     * @param lastSeen The last book of the previous page, or null for the first page.
+     * @param pageSize The maximum number of books to return.
+     * @param token    Cancels the query while it runs.
+     * @return The next page of matching books.
+     * @throws java.util.concurrent.CancellationException If the token was cancelled.
+     */
+    public List<Book> findBooksAfter(BookSearchCriteria criteria, Book lastSeen, int pageSize, CancellationToken token) {
+        return queryBooks(criteria, lastSeen, -1, pageSize, token);
+    }
+
+    /**
+     * Fetches a page of books by row offset. Used only to jump to a page whose predecessor has not been
+     * loaded yet; sequential paging should use {@link #findBooksAfter}.
+     *
+     * @param criteria The filters and sort order to apply; its limit is ignored.
+     * @param offset   The number of matching rows to skip.
+     * @param pageSize The maximum number of books to return.
+     * @param token    Cancels the query while it runs.
+     * @return The requested page of matching books.
+     * @throws java.util.concurrent.CancellationException If the token was cancelled.
+     */
+    public List<Book> findBooksAt(BookSearchCriteria criteria, int offset, int pageSize, CancellationToken token) {
+        return queryBooks(criteria, null, offset, pageSize, token);
+    }
+
+    /**
+     * Counts the books matching the given criteria, ignoring its limit.
+     *
+     * @param criteria The filters to apply.
+     * @param token    Cancels the query while it runs.
+     * @return The number of matching books, or 0 if the query fails.
+     * @throws java.util.concurrent.CancellationException If the token was cancelled.
+     */
+    public int countBooks(BookSearchCriteria criteria, CancellationToken token) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM books");
+        appendWhereClause(sql, params, criteria, null);
+
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            bindParameters(stmt, params);
+            token.register(stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            } finally {
+                token.unregister(stmt);
+            }
+        } catch (Exception e) {
+            token.throwIfCancelled();
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    private List<Book> queryBooks(BookSearchCriteria criteria, Book lastSeen, int offset, int limit, CancellationToken token) {
+        List<Book> books = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT * FROM books");
+        appendWhereClause(sql, params, criteria, lastSeen);
+        sql.append(" ORDER BY ").append(orderByClause(criteria.getSort()));
+        if (limit > 0) {
+            sql.append(" LIMIT ?");
+            params.add(limit);
+            if (offset >= 0) {
+                sql.append(" OFFSET ?");
+                params.add(offset);
+            }
+        }
+
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            bindParameters(stmt, params);
+            token.register(stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    books.add(readBook(rs));
+                }
+            } finally {
+                token.unregister(stmt);
+            }
+        } catch (Exception e) {
+            token.throwIfCancelled();
+            e.printStackTrace();
+        }
+        token.throwIfCancelled();
+        return books;
+    }
+
+    private static void appendWhereClause(StringBuilder sql, List<Object> params, BookSearchCriteria criteria, Book lastSeen) {
+        List<String> conditions = new ArrayList<>();
+        if (criteria.hasTitleFragment()) {
+            conditions.add("title LIKE ? ESCAPE '!'");
+            params.add("%" + escapeLike(criteria.getTitleFragment().trim()) + "%");
+        }
+        if (criteria.hasCategory()) {
+            conditions.add("category = ?");
+            params.add(criteria.getCategory().name());
+        }
+        if (criteria.hasLanguage()) {
+            conditions.add("lang = ?");
+            params.add(criteria.getLanguage().name());
+        }
+        if (criteria.isInStockOnly()) {
+            conditions.add("quantity > 0");
+        }
+        if (criteria.getMinPrice() != null) {
+            conditions.add("price >= ?");
+            params.add(criteria.getMinPrice());
+        }
+        if (criteria.getMaxPrice() != null) {
+            conditions.add("price <= ?");
+            params.add(criteria.getMaxPrice());
+        }
+        if (lastSeen != null) {
+            conditions.add(keysetCondition(criteria.getSort(), lastSeen, params));
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+    }
+
+    private static String orderByClause(BookSearchCriteria.Sort sort) {
+        switch (sort) {
+            case TITLE: return "title, id";
+            case AUTHOR: return "author, id";
+            case PRICE_ASCENDING: return "price, id";
+            case PRICE_DESCENDING: return "price DESC, id DESC";
+            default: return "id";
+        }
+    }
+
+    /**
+     * Builds the "comes after this book" condition matching {@link #orderByClause}, expanded into
+     * {@code key > ? OR (key = ? AND id > ?)} so MySQL can seek on an index over (key, id).
+     */
+    private static String keysetCondition(BookSearchCriteria.Sort sort, Book lastSeen, List<Object> params) {
+        switch (sort) {
+            case TITLE:
+                params.add(lastSeen.getTitle());
+                params.add(lastSeen.getTitle());
+                params.add(lastSeen.getId());
+                return "(title > ? OR (title = ? AND id > ?))";
+            case AUTHOR:
+                params.add(lastSeen.getAuthor());
+                params.add(lastSeen.getAuthor());
+                params.add(lastSeen.getId());
+                return "(author > ? OR (author = ? AND id > ?))";
+            case PRICE_ASCENDING:
+                params.add(lastSeen.getPrice());
+                params.add(lastSeen.getPrice());
+                params.add(lastSeen.getId());
+                return "(price > ? OR (price = ? AND id > ?))";
+            case PRICE_DESCENDING:
+                params.add(lastSeen.getPrice());
+                params.add(lastSeen.getPrice());
+                params.add(lastSeen.getId());
+                return "(price < ? OR (price = ? AND id < ?))";
+            default:
+                params.add(lastSeen.getId());
+                return "id > ?";
+        }
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    private static void bindParameters(PreparedStatement stmt, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            Object param = params.get(i);
+            if (param instanceof Integer) {
+                stmt.setInt(i + 1, (Integer) param);
+            } else if (param instanceof Double) {
+                stmt.setDouble(i + 1, (Double) param);
+            } else {
+                stmt.setString(i + 1, String.valueOf(param));
+            }
+        }
+    }
+
     /**
      * Adds a new book record to the database.
      *
@@ -119,15 +536,18 @@ public class BookDAO {
      * @return true if the book was successfully added, false otherwise.
      */
     public boolean addBook(Book book) {
-        String query = "INSERT INTO books (title, author, price, quantity) VALUES (?, ?, ?, ?, ?)";
+        String query = "INSERT INTO books (title, author, price, quantity, lang, category) VALUES (?, ?, ?, ?, ?, ?)";
         try (Connection conn = DatabaseConnectionManager.getInstance().getConnection();
              PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setString(1, book.getTitle());
             stmt.setString(2, book.getAuthor());
             stmt.setDouble(3, book.getPrice());
             stmt.setInt(4, book.getQuantity());
-            stmt.setString(5, book.getLanguage().getDisplayName());
-            return stmt.executeUpdate() > 0;
+            stmt.setString(5, book.getLanguage().name());
+            stmt.setString(6, book.getCategory().name());
+            boolean added = stmt.executeUpdate() > 0;
+            CatalogCache.getInstance().invalidateSnapshot();
+            return added;
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -135,30 +555,127 @@ public class BookDAO {
     }
 
     /**
-     * Decrements the quantity of a specific book in the database, used mainly during purchase operations.
+     * Reserves stock for all lines of an order with one batch of guarded decrements
+     * ({@code quantity >= ?}), sent together on the caller's connection and inside its transaction.
+     * <p>
+     * Each line either takes its full quantity or is left untouched, and the result reports which lines
+     * succeeded. The caller decides whether to commit or roll back, and invalidates the cached books once
+     * the transaction is committed.
+     * </p>
+     * A line counts as reserved when the driver reports a changed row for it. Connector/J reports a count per
+     * statement for update batches, also when it rewrites them; a driver that does not makes the reservation
+     * fail, so the caller rolls the transaction back instead of guessing which lines took stock.
      *
-     * @param conn           The active SQL connection.
-     * @param bookId         The unique identifier of the book whose quantity needs to be decremented.
-     * @param quantityBought The number of books bought (to be decremented from the stock).
-     * @return true if the operation was successful, false otherwise.
-     * @throws SQLException If any database operation fails.
+     * @param conn  The active SQL connection, with auto-commit disabled.
+     * @param items The order lines to reserve.
+     * @return The per-line outcome of the reservation.
+     * @throws SQLException If the batch cannot be executed or its update counts are unknown.
      */
-    public static boolean decrementBookQuantity(Connection conn, int bookId, int quantityBought) throws SQLException {
+    public static StockReservation reserveStock(Connection conn, List<OrderItem> items) throws SQLException {
+        boolean[] reserved = new boolean[items.size()];
+        if (items.isEmpty()) {
+            return new StockReservation(items, reserved);
+        }
 
-        if (!isBookInStock(bookId, quantityBought)) {
-            return false;
+        String query = "UPDATE books SET quantity = quantity - ? WHERE id = ? AND quantity >= ?";
+        int[] updateCounts;
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (OrderItem item : items) {
+                stmt.setInt(1, item.getQuantity());
+                stmt.setInt(2, item.getBook().getId());
+                stmt.setInt(3, item.getQuantity());
+                stmt.addBatch();
+            }
+            try {
+                updateCounts = stmt.executeBatch();
+            } catch (BatchUpdateException bue) {
+                updateCounts = bue.getUpdateCounts();
+            }
+        }
+
+        for (int i = 0; i < items.size(); i++) {
+            if (i < updateCounts.length && updateCounts[i] == Statement.SUCCESS_NO_INFO) {
+                throw new SQLException("The driver did not report which stock updates succeeded.");
+            }
+            reserved[i] = i < updateCounts.length && updateCounts[i] > 0;
         }
-        String query = "UPDATE books SET quantity = quantity - ? WHERE id = ?";
+        return new StockReservation(items, reserved);
+    }
+
+
+    /**
+     * Hands back stock taken by {@link #reserveStock} for lines that will not be ordered after all,
+     * with one batch of increments on the caller's connection and inside its transaction.
+     *
+     * @param conn  The active SQL connection, with auto-commit disabled.
+     * @param items The reserved lines to release.
+     * @throws SQLException If the batch cannot be executed.
+     */
+    public static void releaseStock(Connection conn, List<OrderItem> items) throws SQLException {
+        if (items.isEmpty()) {
+            return;
+        }
+        String query = "UPDATE books SET quantity = quantity + ? WHERE id = ?";
         try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setInt(1, quantityBought);
-            stmt.setInt(2, bookId);
-            System.out.println("Decrementing quantity for Book ID: " + bookId + " by " + quantityBought);
-            int rowsAffected = stmt.executeUpdate();
-            System.out.println(rowsAffected);
-            return rowsAffected > 0;
+            for (OrderItem item : items) {
+                stmt.setInt(1, item.getQuantity());
+                stmt.setInt(2, item.getBook().getId());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Reads the stock of every book in one query, used to seed {@link inventory.InventoryEngine}.
+     *
+     * @return A map from book id to quantity; empty if the query fails.
+     */
+    public static Map<Integer, Integer> getStockLevels() {
+        Map<Integer, Integer> levels = new HashMap<>();
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT id, quantity FROM books");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                levels.put(rs.getInt("id"), rs.getInt("quantity"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
         }
+        return levels;
     }
 
+    /**
+     * Overwrites the stock of several books with absolute values in one batch and one transaction,
+     * used by {@link inventory.InventoryEngine} checkpoints.
+     *
+     * @param levels A map from book id to its new quantity.
+     * @return true if every row was written, false otherwise.
+     */
+    public static boolean writeStockLevels(Map<Integer, Integer> levels) {
+        String query = "UPDATE books SET quantity = ? WHERE id = ?";
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                for (Map.Entry<Integer, Integer> entry : levels.entrySet()) {
+                    stmt.setInt(1, entry.getValue());
+                    stmt.setInt(2, entry.getKey());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
 
     /**
      * Checks if the desired quantity of a specific book is available in stock.
@@ -166,21 +683,51 @@ public class BookDAO {
      * @param bookId         The unique identifier of the desired book.
      * @param desiredQuantity The quantity that a user wants to purchase.
      * @return true if the desired quantity is available in stock, false otherwise.
+     * @see #getAvailability(Collection)
      */
     public static boolean isBookInStock(int bookId, int desiredQuantity) {
-        String query = "SELECT quantity FROM books WHERE id = ?";
-        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setInt(1, bookId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                int currentStock = rs.getInt("quantity");
-                return currentStock >= desiredQuantity;
+        Map<Integer, BookAvailability> availability = getAvailability(List.of(bookId));
+        BookAvailability current = availability == null ? null : availability.get(bookId);
+        return current != null && current.getAvailable() >= desiredQuantity;
+    }
+
+    /**
+     * Reads the current stock and price of several books in one query (one per {@value #MAX_IN_LIST} ids),
+     * instead of one query per book. When the {@link InventoryEngine} is enabled, the stock comes from
+     * the engine and only the prices are read from the database.
+     *
+     * @param ids The unique identifiers of the books to check.
+     * @return A map from book id to its availability; ids that do not exist in the database are absent.
+     *         Null if the stock could not be read, so callers can tell a failure from deleted books.
+     */
+    public static Map<Integer, BookAvailability> getAvailability(Collection<Integer> ids) {
+        Map<Integer, BookAvailability> availability = new HashMap<>();
+        List<Integer> idList = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (idList.isEmpty()) {
+            return availability;
+        }
+
+        boolean useEngine = InventoryEngine.isEnabled();
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection()) {
+            for (int from = 0; from < idList.size(); from += MAX_IN_LIST) {
+                List<Integer> chunk = idList.subList(from, Math.min(from + MAX_IN_LIST, idList.size()));
+                String query = "SELECT id, quantity, price FROM books WHERE id IN (" + SqlHelper.inList(chunk.size()) + ")";
+                try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                    SqlHelper.bindInList(stmt, 1, chunk);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            int id = rs.getInt("id");
+                            int quantity = useEngine ? InventoryEngine.getInstance().getAvailable(id) : rs.getInt("quantity");
+                            availability.put(id, new BookAvailability(id, quantity, rs.getDouble("price")));
+                        }
+                    }
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
+            return null;
         }
-        return false;
+        return availability;
     }
 
     /**
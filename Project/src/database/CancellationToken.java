@@ -0,0 +1,120 @@
+package database;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Lets the caller of a query give up on it, for example when a newer search has made its result useless.
+ * <p>
+ * Work that checks {@link #throwIfCancelled()} stops at its next check. Statements executed on behalf of the
+ * token are {@linkplain #register registered} while they run, and cancelling the token calls
+ * {@link Statement#cancel()} on them, so MySQL stops the query instead of finishing it for nobody. The driver
+ * sends the cancel over a separate connection, so statements are cancelled on the "query-cancel" thread and
+ * {@link #cancel()} never blocks its caller. Cancelled queries end with a {@link CancellationException}.
+ * </p>
+ * A statement is unregistered before it is closed and may be reused from the statement cache afterwards, so
+ * cancelling and unregistering lock each other out: a statement is never cancelled once it has been returned.
+ */
+
+public class CancellationToken {
+
+    /**
+     * A token that is never cancelled, for callers that always want the result.
+     */
+    public static final CancellationToken NONE = new CancellationToken(false);
+
+    private static final ExecutorService CANCELLER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "query-cancel");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final boolean cancellable;
+    private final Set<Statement> statements = new LinkedHashSet<>();
+    private volatile boolean cancelled;
+
+    public CancellationToken() {
+        this(true);
+    }
+
+    private CancellationToken(boolean cancellable) {
+        this.cancellable = cancellable;
+    }
+
+    /**
+     * Cancels the work of this token and every statement running on its behalf. Does nothing the second time.
+     */
+    public void cancel() {
+        if (!cancellable || cancelled) {
+            return;
+        }
+        cancelled = true;
+        CANCELLER.execute(() -> {
+            synchronized (statements) {
+                for (Statement statement : statements) {
+                    cancel(statement);
+                }
+                statements.clear();
+            }
+        });
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException If the token has been cancelled.
+     */
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Tracks a statement about to be executed for this token; it is cancelled right away if the token
+     * already is.
+     */
+    void register(Statement statement) {
+        if (!cancellable) {
+            return;
+        }
+        synchronized (statements) {
+            throwIfCancelled();
+            statements.add(statement);
+        }
+    }
+
+    /**
+     * Stops tracking a statement that has finished, waiting for a cancel of it that is under way.
+     */
+    void unregister(Statement statement) {
+        if (!cancellable) {
+            return;
+        }
+        synchronized (statements) {
+            statements.remove(statement);
+        }
+    }
+
+    private static void cancel(Statement statement) {
+        try {
+            statement.cancel();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (statements) {
+            return "CancellationToken[cancelled=" + cancelled + ", statements=" + statements.size() + "]";
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package database;
+
+import model.Book;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Represents a data access object (DAO) for the persistent shopping carts stored in the {@code cart_items} table.
+ * <p>
+ * Primary responsibilities of this DAO include:
+ * <ul>
+ *     <li>Loading a user's cart together with its books in a single query.</li>
+ *     <li>Writing a batch of coalesced cart changes for many users in one transaction.</li>
+ * </ul>
+ * </p>
+ * The table is created by {@code Project/sql/cart_items.sql}. Writes are normally issued by
+ * {@link CartPersistence}, not once per click.
+ *
+ * @see CartPersistence
+ */
+
+public class CartDAO {
+
+    /**
+     * Loads the saved cart of a user with one query joining the cart lines to their books.
+     *
+     * @param userId The unique identifier of the user.
+     * @return The saved books and their quantities, in the order they were first added.
+     */
+    public Map<Book, Integer> loadCart(int userId) {
+        Map<Book, Integer> items = new LinkedHashMap<>();
+        String query = "SELECT b.*, c.quantity AS cart_quantity FROM cart_items c JOIN books b ON b.id = c.book_id "
+                + "WHERE c.user_id = ? ORDER BY c.added_at, c.book_id";
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    items.put(BookDAO.readBook(rs), rs.getInt("cart_quantity"));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return items;
+    }
+
+    /**
+     * Writes coalesced cart changes in one transaction: the carts of {@code clearedUsers} are emptied first,
+     * then every line is upserted, or deleted when its quantity is 0. Each kind of statement is sent as one batch.
+     *
+     * @param clearedUsers The users whose carts were emptied since the last write.
+     * @param lines        The latest quantity of every changed line, keyed by {@link #lineKey(int, int)}.
+     * @return true if the changes were stored, false if they should be retried.
+     */
+    public boolean writeChanges(Collection<Integer> clearedUsers, Map<Long, Integer> lines) {
+        String clearSQL = "DELETE FROM cart_items WHERE user_id = ?";
+        String upsertSQL = "INSERT INTO cart_items (user_id, book_id, quantity) VALUES (?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE quantity = VALUES(quantity)";
+        String deleteSQL = "DELETE FROM cart_items WHERE user_id = ? AND book_id = ?";
+
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement clearStmt = conn.prepareStatement(clearSQL);
+                 PreparedStatement upsertStmt = conn.prepareStatement(upsertSQL);
+                 PreparedStatement deleteStmt = conn.prepareStatement(deleteSQL)) {
+                for (Integer userId : clearedUsers) {
+                    clearStmt.setInt(1, userId);
+                    clearStmt.addBatch();
+                }
+                boolean hasUpserts = false;
+                boolean hasDeletes = false;
+                for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+                    int userId = (int) (line.getKey() >>> 32);
+                    int bookId = (int) (long) line.getKey();
+                    if (line.getValue() > 0) {
+                        upsertStmt.setInt(1, userId);
+                        upsertStmt.setInt(2, bookId);
+                        upsertStmt.setInt(3, line.getValue());
+                        upsertStmt.addBatch();
+                        hasUpserts = true;
+                    } else {
+                        deleteStmt.setInt(1, userId);
+                        deleteStmt.setInt(2, bookId);
+                        deleteStmt.addBatch();
+                        hasDeletes = true;
+                    }
+                }
+
+                if (!clearedUsers.isEmpty()) {
+                    clearStmt.executeBatch();
+                }
+                if (hasDeletes) {
+                    deleteStmt.executeBatch();
+                }
+                if (hasUpserts) {
+                    upsertStmt.executeBatch();
+                }
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Checks once whether the {@code cart_items} table exists, without reading from it.
+     *
+     * @return false if the table is missing; true if it exists or the check itself could not be made.
+     */
+    public boolean isTableAvailable() {
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM cart_items LIMIT 0");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return true;
+        } catch (SQLException e) {
+            if (SqlHelper.isMissingSchema(e)) {
+                return false;
+            }
+            e.printStackTrace();
+            return true;
+        }
+    }
+
+    /**
+     * Combines a user id and a book id into the key of one cart line.
+     */
+    public static long lineKey(int userId, int bookId) {
+        return ((long) userId << 32) | (bookId & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,236 @@
+package database;
+
+import event.CartChangeEvent;
+import event.CartChangeListener;
+import model.Book;
+import model.Cart;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind persistence for the shopping carts of logged-in users.
+ * <p>
+ * An attached cart is followed through its {@link CartChangeEvent}s. Changes are not written one by one:
+ * only the latest quantity of every changed line is kept in memory, and a background thread flushes
+ * them every {@code cart.persist.flushIntervalMillis} with {@link CartDAO#writeChanges}, one transaction
+ * and a few batches for all users together. Ten clicks on the same line between two flushes cost one
+ * upsert. {@link #flushSoon()} triggers an early flush, for example after checkout, and a final flush
+ * runs at shutdown. A failed flush keeps its changes for the next attempt.
+ * </p>
+ * Persistence is off unless {@code cart.persist.enabled} is set, and needs the table of
+ * {@code sql/cart_items.sql}; if the table is missing, persistence turns itself off once with a message.
+ *
+ * @see CartDAO
+ * @see controller.CartController
+ */
+
+public class CartPersistence {
+
+    private static CartPersistence instance;
+    private static Boolean tableAvailable;
+
+    private final CartDAO cartDAO = new CartDAO();
+    private final Map<Cart, Attachment> attachments = new IdentityHashMap<>();
+    private final Map<Long, Integer> pendingLines = new HashMap<>();
+    private final Set<Integer> pendingClears = new HashSet<>();
+    private final ScheduledExecutorService flusher;
+
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong writtenLines = new AtomicLong();
+
+    private CartPersistence() {
+        long interval = Math.max(100, DatabaseConnectionManager.getInstance().getLongProperty("cart.persist.flushIntervalMillis", 2000));
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cart-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "cart-final-flush"));
+    }
+
+    /**
+     * @return true if {@code cart.persist.enabled} is set and the {@code cart_items} table exists.
+     */
+    public static synchronized boolean isEnabled() {
+        if (!DatabaseConnectionManager.getInstance().getBooleanProperty("cart.persist.enabled", false)) {
+            return false;
+        }
+        if (tableAvailable == null) {
+            tableAvailable = new CartDAO().isTableAvailable();
+            if (!tableAvailable) {
+                System.out.println("Cart persistence is disabled: the cart_items table does not exist (see sql/cart_items.sql).");
+            }
+        }
+        return tableAvailable;
+    }
+
+    public static synchronized CartPersistence getInstance() {
+        if (instance == null) {
+            instance = new CartPersistence();
+        }
+        return instance;
+    }
+
+    /**
+     * Merges the saved cart of a user into the session cart with one query and starts persisting its changes.
+     * Lines already in the session cart win over saved ones and are saved as well.
+     *
+     * @param userId The unique identifier of the logged-in user.
+     * @param cart   The session cart to fill.
+     */
+    public void restore(int userId, Cart cart) {
+        Map<Book, Integer> saved = cartDAO.loadCart(userId);
+        synchronized (cart) {
+            Map<Book, Integer> unsaved = cart.getItems();
+            for (Map.Entry<Book, Integer> line : saved.entrySet()) {
+                if (!unsaved.containsKey(line.getKey())) {
+                    cart.addBook(line.getKey(), line.getValue());
+                }
+            }
+            attach(userId, cart);
+            for (Map.Entry<Book, Integer> line : unsaved.entrySet()) {
+                record(CartDAO.lineKey(userId, line.getKey().getId()), line.getValue());
+            }
+        }
+    }
+
+    /**
+     * Starts persisting the changes of a cart for the given user.
+     */
+    public synchronized void attach(int userId, Cart cart) {
+        if (attachments.containsKey(cart)) {
+            return;
+        }
+        Attachment attachment = new Attachment(userId);
+        attachments.put(cart, attachment);
+        cart.addCartChangeListener(attachment);
+    }
+
+    /**
+     * Stops persisting a cart, for example on logout. Changes made before are still flushed.
+     */
+    public synchronized void detach(Cart cart) {
+        Attachment attachment = attachments.remove(cart);
+        if (attachment != null) {
+            cart.removeCartChangeListener(attachment);
+        }
+    }
+
+    /**
+     * Asks the background thread to flush now instead of at the next interval.
+     */
+    public void flushSoon() {
+        flusher.execute(this::flushQuietly);
+    }
+
+    /**
+     * Writes all pending changes on the calling thread.
+     *
+     * @return true if there was nothing to write or the write succeeded.
+     */
+    public boolean flush() {
+        Set<Integer> clears;
+        Map<Long, Integer> lines;
+        synchronized (this) {
+            if (pendingClears.isEmpty() && pendingLines.isEmpty()) {
+                return true;
+            }
+            clears = new HashSet<>(pendingClears);
+            lines = new HashMap<>(pendingLines);
+            pendingClears.clear();
+            pendingLines.clear();
+        }
+
+        if (cartDAO.writeChanges(clears, lines)) {
+            flushes.incrementAndGet();
+            writtenLines.addAndGet(lines.size());
+            return true;
+        }
+
+        // Put the changes back behind any newer ones: a newer clear of the same cart supersedes them,
+        // and a newer quantity of the same line wins.
+        synchronized (this) {
+            for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+                if (!pendingClears.contains((int) (line.getKey() >>> 32))) {
+                    pendingLines.putIfAbsent(line.getKey(), line.getValue());
+                }
+            }
+            pendingClears.addAll(clears);
+        }
+        return false;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private synchronized void record(long lineKey, int quantity) {
+        changes.incrementAndGet();
+        pendingLines.put(lineKey, quantity);
+    }
+
+    private synchronized void recordClear(int userId) {
+        changes.incrementAndGet();
+        pendingClears.add(userId);
+        Iterator<Long> keys = pendingLines.keySet().iterator();
+        while (keys.hasNext()) {
+            if ((int) (keys.next() >>> 32) == userId) {
+                keys.remove();
+            }
+        }
+    }
+
+    public long getChangeCount() {
+        return changes.get();
+    }
+
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    public long getWrittenLineCount() {
+        return writtenLines.get();
+    }
+
+    public synchronized int getPendingCount() {
+        return pendingLines.size() + pendingClears.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CartPersistence[attached=%d, pending=%d, changes=%d, flushes=%d, writtenLines=%d]",
+                attachments.size(), getPendingCount(), getChangeCount(), getFlushCount(), getWrittenLineCount());
+    }
+
+    private final class Attachment implements CartChangeListener {
+        private final int userId;
+
+        private Attachment(int userId) {
+            this.userId = userId;
+        }
+
+        @Override
+        public void cartChanged(CartChangeEvent event) {
+            if (event.getType() == CartChangeEvent.Type.CLEARED) {
+                recordClear(userId);
+            } else if (event.getType() != CartChangeEvent.Type.MOVED) {
+                record(CartDAO.lineKey(userId, event.getBook().getId()), event.getQuantity());
+            }
+        }
+    }
+}
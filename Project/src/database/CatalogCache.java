@@ -0,0 +1,359 @@
+package database;
+
+import event.CatalogChangeEvent;
+import event.CatalogChangeListener;
+import model.Book;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A read-through, in-memory cache of {@link Book} records keyed by book id, shared by the whole application.
+ * <p>
+ * Entries expire after {@code catalog.cache.ttlMillis} and the cache holds at most
+ * {@code catalog.cache.maxSize} books, evicting the least recently used ones first. The full catalog
+ * can be loaded in one bulk query as a snapshot; missing or expired entries are re-read in a single
+ * {@code IN} query instead of one query per book.
+ * </p>
+ * Writes through {@link BookDAO} invalidate the affected entries, so stock changes made by this
+ * application are visible on the next read. Hit ratio and load time counters are available for monitoring.
+ * Every load and invalidation is published as a {@link CatalogChangeEvent} to registered listeners.
+ *
+ * @see BookDAO
+ * @see controller.BookController
+ */
+
+public class CatalogCache {
+
+    private static CatalogCache instance;
+
+    private final long ttlMillis;
+    private final int maxSize;
+    private final LinkedHashMap<Integer, CacheEntry> entries;
+    private List<Integer> snapshotIds;
+    private long snapshotLoadedAt;
+    private final List<CatalogChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong totalLoadNanos = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private CatalogCache() {
+        DatabaseConnectionManager config = DatabaseConnectionManager.getInstance();
+        this.ttlMillis = config.getLongProperty("catalog.cache.ttlMillis", 30000);
+        this.maxSize = Math.max(1, config.getIntProperty("catalog.cache.maxSize", 10000));
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CacheEntry> eldest) {
+                if (size() > CatalogCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static synchronized CatalogCache getInstance() {
+        if (instance == null) {
+            instance = new CatalogCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the book with the given id, loading it from the database on a miss.
+     *
+     * @param id The unique identifier of the book.
+     * @return The book, or null if it does not exist.
+     */
+    public Book getBook(int id) {
+        synchronized (this) {
+            Book cached = lookup(id);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+
+        misses.incrementAndGet();
+        long start = System.nanoTime();
+        Book book = BookDAO.getBookById(id);
+        recordLoad(start);
+
+        if (book != null) {
+            synchronized (this) {
+                entries.put(id, new CacheEntry(book));
+            }
+            fire(CatalogChangeEvent.loaded(List.of(book)));
+        }
+        return book;
+    }
+
+    /**
+     * Returns the books with the given ids, loading every missing or expired one in a single query.
+     *
+     * @param ids The identifiers of the books to fetch.
+     * @return A map from book id to book; ids that do not exist in the database are absent.
+     */
+    public Map<Integer, Book> getBooks(Collection<Integer> ids) {
+        Map<Integer, Book> result = new LinkedHashMap<>();
+        List<Integer> missing = new ArrayList<>();
+
+        synchronized (this) {
+            for (Integer id : new LinkedHashSet<>(ids)) {
+                Book cached = lookup(id);
+                if (cached != null) {
+                    hits.incrementAndGet();
+                    result.put(id, cached);
+                } else {
+                    misses.incrementAndGet();
+                    missing.add(id);
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            long start = System.nanoTime();
+            List<Book> loaded = BookDAO.getBooksByIds(missing);
+            recordLoad(start);
+
+            synchronized (this) {
+                for (Book book : loaded) {
+                    entries.put(book.getId(), new CacheEntry(book));
+                    result.put(book.getId(), book);
+                }
+            }
+            fire(CatalogChangeEvent.loaded(loaded));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the whole catalog. The catalog is loaded in one bulk query and served from memory until
+     * the snapshot expires; individually invalidated books are refreshed in one batched query.
+     * Catalogs larger than the cache size are always read from the database.
+     *
+     * @return A list of all books, in database order.
+     */
+    public List<Book> getAllBooks() {
+        List<Integer> ids;
+        synchronized (this) {
+            ids = isSnapshotFresh() ? snapshotIds : null;
+        }
+        if (ids != null) {
+            Map<Integer, Book> books = getBooks(ids);
+            return new ArrayList<>(books.values());
+        }
+
+        misses.incrementAndGet();
+        long start = System.nanoTime();
+        List<Book> books = new BookDAO().getAllBooks();
+        recordLoad(start);
+
+        putAll(books, true);
+        return books;
+    }
+
+    /**
+     * Stores freshly loaded books, for example results of a search query, so later lookups by id hit the cache.
+     */
+    public void putAll(Collection<Book> books) {
+        putAll(books, false);
+    }
+
+    private void putAll(Collection<Book> books, boolean snapshot) {
+        synchronized (this) {
+            List<Integer> ids = new ArrayList<>(books.size());
+            for (Book book : books) {
+                entries.put(book.getId(), new CacheEntry(book));
+                ids.add(book.getId());
+            }
+            if (snapshot && books.size() <= maxSize) {
+                snapshotIds = ids;
+                snapshotLoadedAt = System.currentTimeMillis();
+            }
+        }
+        if (!books.isEmpty()) {
+            fire(CatalogChangeEvent.loaded(books));
+        }
+    }
+
+    /**
+     * Applies books written and deleted elsewhere, as found by {@link CatalogSync}: written books replace
+     * their cached copies and join the catalog snapshot, deleted ones leave both. Listeners receive the
+     * written books as loaded and the deleted ids as deleted, so they can follow without reading anything.
+     *
+     * @param written The current state of the written books.
+     * @param deleted The ids of the deleted books.
+     */
+    public void applyChanges(Collection<Book> written, Collection<Integer> deleted) {
+        if (written.isEmpty() && deleted.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            for (Book book : written) {
+                entries.put(book.getId(), new CacheEntry(book));
+            }
+            for (Integer id : deleted) {
+                entries.remove(id);
+            }
+            if (snapshotIds != null) {
+                Set<Integer> ids = new LinkedHashSet<>(snapshotIds);
+                ids.removeAll(deleted);
+                for (Book book : written) {
+                    ids.add(book.getId());
+                }
+                snapshotIds = ids.size() <= maxSize ? new ArrayList<>(ids) : null;
+            }
+        }
+        if (!written.isEmpty()) {
+            fire(CatalogChangeEvent.loaded(new ArrayList<>(written)));
+        }
+        if (!deleted.isEmpty()) {
+            fire(CatalogChangeEvent.deleted(new ArrayList<>(deleted)));
+        }
+    }
+
+    /**
+     * Drops the cached copy of a book after it has been written, so the next read goes to the database.
+     *
+     * @param id The unique identifier of the changed book.
+     */
+    public void invalidate(int id) {
+        synchronized (this) {
+            invalidations.incrementAndGet();
+            entries.remove(id);
+        }
+        fire(CatalogChangeEvent.invalidated(List.of(id)));
+    }
+
+    /**
+     * Drops the catalog snapshot, for example after a book has been added, so the next
+     * {@link #getAllBooks()} reloads the full list of ids.
+     */
+    public void invalidateSnapshot() {
+        synchronized (this) {
+            invalidations.incrementAndGet();
+            snapshotIds = null;
+        }
+        fire(CatalogChangeEvent.added());
+    }
+
+    /**
+     * Drops every cached book and the catalog snapshot.
+     */
+    public void invalidateAll() {
+        synchronized (this) {
+            invalidations.incrementAndGet();
+            entries.clear();
+            snapshotIds = null;
+        }
+        fire(CatalogChangeEvent.reset());
+    }
+
+    public void addCatalogChangeListener(CatalogChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeCatalogChangeListener(CatalogChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fire(CatalogChangeEvent event) {
+        for (CatalogChangeListener listener : listeners) {
+            try {
+                listener.catalogChanged(event);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private Book lookup(int id) {
+        CacheEntry entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.loadedAt > ttlMillis) {
+            entries.remove(id);
+            return null;
+        }
+        return entry.book;
+    }
+
+    private boolean isSnapshotFresh() {
+        return snapshotIds != null && System.currentTimeMillis() - snapshotLoadedAt <= ttlMillis;
+    }
+
+    private void recordLoad(long startNanos) {
+        loads.incrementAndGet();
+        totalLoadNanos.addAndGet(System.nanoTime() - startNanos);
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    public double getAverageLoadMillis() {
+        long count = loads.get();
+        return count == 0 ? 0.0 : totalLoadNanos.get() / (count * 1_000_000.0);
+    }
+
+    public double getTotalLoadMillis() {
+        return totalLoadNanos.get() / 1_000_000.0;
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CatalogCache[size=%d, hits=%d, misses=%d, hitRatio=%.2f, loads=%d, avgLoad=%.2fms, evictions=%d, invalidations=%d]",
+                size(), getHitCount(), getMissCount(), getHitRatio(), getLoadCount(), getAverageLoadMillis(),
+                getEvictionCount(), getInvalidationCount());
+    }
+
+    private static final class CacheEntry {
+        private final Book book;
+        private final long loadedAt;
+
+        private CacheEntry(Book book) {
+            this.book = book;
+            this.loadedAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package database;
+
+import model.Book;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The rows of the books table written or deleted since a watermark, with the time each change was recorded
+ * and the watermark to ask from next time.
+ * <p>
+ * Times are milliseconds since the epoch as read from the database clock, so they can be compared with
+ * each other and with the next watermark regardless of the clock of this machine.
+ * </p>
+ *
+ * @see BookDAO#getBooksChangedSince(long)
+ * @see CatalogSync
+ */
+
+public class CatalogChanges {
+
+    private final Map<Integer, Book> books = new LinkedHashMap<>();
+    private final Map<Integer, Long> updatedAt = new LinkedHashMap<>();
+    private final Map<Integer, Long> deletedAt = new LinkedHashMap<>();
+    private final long watermark;
+
+    public CatalogChanges(long watermark) {
+        this.watermark = watermark;
+    }
+
+    /**
+     * Records a written book; a deletion of the same book read earlier is dropped, as it was stored again.
+     */
+    void addBook(Book book, long updatedAt) {
+        books.put(book.getId(), book);
+        deletedAt.remove(book.getId());
+        this.updatedAt.put(book.getId(), updatedAt);
+    }
+
+    void addDeletion(int bookId, long deletedAt) {
+        this.deletedAt.put(bookId, deletedAt);
+    }
+
+    /**
+     * @return The written books as they are now, ordered by when they were written.
+     */
+    public List<Book> getBooks() {
+        return new ArrayList<>(books.values());
+    }
+
+    /**
+     * @return When a book returned by {@link #getBooks()} was last written, or 0 if it is not one of them.
+     */
+    public long getUpdatedAt(int bookId) {
+        return updatedAt.getOrDefault(bookId, 0L);
+    }
+
+    /**
+     * @return The ids of the deleted books. A book that was deleted and then stored again is not among them.
+     */
+    public List<Integer> getDeletedIds() {
+        return new ArrayList<>(deletedAt.keySet());
+    }
+
+    /**
+     * @return When a book returned by {@link #getDeletedIds()} was deleted, or 0 if it is not one of them.
+     */
+    public long getDeletedAt(int bookId) {
+        return deletedAt.getOrDefault(bookId, 0L);
+    }
+
+    /**
+     * @return The database time at which the changes were read; pass it to the next query.
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    public boolean isEmpty() {
+        return books.isEmpty() && deletedAt.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogChanges[books=" + books.size() + ", deleted=" + deletedAt.size() + ", watermark=" + watermark + "]";
+    }
+}
@@ -0,0 +1,177 @@
+package database;
+
+import model.Book;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Polls the books table for rows written or deleted since the last poll and applies only those to the
+ * {@link CatalogCache}, which publishes them to the search services, the columnar catalog and the views.
+ * <p>
+ * Every {@code catalog.sync.intervalMillis} the "catalog-sync" thread asks
+ * {@link BookDAO#getBooksChangedSince(long)} for the changes since its watermark, so a poll costs as much as
+ * the number of changes, not the size of the catalog, and changes made by other instances of the application
+ * or directly in the database show up without a reload. The watermark is read from the database clock.
+ * </p>
+ * A transaction that commits after a poll may carry an {@code updated_at} from before it, so every poll
+ * reaches back {@code catalog.sync.overlapMillis} behind the watermark. Changes that were already applied
+ * with the same time are skipped, so the overlap costs one indexed range read and nothing downstream. The
+ * poller is enabled with {@code catalog.sync.enabled} and needs the change tracking of
+ * {@code sql/books_change_tracking.sql}; without it the poller stays off, with one message at startup.
+ *
+ * @see CatalogChanges
+ */
+
+public class CatalogSync {
+
+    private static CatalogSync instance;
+    private static Boolean changeTrackingAvailable;
+
+    private final long overlapMillis;
+    private final ScheduledExecutorService poller;
+
+    // Confined to the poller thread.
+    private long watermark;
+    private final Map<Integer, Long> appliedUpdates = new HashMap<>();
+    private final Map<Integer, Long> appliedDeletions = new HashMap<>();
+
+    private final AtomicLong polls = new AtomicLong();
+    private final AtomicLong failedPolls = new AtomicLong();
+    private final AtomicLong updatedBooks = new AtomicLong();
+    private final AtomicLong deletedBooks = new AtomicLong();
+    private volatile long lastPollMillis;
+
+    private CatalogSync() {
+        DatabaseConnectionManager config = DatabaseConnectionManager.getInstance();
+        long interval = Math.max(100, config.getLongProperty("catalog.sync.intervalMillis", 5000));
+        this.overlapMillis = getOverlapMillis();
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "catalog-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Everything loaded from now on is at least as new as the first watermark.
+        poller.execute(() -> watermark = BookDAO.getDatabaseTime());
+        poller.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return true if {@code catalog.sync.enabled} is set and the change tracking is installed.
+     */
+    public static boolean isEnabled() {
+        if (!DatabaseConnectionManager.getInstance().getBooleanProperty("catalog.sync.enabled", false)) {
+            return false;
+        }
+        if (!isChangeTrackingAvailable()) {
+            System.out.println("Catalog sync is disabled: the books table has no change tracking (see sql/books_change_tracking.sql).");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the {@code updated_at} column and the {@code book_deletions} table exist; checked once.
+     */
+    public static synchronized boolean isChangeTrackingAvailable() {
+        if (changeTrackingAvailable == null) {
+            changeTrackingAvailable = BookDAO.isChangeTrackingAvailable();
+        }
+        return changeTrackingAvailable;
+    }
+
+    /**
+     * @return How far each query for changes reaches back behind the previous watermark, from
+     *         {@code catalog.sync.overlapMillis}.
+     */
+    public static long getOverlapMillis() {
+        return Math.max(0, DatabaseConnectionManager.getInstance().getLongProperty("catalog.sync.overlapMillis", 5000));
+    }
+
+    public static synchronized CatalogSync getInstance() {
+        if (instance == null) {
+            instance = new CatalogSync();
+        }
+        return instance;
+    }
+
+    /**
+     * Reads and applies the changes since the last poll.
+     */
+    private void poll() {
+        try {
+            if (watermark == 0) {
+                watermark = BookDAO.getDatabaseTime();
+                return;
+            }
+            long start = System.currentTimeMillis();
+            CatalogChanges changes = BookDAO.getBooksChangedSince(watermark - overlapMillis);
+            if (changes == null) {
+                failedPolls.incrementAndGet();
+                return;
+            }
+
+            List<Book> written = new ArrayList<>();
+            for (Book book : changes.getBooks()) {
+                long updatedAt = changes.getUpdatedAt(book.getId());
+                Long applied = appliedUpdates.put(book.getId(), updatedAt);
+                if (applied == null || applied != updatedAt) {
+                    written.add(book);
+                }
+            }
+            List<Integer> deleted = new ArrayList<>();
+            for (Integer id : changes.getDeletedIds()) {
+                long deletedAt = changes.getDeletedAt(id);
+                Long applied = appliedDeletions.put(id, deletedAt);
+                if (applied == null || applied != deletedAt) {
+                    deleted.add(id);
+                }
+            }
+            long horizon = changes.getWatermark() - overlapMillis;
+            appliedUpdates.values().removeIf(time -> time < horizon);
+            appliedDeletions.values().removeIf(time -> time < horizon);
+
+            CatalogCache.getInstance().applyChanges(written, deleted);
+            watermark = changes.getWatermark();
+            polls.incrementAndGet();
+            updatedBooks.addAndGet(written.size());
+            deletedBooks.addAndGet(deleted.size());
+            lastPollMillis = System.currentTimeMillis() - start;
+        } catch (RuntimeException e) {
+            failedPolls.incrementAndGet();
+            e.printStackTrace();
+        }
+    }
+
+    public long getPollCount() {
+        return polls.get();
+    }
+
+    public long getFailedPollCount() {
+        return failedPolls.get();
+    }
+
+    public long getUpdatedBookCount() {
+        return updatedBooks.get();
+    }
+
+    public long getDeletedBookCount() {
+        return deletedBooks.get();
+    }
+
+    public long getLastPollMillis() {
+        return lastPollMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CatalogSync[polls=%d, failed=%d, updated=%d, deleted=%d, lastPoll=%dms]",
+                getPollCount(), getFailedPollCount(), getUpdatedBookCount(), getDeletedBookCount(), getLastPollMillis());
+    }
+}
@@ -0,0 +1,73 @@
+package database;
+
+import model.OrderItem;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of a checkout unit of work: whether the order was stored, its generated id, the per-line
+ * stock reservation and how long each phase of the transaction took.
+ *
+ * @see OrderDAO#checkout
+ */
+
+public class CheckoutResult {
+
+    private final boolean successful;
+    private final int orderId;
+    private final StockReservation reservation;
+    private final Map<String, Double> phaseMillis;
+
+    public CheckoutResult(boolean successful, int orderId, StockReservation reservation, Map<String, Double> phaseMillis) {
+        this.successful = successful;
+        this.orderId = orderId;
+        this.reservation = reservation;
+        this.phaseMillis = new LinkedHashMap<>(phaseMillis);
+    }
+
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    /**
+     * @return The generated id of the stored order, or 0 if the checkout failed.
+     */
+    public int getOrderId() {
+        return orderId;
+    }
+
+    /**
+     * @return The per-line stock reservation, or null if the checkout failed before stock was reserved.
+     */
+    public StockReservation getReservation() {
+        return reservation;
+    }
+
+    /**
+     * @return The lines that failed because their quantity was not in stock; empty if the checkout
+     *         succeeded or failed for another reason.
+     */
+    public List<OrderItem> getRejectedItems() {
+        return reservation == null ? new ArrayList<>() : reservation.getRejectedItems();
+    }
+
+    /**
+     * @return The duration of each checkout phase in milliseconds, in the order the phases ran.
+     */
+    public Map<String, Double> getPhaseMillis() {
+        return phaseMillis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Checkout ");
+        builder.append(successful ? "succeeded, order " + orderId : "failed");
+        for (Map.Entry<String, Double> phase : phaseMillis.entrySet()) {
+            builder.append(String.format(", %s=%.2fms", phase.getKey(), phase.getValue()));
+        }
+        return builder.toString();
+    }
+}
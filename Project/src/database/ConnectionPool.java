@@ -0,0 +1,481 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of physical JDBC connections used by {@link DatabaseConnectionManager}.
+ * <p>
+ * Connections handed out by {@link #borrow()} are proxies: calling {@code close()} on them returns the
+ * underlying physical connection to the pool instead of closing the socket, so the existing
+ * try-with-resources blocks in the DAOs keep working unchanged.
+ * </p>
+ * The pool provides:
+ * <ul>
+ *     <li>A minimum number of warm connections and a hard maximum of borrowed connections.</li>
+ *     <li>Validation of idle connections on borrow.</li>
+ *     <li>Eviction of connections that stay idle longer than the configured timeout.</li>
+ *     <li>A borrow timeout, so callers fail fast instead of waiting forever for a free connection.</li>
+ *     <li>Leak detection that reports the stack trace of a borrower holding a connection for too long.</li>
+ *     <li>Counters for borrows, borrow wait time, timeouts and evictions.</li>
+ *     <li>A per-connection {@link StatementCache}, so repeated SQL reuses already parsed statements.</li>
+ * </ul>
+ *
+ * @see DatabaseConnectionManager
+ */
+
+public class ConnectionPool {
+
+    private final String url;
+    private final Properties connectionProperties;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakDetectionThresholdMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowedConnections = ConcurrentHashMap.newKeySet();
+    private final Semaphore borrowPermits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalBorrowWaitNanos = new AtomicLong();
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong idleEvictions = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    ConnectionPool(String url, Properties connectionProperties, int minSize, int maxSize, long borrowTimeoutMillis,
+                   long idleTimeoutMillis, long leakDetectionThresholdMillis, int validationTimeoutSeconds,
+                   long housekeepingIntervalMillis, int statementCacheSize) {
+        this.url = url;
+        this.connectionProperties = connectionProperties;
+        this.maxSize = Math.max(1, maxSize);
+        this.minSize = Math.max(0, Math.min(minSize, this.maxSize));
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.borrowPermits = new Semaphore(this.maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.execute(this::fillToMinimum);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, housekeepingIntervalMillis, housekeepingIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, waiting at most the configured borrow timeout for one to become free.
+     *
+     * @return A pooled connection; closing it returns it to the pool.
+     * @throws SQLException If the timeout elapses, the pool is shut down or a new connection cannot be opened.
+     */
+    public Connection borrow() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down.");
+        }
+
+        long waitStart = System.nanoTime();
+        try {
+            if (!borrowPermits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                borrowTimeouts.incrementAndGet();
+                throw new SQLException("Timed out after " + borrowTimeoutMillis + " ms waiting for a database connection ("
+                        + borrowedConnections.size() + " of " + maxSize + " in use).");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", e);
+        }
+
+        try {
+            PooledConnection pooled = takeValidIdleConnection();
+            if (pooled == null) {
+                pooled = openConnection();
+            }
+            recordBorrowWait(System.nanoTime() - waitStart);
+            pooled.markBorrowed(leakDetectionThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null);
+            borrowedConnections.add(pooled);
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            borrowPermits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeValidIdleConnection() {
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            if (pooled.isValid(validationTimeoutSeconds)) {
+                return pooled;
+            }
+            validationFailures.incrementAndGet();
+            discard(pooled);
+        }
+        return null;
+    }
+
+    private PooledConnection openConnection() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, connectionProperties);
+        totalConnections.incrementAndGet();
+        connectionsCreated.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    private void recordBorrowWait(long waitNanos) {
+        borrowCount.incrementAndGet();
+        totalBorrowWaitNanos.addAndGet(waitNanos);
+        maxBorrowWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /**
+     * Returns a physical connection to the idle list once its proxy has been closed.
+     * Connections left inside a transaction are rolled back; broken ones are discarded.
+     */
+    private void release(PooledConnection pooled) {
+        borrowedConnections.remove(pooled);
+        try {
+            if (shutdown || totalConnections.get() > maxSize || !pooled.resetForReuse()) {
+                discard(pooled);
+            } else {
+                pooled.markIdle();
+                idleConnections.offerFirst(pooled);
+            }
+        } finally {
+            borrowPermits.release();
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        pooled.closePhysical();
+    }
+
+    private void fillToMinimum() {
+        while (!shutdown && totalConnections.get() < minSize) {
+            try {
+                PooledConnection pooled = openConnection();
+                pooled.markIdle();
+                idleConnections.offerLast(pooled);
+            } catch (SQLException e) {
+                System.out.println("Unable to pre-open pooled connection: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void housekeep() {
+        try {
+            evictIdleConnections();
+            detectLeaks();
+            fillToMinimum();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void evictIdleConnections() {
+        if (idleTimeoutMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> iterator = idleConnections.descendingIterator();
+        while (iterator.hasNext() && totalConnections.get() > minSize) {
+            PooledConnection pooled = iterator.next();
+            if (now - pooled.getLastUsedAt() > idleTimeoutMillis && idleConnections.removeFirstOccurrence(pooled)) {
+                idleEvictions.incrementAndGet();
+                discard(pooled);
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        if (leakDetectionThresholdMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : borrowedConnections) {
+            if (!pooled.isLeakReported() && now - pooled.getBorrowedAt() > leakDetectionThresholdMillis) {
+                pooled.setLeakReported();
+                leaksDetected.incrementAndGet();
+                System.out.println("Possible connection leak: connection held for " + (now - pooled.getBorrowedAt())
+                        + " ms on thread " + pooled.getBorrowerThread());
+                Throwable borrowSite = pooled.getBorrowSite();
+                if (borrowSite != null) {
+                    borrowSite.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes every idle connection and stops the housekeeping thread. Borrowed connections are closed
+     * as soon as their borrowers return them.
+     */
+    public void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getActiveConnections() {
+        return borrowedConnections.size();
+    }
+
+    public int getIdleConnections() {
+        return idleConnections.size();
+    }
+
+    public int getThreadsAwaitingConnection() {
+        return borrowPermits.getQueueLength();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public double getAverageBorrowWaitMillis() {
+        long count = borrowCount.get();
+        return count == 0 ? 0.0 : totalBorrowWaitNanos.get() / (count * 1_000_000.0);
+    }
+
+    public double getMaxBorrowWaitMillis() {
+        return maxBorrowWaitNanos.get() / 1_000_000.0;
+    }
+
+    public long getBorrowTimeouts() {
+        return borrowTimeouts.get();
+    }
+
+    public long getConnectionsCreated() {
+        return connectionsCreated.get();
+    }
+
+    public long getValidationFailures() {
+        return validationFailures.get();
+    }
+
+    public long getIdleEvictions() {
+        return idleEvictions.get();
+    }
+
+    public long getLeaksDetected() {
+        return leaksDetected.get();
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    public double getStatementCacheHitRatio() {
+        long hits = statementCacheHits.get();
+        long total = hits + statementCacheMisses.get();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConnectionPool[total=%d, active=%d, idle=%d, waiting=%d, borrows=%d, avgWait=%.2fms, maxWait=%.2fms, timeouts=%d, leaks=%d, stmtHits=%d, stmtMisses=%d]",
+                getTotalConnections(), getActiveConnections(), getIdleConnections(), getThreadsAwaitingConnection(),
+                getBorrowCount(), getAverageBorrowWaitMillis(), getMaxBorrowWaitMillis(), getBorrowTimeouts(), getLeaksDetected(),
+                getStatementCacheHits(), getStatementCacheMisses());
+    }
+
+    /**
+     * A physical connection owned by the pool together with its bookkeeping for eviction and leak detection.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statementCache;
+        private volatile long lastUsedAt = System.currentTimeMillis();
+        private volatile long borrowedAt;
+        private volatile Throwable borrowSite;
+        private volatile String borrowerThread;
+        private volatile boolean leakReported;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = new StatementCache(statementCacheSize, statementCacheHits, statementCacheMisses);
+        }
+
+        private void markBorrowed(Throwable borrowSite) {
+            this.borrowedAt = System.currentTimeMillis();
+            this.borrowSite = borrowSite;
+            this.borrowerThread = Thread.currentThread().getName();
+            this.leakReported = false;
+        }
+
+        private void markIdle() {
+            this.lastUsedAt = System.currentTimeMillis();
+            this.borrowSite = null;
+            this.borrowerThread = null;
+        }
+
+        private boolean isValid(int timeoutSeconds) {
+            try {
+                return !physical.isClosed() && physical.isValid(timeoutSeconds);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Rolls back any transaction left open by the borrower and restores auto-commit.
+         *
+         * @return true if the connection can be handed out again, false if it is broken.
+         */
+        private boolean resetForReuse() {
+            try {
+                if (physical.isClosed()) {
+                    return false;
+                }
+                statementCache.releaseAll();
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                physical.clearWarnings();
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private void closePhysical() {
+            try {
+                statementCache.clear();
+                physical.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new ConnectionHandle(this));
+        }
+
+        private long getLastUsedAt() {
+            return lastUsedAt;
+        }
+
+        private long getBorrowedAt() {
+            return borrowedAt;
+        }
+
+        private Throwable getBorrowSite() {
+            return borrowSite;
+        }
+
+        private String getBorrowerThread() {
+            return borrowerThread;
+        }
+
+        private boolean isLeakReported() {
+            return leakReported;
+        }
+
+        private void setLeakReported() {
+            this.leakReported = true;
+        }
+    }
+
+    /**
+     * The {@link Connection} handed to a borrower. Closing it returns the physical connection to the pool;
+     * any further use of the handle after that fails instead of touching a connection now owned by someone else.
+     */
+    private final class ConnectionHandle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean closed;
+
+        private ConnectionHandle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.physical;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool.");
+            }
+            if (method.getName().equals("prepareStatement")) {
+                if (args.length == 1) {
+                    return pooled.statementCache.prepare(pooled.physical, (Connection) proxy, (String) args[0], Statement.NO_GENERATED_KEYS);
+                }
+                if (args.length == 2 && args[1] instanceof Integer) {
+                    return pooled.statementCache.prepare(pooled.physical, (Connection) proxy, (String) args[0], (Integer) args[1]);
+                }
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -2,7 +2,6 @@ package database;
 
 import java.io.InputStream;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.util.Properties;
 
 /**
@@ -14,9 +13,15 @@ import java.util.Properties;
  * one instance of the database connection manager exists across the application.
  * </p>
  * JDBC driver for MySQL is assumed to be used based on the hard-coded class name for loading the driver.
+ * <p>
+ * Connections are served from a bounded {@link ConnectionPool}, sized and tuned by the {@code db.pool.*}
+ * properties. Closing a connection obtained from {@link #getConnection()} returns it to the pool.
+ * Each pooled connection keeps an LRU cache of server-side prepared statements of
+ * {@code db.statementCache.size} entries.
+ * </p>
  *
+ * @see ConnectionPool
  * @see java.sql.Connection
- * @see java.sql.DriverManager
  * @see java.util.Properties
  */
 
@@ -26,9 +31,12 @@ public class DatabaseConnectionManager {
     private String url;
     private String user;
     private String password;
+    private Properties config = new Properties();
+    private ConnectionPool pool;
 
     private DatabaseConnectionManager() {
         loadDatabaseConfig();
+        initPool();
     }
 
     public static synchronized DatabaseConnectionManager getInstance() {
@@ -53,6 +61,7 @@ public class DatabaseConnectionManager {
             }
 
             prop.load(input);
+            config = prop;
 
             url = prop.getProperty("db.url");
             user = prop.getProperty("db.user");
@@ -63,14 +72,92 @@ public class DatabaseConnectionManager {
     }
 
 
-    public Connection getConnection() {
+    /**
+     * Loads the JDBC driver once and creates the connection pool from the {@code db.pool.*} settings.
+     */
+    private void initPool() {
         try {
             Class.forName("com.mysql.cj.jdbc.Driver");
-            return DriverManager.getConnection(url, user, password);
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+
+        Properties connectionProperties = new Properties();
+        if (user != null) {
+            connectionProperties.setProperty("user", user);
+        }
+        if (password != null) {
+            connectionProperties.setProperty("password", password);
+        }
+        // Let MySQL parse each cached statement once on the server instead of re-sending the SQL text.
+        connectionProperties.setProperty("useServerPrepStmts", String.valueOf(getBooleanProperty("db.useServerPrepStmts", true)));
+        // Send JDBC batches (stock reservations, order item inserts) to the server in as few packets as possible.
+        connectionProperties.setProperty("rewriteBatchedStatements", String.valueOf(getBooleanProperty("db.rewriteBatchedStatements", true)));
+
+        pool = new ConnectionPool(url, connectionProperties,
+                getIntProperty("db.pool.minSize", 2),
+                getIntProperty("db.pool.maxSize", 10),
+                getLongProperty("db.pool.borrowTimeoutMillis", 5000),
+                getLongProperty("db.pool.idleTimeoutMillis", 300000),
+                getLongProperty("db.pool.leakDetectionThresholdMillis", 30000),
+                getIntProperty("db.pool.validationTimeoutSeconds", 2),
+                getLongProperty("db.pool.housekeepingIntervalMillis", 30000),
+                getIntProperty("db.statementCache.size", 32));
+
+        Runtime.getRuntime().addShutdownHook(new Thread(pool::shutdown, "connection-pool-shutdown"));
+    }
+
+    /**
+     * Borrows a connection from the pool. Closing the returned connection hands it back to the pool.
+     *
+     * @return A pooled connection, or null if none could be obtained within the borrow timeout.
+     */
+    public Connection getConnection() {
+        try {
+            return pool.borrow();
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    public String getProperty(String key, String defaultValue) {
+        return config.getProperty(key, defaultValue);
+    }
+
+    public int getIntProperty(String key, int defaultValue) {
+        String value = config.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid integer for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public long getLongProperty(String key, long defaultValue) {
+        String value = config.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public boolean getBooleanProperty(String key, boolean defaultValue) {
+        String value = config.getProperty(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
 }
@@ -1,21 +1,25 @@
 package database;
 
+import inventory.CartReservations;
+import inventory.InventoryEngine;
 import model.*;
 
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-
-import static database.UserDAO.getUserById;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents a data access object (DAO) for {@link Order} entities in the bookstore application.
  * <p>
  * Primary responsibilities of this DAO include:
  * <ul>
- *     <li>Persisting new orders and associated items to the database.</li>
- *     <li>Processing orders by verifying book availability and updating the inventory.</li>
+ *     <li>Checking out new orders: reserving stock and persisting the order and its items in one transaction.</li>
  *     <li>Retrieving specific orders, such as the most recent orders or those linked to a certain user.</li>
  *     <li>Fetching items related to a particular order.</li>
  * </ul>
@@ -29,64 +33,88 @@ import static database.UserDAO.getUserById;
 
 public class OrderDAO {
 
-    private Connection connection;
-
-    public OrderDAO(){
-        this.connection = DatabaseConnectionManager.getInstance().getConnection();
+    /**
+     * Stores a new order as one unit of work: on a single connection and in a single transaction, the
+     * stock for every line is reserved with one batch of guarded decrements, the order row is inserted
+     * (its generated id comes back with the insert, without an extra query) and the items are inserted as
+     * one batch. The transaction is committed once, and only if every line could be reserved.
+     *
+     * @param order The order to be stored; its id is set when the checkout succeeds.
+     * @return The outcome, including the per-line reservation and the duration of each phase.
+     */
+    public CheckoutResult checkout(Order order) {
+        return checkoutBatch(List.of(order)).get(0);
     }
 
     /**
-     * Saves a provided order to the database. This method persists both the order
-     * information and its associated items into their respective tables.
+     * Stores several independent orders in one transaction with a single commit (group commit).
+     * <p>
+     * Stock for all lines of all orders is reserved in one batch of guarded decrements. An order with a
+     * short line is rejected on its own: the stock taken by its other lines is handed back in one
+     * compensating batch, and the remaining orders go ahead. The accepted orders and all of their items are
+     * then inserted with two batched (multi-row) inserts, and each order receives its own generated id.
+     * </p>
+     * When the {@link InventoryEngine} is enabled, stock is reserved against its in-memory counters
+     * instead, and handed back to it if the transaction fails.
+     * <p>
+     * If the transaction of several orders fails, for example because one order refers to a user or book
+     * that no longer exists, it is rolled back and every order is stored again on its own, so only the
+     * orders that fail by themselves are rejected.
+     * </p>
      *
-     * @param order The order to be saved.
-     * @return true if the order and its items are saved successfully, false otherwise.
+     * @param orders The orders to store; the id of every accepted order is set.
+     * @return One outcome per order, in the same order as the input.
      */
-    public boolean saveOrder(Order order) {
-        String insertOrderSQL = "INSERT INTO orders (user_id, order_date) VALUES (?, ?)";
-        String insertOrderItemSQL = "INSERT INTO order_items (order_id, book_id, quantity, price_at_order) VALUES (?, ?, ?, ?)";
+    public List<CheckoutResult> checkoutBatch(List<Order> orders) {
+        Map<String, Double> phaseMillis = new LinkedHashMap<>();
+        List<StockReservation> reservations = new ArrayList<>();
+        boolean useEngine = InventoryEngine.isEnabled();
+        List<Order> engineReserved = new ArrayList<>();
+        long phaseStart = System.nanoTime();
 
         Connection conn = null;
         try {
             conn = DatabaseConnectionManager.getInstance().getConnection();
             conn.setAutoCommit(false);
+            phaseStart = recordPhase(phaseMillis, "connection", phaseStart);
 
-            try (PreparedStatement orderStmt = conn.prepareStatement(insertOrderSQL, Statement.RETURN_GENERATED_KEYS)) {
-                orderStmt.setInt(1, order.getUser().getId());
-                orderStmt.setTimestamp(2, new Timestamp(order.getOrderDate().getTime()));
+            List<Order> accepted = reserveStock(conn, orders, reservations, useEngine);
+            if (useEngine) {
+                engineReserved.addAll(accepted);
+            }
+            phaseStart = recordPhase(phaseMillis, "reserveStock", phaseStart);
 
-                int affectedRows = orderStmt.executeUpdate();
-                if (affectedRows == 0) {
-                    throw new SQLException("Failed to save order, no rows affected.");
-                }
+            if (accepted.isEmpty()) {
+                conn.rollback();
+                recordPhase(phaseMillis, "rollback", phaseStart);
+                return buildResults(orders, reservations, phaseMillis, new HashSet<>());
+            }
 
-                try (ResultSet generatedKeys = orderStmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        int orderId = generatedKeys.getInt(1);
-
-                        try (PreparedStatement itemsStmt = conn.prepareStatement(insertOrderItemSQL)) {
-                            for (OrderItem item : order.getOrderItems()) {
-                                itemsStmt.setInt(1, orderId);
-                                itemsStmt.setInt(2, item.getBook().getId());
-                                itemsStmt.setInt(3, item.getQuantity());
-                                itemsStmt.setDouble(4, item.getPriceAtOrder());
-                                itemsStmt.addBatch();
-                            }
-                            System.out.println("Order items saved for Order ID: " + orderId);
-                            int[] updateCounts = itemsStmt.executeBatch();
-                            System.out.println("Batch updates: " + Arrays.toString(updateCounts));
-                        } catch (BatchUpdateException bue) {
-                        System.out.println("Error with batch update: " + bue.getMessage());
-                    }
+            insertOrders(conn, accepted);
+            phaseStart = recordPhase(phaseMillis, "insertOrders", phaseStart);
 
-                } else {
-                        throw new SQLException("Failed to retrieve order ID.");
+            insertOrderItems(conn, accepted);
+            phaseStart = recordPhase(phaseMillis, "insertItems", phaseStart);
+
+            conn.commit();
+            recordPhase(phaseMillis, "commit", phaseStart);
+
+            // Only now can other readers see the new stock, so the cached books are dropped after the commit.
+
+            if (useEngine) {
+                for (Order order : accepted) {
+                    if (!order.getHeldQuantities().isEmpty()) {
+                        CartReservations.getInstance().recordConverted(order.getHeldQuantities());
+                    }
+                }
+            } else {
+                for (Order order : accepted) {
+                    for (OrderItem item : order.getOrderItems()) {
+                        CatalogCache.getInstance().invalidate(item.getBook().getId());
                     }
                 }
             }
-
-            conn.commit();
-            return true;
+            return buildResults(orders, reservations, phaseMillis, new HashSet<>(accepted));
         } catch (SQLException ex) {
             if (conn != null) {
                 try {
@@ -95,8 +123,21 @@ public class OrderDAO {
                     ex.addSuppressed(rollbackEx);
                 }
             }
-            ex.printStackTrace();
-            return false;
+            for (Order order : orders) {
+                order.setId(0);
+            }
+            if (orders.size() == 1) {
+                ex.printStackTrace();
+                for (Order order : engineReserved) {
+                    InventoryEngine.getInstance().release(order.getOrderItems());
+                }
+                return buildResults(orders, reservations, phaseMillis, new HashSet<>());
+            }
+            System.out.println("Storing " + orders.size() + " orders one by one after the batch failed: " + ex.getMessage());
+            for (Order order : engineReserved) {
+                // The retry converts the holds of the order again.
+                InventoryEngine.getInstance().release(order.getOrderItems(), order.getHeldQuantities());
+            }
         } finally {
             if (conn != null) {
                 try {
@@ -107,95 +148,183 @@ public class OrderDAO {
                 }
             }
         }
-    }
 
+        // Orders already rejected for lack of stock keep their outcome; their holds have been handed back.
+        boolean reserved = reservations.size() == orders.size();
+        List<CheckoutResult> results = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            if (reserved && !reservations.get(i).isFullyReserved()) {
+                results.add(new CheckoutResult(false, 0, reservations.get(i), phaseMillis));
+            } else {
+                results.add(checkout(orders.get(i)));
+            }
+        }
+        return results;
+    }
 
     /**
-     * Processes and finalizes the given order. This involves ensuring that the books
-     * in the order are in stock, and then decrementing the quantity of each book in the
-     * database to reflect the order.
+     * Reserves stock for every order and splits the outcome per order. With the
+     * {@link InventoryEngine} enabled each order is reserved in memory, all or nothing, converting the
+     * copies held for its cart; a rejected order hands its holds back. Otherwise all lines of all orders go
+     * to the database in one batch of guarded decrements, and the lines taken by orders that cannot be
+     * completed are handed back in one compensating batch.
      *
-     * @param order The order to be processed.
-     * @return true if the order is processed successfully (i.e., all books are in stock
-     *         and their quantities have been updated), false otherwise.
+     * @return The orders whose every line was reserved.
      */
-    public boolean processOrder(Order order) {
-        Connection conn = null;
-        try {
-            conn = DatabaseConnectionManager.getInstance().getConnection();
-            conn.setAutoCommit(false);
-
-            for (OrderItem item : order.getOrderItems()) {
-                int bookId = item.getBook().getId();
-                int orderedQuantity = item.getQuantity();
-                if (!BookDAO.isBookInStock(bookId, orderedQuantity)) {
-                    System.out.println("Book with ID " + bookId + " is out of stock or doesn't have enough quantity.");
-                    conn.rollback();
-                    return false;
+    private List<Order> reserveStock(Connection conn, List<Order> orders, List<StockReservation> reservations,
+                                     boolean useEngine) throws SQLException {
+        List<Order> accepted = new ArrayList<>();
+        if (useEngine) {
+            InventoryEngine engine = InventoryEngine.getInstance();
+            for (Order order : orders) {
+                StockReservation reservation = engine.reserve(order.getOrderItems(), order.getHeldQuantities());
+                reservations.add(reservation);
+                if (reservation.isFullyReserved()) {
+                    accepted.add(order);
+                } else {
+                    if (!order.getHeldQuantities().isEmpty()) {
+                        CartReservations.getInstance().releaseClaimed(order.getHeldQuantities());
+                    }
+                    logRejectedItems(reservation);
                 }
+            }
+            return accepted;
+        }
 
-                if (!BookDAO.decrementBookQuantity(conn, bookId, orderedQuantity)) {
-                    System.out.println("Failed to update quantity for book with ID " + bookId);
-                    conn.rollback();
-                    return false;
+        List<OrderItem> allItems = new ArrayList<>();
+        for (Order order : orders) {
+            allItems.addAll(order.getOrderItems());
+        }
+        StockReservation combined = BookDAO.reserveStock(conn, allItems);
+
+        List<OrderItem> toRelease = new ArrayList<>();
+        int line = 0;
+        for (Order order : orders) {
+            int lineCount = order.getOrderItems().size();
+            boolean[] reserved = new boolean[lineCount];
+            for (int i = 0; i < lineCount; i++) {
+                reserved[i] = combined.isReserved(line + i);
+            }
+            StockReservation reservation = new StockReservation(order.getOrderItems(), reserved);
+            reservations.add(reservation);
+
+            if (reservation.isFullyReserved()) {
+                accepted.add(order);
+            } else {
+                for (int i = 0; i < lineCount; i++) {
+                    if (reserved[i]) {
+                        toRelease.add(order.getOrderItems().get(i));
+                    }
                 }
+                logRejectedItems(reservation);
             }
+            line += lineCount;
+        }
+        BookDAO.releaseStock(conn, toRelease);
+        return accepted;
+    }
 
-            conn.commit();
-            return true;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            try {
-                if (conn != null) {
-                    conn.rollback();
+    private static void logRejectedItems(StockReservation reservation) {
+        for (OrderItem item : reservation.getRejectedItems()) {
+            System.out.println("Book with ID " + item.getBook().getId() + " is out of stock or doesn't have enough quantity.");
+        }
+    }
+
+    private List<CheckoutResult> buildResults(List<Order> orders, List<StockReservation> reservations,
+                                              Map<String, Double> phaseMillis, Set<Order> committed) {
+        List<CheckoutResult> results = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            StockReservation reservation = i < reservations.size() ? reservations.get(i) : null;
+            boolean successful = committed.contains(order);
+            results.add(new CheckoutResult(successful, successful ? order.getId() : 0, reservation, phaseMillis));
+        }
+        return results;
+    }
+
+    /**
+     * Inserts the order rows as one batch, which the driver sends as a multi-row insert, and assigns
+     * each order the id generated for its row.
+     */
+    private void insertOrders(Connection conn, List<Order> orders) throws SQLException {
+        String insertOrderSQL = "INSERT INTO orders (user_id, order_date) VALUES (?, ?)";
+        try (PreparedStatement orderStmt = conn.prepareStatement(insertOrderSQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (Order order : orders) {
+                orderStmt.setInt(1, order.getUser().getId());
+                orderStmt.setTimestamp(2, new Timestamp(order.getOrderDate().getTime()));
+                orderStmt.addBatch();
+            }
+            orderStmt.executeBatch();
+
+            try (ResultSet generatedKeys = orderStmt.getGeneratedKeys()) {
+                for (Order order : orders) {
+                    if (!generatedKeys.next()) {
+                        throw new SQLException("Failed to retrieve order ID.");
+                    }
+                    order.setId(generatedKeys.getInt(1));
                 }
-            } catch (SQLException innerE) {
-                innerE.printStackTrace();
             }
-            return false;
-        } finally {
-            try {
-                if (conn != null) {
-                    conn.setAutoCommit(true);
-                    conn.close();
+        }
+    }
+
+    private void insertOrderItems(Connection conn, List<Order> orders) throws SQLException {
+        String insertOrderItemSQL = "INSERT INTO order_items (order_id, book_id, quantity, price_at_order) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement itemsStmt = conn.prepareStatement(insertOrderItemSQL)) {
+            for (Order order : orders) {
+                for (OrderItem item : order.getOrderItems()) {
+                    itemsStmt.setInt(1, order.getId());
+                    itemsStmt.setInt(2, item.getBook().getId());
+                    itemsStmt.setInt(3, item.getQuantity());
+                    itemsStmt.setDouble(4, item.getPriceAtOrder());
+                    itemsStmt.addBatch();
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
             }
+            itemsStmt.executeBatch();
         }
     }
 
+    private static long recordPhase(Map<String, Double> phaseMillis, String phase, long phaseStart) {
+        long now = System.nanoTime();
+        phaseMillis.put(phase, (now - phaseStart) / 1_000_000.0);
+        return now;
+    }
+
     /**
-     * Fetches the last ten orders stored in the database.
+     * Fetches the last ten orders stored in the database together with their users, items and books.
+     * <p>
+     * The whole graph is loaded set-based: one query for the orders, one for their users, one for all
+     * of their items and one (or none, when cached) for the referenced books, regardless of how many
+     * orders and items there are.
+     * </p>
      *
      * @return A list containing the most recent ten orders.
      */
     public List<Order> getLastTenOrders() {
         List<Order> orders = new ArrayList<>();
+        Map<Integer, Integer> userIdByOrderId = new HashMap<>();
 
         String query = "SELECT * FROM orders ORDER BY order_date DESC LIMIT 10;";
 
-        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query);
-             ResultSet rs = stmt.executeQuery()) {
-
-            while (rs.next()) {
-                int orderId = rs.getInt("id");
-                int userId = rs.getInt("user_id");
-                Date orderdate = rs.getDate("order_date");
-
-                User user = getUserById(userId);
-
-                List<OrderItem> orderItems = getOrderItemsByOrderId(orderId);
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(query);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Order order = new Order(rs.getInt("id"), null, new ArrayList<>());
+                    order.setOrderDate(rs.getDate("order_date"));
+                    userIdByOrderId.put(order.getId(), rs.getInt("user_id"));
+                    orders.add(order);
+                }
+            }
 
-                double totalPrice = orderItems.stream().mapToDouble(item -> item.getPriceAtOrder() * item.getQuantity()).sum();
-                int totalQuantity = orderItems.stream().mapToInt(OrderItem::getQuantity).sum();
+            Map<Integer, User> users = UserDAO.getUsersByIds(conn, new HashSet<>(userIdByOrderId.values()));
+            Map<Integer, List<OrderItem>> itemsByOrderId = getOrderItemsByOrderIds(conn, userIdByOrderId.keySet());
 
-                Order order = new Order(orderId, user, orderItems);
-                order.setTotalPrice(totalPrice);
-                order.setTotalQuantity(totalQuantity);
-                order.setOrderDate(orderdate);
-                orders.add(order);
+            for (Order order : orders) {
+                List<OrderItem> orderItems = itemsByOrderId.getOrDefault(order.getId(), new ArrayList<>());
+                order.setUser(users.get(userIdByOrderId.get(order.getId())));
+                order.setOrderItems(orderItems);
+                order.setTotalPrice(orderItems.stream().mapToDouble(item -> item.getPriceAtOrder() * item.getQuantity()).sum());
+                order.setTotalQuantity(orderItems.stream().mapToInt(OrderItem::getQuantity).sum());
             }
 
             return orders;
@@ -205,8 +334,49 @@ public class OrderDAO {
         }
     }
 
+    /**
+     * Fetches the items of several orders in one query and resolves their books in bulk through the
+     * {@link CatalogCache}, instead of one query per order and one per item.
+     *
+     * @param conn     The active SQL connection.
+     * @param orderIds The unique identifiers of the orders.
+     * @return A map from order id to its items; orders without items are absent.
+     * @throws SQLException If the query fails.
+     */
+    private Map<Integer, List<OrderItem>> getOrderItemsByOrderIds(Connection conn, Collection<Integer> orderIds) throws SQLException {
+        Map<Integer, List<OrderItem>> itemsByOrderId = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(orderIds);
+        if (ids.isEmpty()) {
+            return itemsByOrderId;
+        }
+
+        Map<OrderItem, Integer> bookIdByItem = new HashMap<>();
+        String query = "SELECT * FROM order_items WHERE order_id IN (" + SqlHelper.inList(ids.size()) + ")";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            SqlHelper.bindInList(stmt, 1, ids);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    OrderItem orderItem = new OrderItem(rs.getInt("id"), null, rs.getInt("quantity"), rs.getDouble("price_at_order"));
+                    bookIdByItem.put(orderItem, rs.getInt("book_id"));
+                    itemsByOrderId.computeIfAbsent(rs.getInt("order_id"), orderId -> new ArrayList<>()).add(orderItem);
+                }
+            }
+        }
+
+        Map<Integer, Book> books = CatalogCache.getInstance().getBooks(bookIdByItem.values());
+        for (Map.Entry<OrderItem, Integer> entry : bookIdByItem.entrySet()) {
+            entry.getKey().setBook(books.get(entry.getValue()));
+        }
+        return itemsByOrderId;
+    }
+
     /**
      * Retrieves all orders associated with a specific user, identified by their user ID.
+     * <p>
+     * Only the order summaries (date, total quantity and total price) are loaded; the user is resolved
+     * once and the line items are left out until {@link #loadOrderItems(List)} is called for the orders
+     * whose details are actually shown.
+     * </p>
      *
      * @param userId The unique identifier of the user for whom orders are to be fetched.
      * @return A list containing all orders associated with the given user.
@@ -222,26 +392,26 @@ public class OrderDAO {
                 "WHERE o.user_id = ? " +
                 "GROUP BY o.id, o.order_date";
 
-        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
-
-            stmt.setInt(1, userId);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    int orderId = rs.getInt("order_id");
-                    Date orderDate = rs.getDate("order_date");
-                    int totalQuantity = rs.getInt("total_quantity");
-                    double totalPrice = rs.getDouble("total_price");
-
-                    User currentUser = getUserById(userId);
-                    List<OrderItem> currentOrderItems = getOrderItemsByOrderId(orderId);
-
-                    Order order = new Order(orderId, currentUser, currentOrderItems);
-                    order.setOrderDate(orderDate);
-                    order.setTotalQuantity(totalQuantity);
-                    order.setTotalPrice(totalPrice);
-                    orders.add(order);
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection()) {
+            User currentUser = UserDAO.getUsersByIds(conn, List.of(userId)).get(userId);
+
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                stmt.setInt(1, userId);
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        int orderId = rs.getInt("order_id");
+                        Date orderDate = rs.getDate("order_date");
+                        int totalQuantity = rs.getInt("total_quantity");
+                        double totalPrice = rs.getDouble("total_price");
+
+                        Order order = new Order(orderId, currentUser, new ArrayList<>());
+                        order.setOrderDate(orderDate);
+                        order.setTotalQuantity(totalQuantity);
+                        order.setTotalPrice(totalPrice);
+                        order.setItemsLoaded(false);
+                        orders.add(order);
+                    }
                 }
             }
         } catch (SQLException e) {
@@ -251,6 +421,34 @@ public class OrderDAO {
         return orders;
     }
 
+    /**
+     * Loads the line items and their books for every given order whose items are not loaded yet,
+     * using one query for all items and one bulk lookup for the books.
+     *
+     * @param orders The orders, typically the page currently shown, whose items are needed.
+     */
+    public void loadOrderItems(List<Order> orders) {
+        Map<Integer, Order> pending = new HashMap<>();
+        for (Order order : orders) {
+            if (!order.isItemsLoaded()) {
+                pending.put(order.getId(), order);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection()) {
+            Map<Integer, List<OrderItem>> itemsByOrderId = getOrderItemsByOrderIds(conn, pending.keySet());
+            for (Order order : pending.values()) {
+                order.setOrderItems(itemsByOrderId.getOrDefault(order.getId(), new ArrayList<>()));
+                order.setItemsLoaded(true);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Fetches all order items associated with a specific order, identified by its order ID.
      *
@@ -271,7 +469,7 @@ public class OrderDAO {
                 while (rs.next()) {
                     int orderItemId = rs.getInt("id");
                     int bookId = rs.getInt("book_id");
-                    Book book = BookDAO.getBookById(bookId);
+                    Book book = CatalogCache.getInstance().getBook(bookId);
                     int quantity = rs.getInt("quantity");
                     double price = rs.getDouble("price_at_order");
 
@@ -286,4 +484,25 @@ public class OrderDAO {
 
         return orderItems;
     }
+
+    /**
+     * Counts the copies sold of every book with one aggregate query, for example to rank search suggestions.
+     *
+     * @return The number of copies sold, by book id; books that were never ordered are absent.
+     */
+    public static Map<Integer, Integer> getSalesByBook() {
+        Map<Integer, Integer> sales = new HashMap<>();
+        String query = "SELECT book_id, SUM(quantity) AS sold FROM order_items GROUP BY book_id";
+
+        try (Connection conn = DatabaseConnectionManager.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                sales.put(rs.getInt("book_id"), rs.getInt("sold"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return sales;
+    }
 }
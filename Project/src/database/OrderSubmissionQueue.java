@@ -0,0 +1,213 @@
+package database;
+
+import model.Order;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A group-commit queue in front of {@link OrderDAO}.
+ * <p>
+ * Orders submitted concurrently are collected for at most {@code orders.queue.maxLingerMillis}, or until
+ * {@code orders.queue.maxBatchSize} orders are waiting, and then stored together by
+ * {@link OrderDAO#checkoutBatch(List)} in a single transaction with a single commit. Every caller gets a
+ * future that completes with the result of its own order, including its own generated order id.
+ * </p>
+ * The queue holds at most {@code orders.queue.capacity} orders. When it is full, the
+ * {@code orders.queue.backpressure} policy decides what happens to a new submission:
+ * <ul>
+ *     <li>{@code BLOCK} - the caller waits until there is room.</li>
+ *     <li>{@code REJECT} - the future fails immediately with a {@link RejectedExecutionException}.</li>
+ *     <li>{@code CALLER_RUNS} - the caller stores its order itself, in its own transaction.</li>
+ * </ul>
+ *
+ * @see OrderDAO#checkoutBatch(List)
+ */
+
+public class OrderSubmissionQueue {
+
+    public enum BackpressurePolicy {
+        BLOCK,
+        REJECT,
+        CALLER_RUNS
+    }
+
+    private static OrderSubmissionQueue instance;
+
+    private final OrderDAO orderDAO;
+    private final int maxBatchSize;
+    private final long maxLingerMillis;
+    private final BackpressurePolicy backpressurePolicy;
+    private final BlockingQueue<PendingOrder> queue;
+    private final Thread writer;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedOrders = new AtomicLong();
+
+    private OrderSubmissionQueue() {
+        DatabaseConnectionManager config = DatabaseConnectionManager.getInstance();
+        this.orderDAO = new OrderDAO();
+        this.maxBatchSize = Math.max(1, config.getIntProperty("orders.queue.maxBatchSize", 32));
+        this.maxLingerMillis = Math.max(0, config.getLongProperty("orders.queue.maxLingerMillis", 5));
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getIntProperty("orders.queue.capacity", 1000)));
+        this.backpressurePolicy = parsePolicy(config.getProperty("orders.queue.backpressure", "BLOCK"));
+
+        this.writer = new Thread(this::writeLoop, "order-group-commit");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static synchronized OrderSubmissionQueue getInstance() {
+        if (instance == null) {
+            instance = new OrderSubmissionQueue();
+        }
+        return instance;
+    }
+
+    /**
+     * Queues an order for the next group commit.
+     *
+     * @param order The order to store.
+     * @return A future completed with the checkout result of this order once its batch has been committed.
+     */
+    public CompletableFuture<CheckoutResult> submit(Order order) {
+        PendingOrder pending = new PendingOrder(order);
+        submitted.incrementAndGet();
+
+        if (queue.offer(pending)) {
+            return pending.future;
+        }
+
+        switch (backpressurePolicy) {
+            case REJECT:
+                rejected.incrementAndGet();
+                pending.future.completeExceptionally(new RejectedExecutionException(
+                        "Order queue is full (" + queue.size() + " orders waiting)."));
+                break;
+            case CALLER_RUNS:
+                pending.future.complete(orderDAO.checkout(order));
+                break;
+            default:
+                try {
+                    queue.put(pending);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    pending.future.completeExceptionally(e);
+                }
+                break;
+        }
+        return pending.future;
+    }
+
+    /**
+     * Takes an order back out of the queue if the writer has not picked it up yet. The future of a
+     * withdrawn order is cancelled; an order that could not be withdrawn will still be stored or rejected
+     * by its batch, and its future completes as usual.
+     *
+     * @param future The future returned by {@link #submit(Order)}.
+     * @return true if the order was withdrawn and will never be stored.
+     */
+    public boolean withdraw(CompletableFuture<CheckoutResult> future) {
+        if (queue.removeIf(pending -> pending.future == future)) {
+            future.cancel(false);
+            return true;
+        }
+        return false;
+    }
+
+    private void writeLoop() {
+        List<PendingOrder> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingOrder next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                for (PendingOrder pending : batch) {
+                    pending.future.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<PendingOrder> batch) {
+        List<Order> orders = new ArrayList<>(batch.size());
+        for (PendingOrder pending : batch) {
+            orders.add(pending.order);
+        }
+
+        List<CheckoutResult> results = orderDAO.checkoutBatch(orders);
+        batches.incrementAndGet();
+        batchedOrders.addAndGet(batch.size());
+
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future.complete(results.get(i));
+        }
+    }
+
+    private static BackpressurePolicy parsePolicy(String value) {
+        try {
+            return BackpressurePolicy.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid orders.queue.backpressure value: " + value);
+            return BackpressurePolicy.BLOCK;
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public double getAverageBatchSize() {
+        long batchCount = batches.get();
+        return batchCount == 0 ? 0.0 : (double) batchedOrders.get() / batchCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OrderSubmissionQueue[depth=%d, submitted=%d, rejected=%d, batches=%d, avgBatch=%.2f, policy=%s]",
+                getQueueDepth(), getSubmittedCount(), getRejectedCount(), getBatchCount(), getAverageBatchSize(), backpressurePolicy);
+    }
+
+    private static final class PendingOrder {
+        private final Order order;
+        private final CompletableFuture<CheckoutResult> future = new CompletableFuture<>();
+
+        private PendingOrder(Order order) {
+            this.order = order;
+        }
+    }
+}
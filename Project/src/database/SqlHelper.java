@@ -0,0 +1,64 @@
+package database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Small helpers shared by the DAOs for building set-based queries and probing optional schema.
+ * <p>
+ * {@code IN (...)} lists are padded to a power-of-two number of placeholders, repeating the last value,
+ * so that a handful of distinct SQL strings cover every list length and stay hot in the
+ * per-connection {@link StatementCache}.
+ * </p>
+ */
+
+final class SqlHelper {
+
+    private SqlHelper() {
+    }
+
+    /**
+     * Returns the padded number of placeholders used for an {@code IN} list of the given size.
+     */
+    static int inListSize(int valueCount) {
+        int size = 1;
+        while (size < valueCount) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    /**
+     * Builds a comma separated list of {@code ?} placeholders for an {@code IN} list of the given size.
+     */
+    static String inList(int valueCount) {
+        int size = inListSize(valueCount);
+        StringBuilder builder = new StringBuilder(size * 2);
+        for (int i = 0; i < size; i++) {
+            builder.append(i == 0 ? "?" : ",?");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Binds the given ids to an {@code IN} list built by {@link #inList(int)}, padding with the last id.
+     *
+     * @return The next free parameter index after the list.
+     */
+    static int bindInList(PreparedStatement stmt, int firstIndex, List<Integer> ids) throws SQLException {
+        int size = inListSize(ids.size());
+        for (int i = 0; i < size; i++) {
+            stmt.setInt(firstIndex + i, ids.get(Math.min(i, ids.size() - 1)));
+        }
+        return firstIndex + size;
+    }
+
+    /**
+     * @return true if the query failed because a table or column it uses does not exist, as opposed to a
+     *         connection or permission problem.
+     */
+    static boolean isMissingSchema(SQLException e) {
+        return "42S02".equals(e.getSQLState()) || "42S22".equals(e.getSQLState());
+    }
+}
@@ -0,0 +1,248 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An LRU cache of prepared statements attached to one pooled physical connection, keyed by SQL text.
+ * <p>
+ * Statements returned by {@link #prepare} are proxies: closing them clears their parameters and
+ * open result sets and makes them available for the next borrower of the same connection instead of
+ * closing the parsed (server-side) statement. When the same SQL is prepared again while the cached
+ * statement is still open, an uncached statement is returned so the two never share state; it is a proxy
+ * as well, tracked until it is closed, so it reports the same connection and is closed when the
+ * connection goes back to the pool even if its borrower forgot to.
+ * </p>
+ * All state of the statements is guarded by the cache, as a statement may be closed by its borrower while
+ * the pool releases the connection on another thread.
+ *
+ * @see ConnectionPool
+ */
+
+final class StatementCache {
+
+    private final int capacity;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final LinkedHashMap<String, CachedStatement> statements;
+    private final List<CachedStatement> uncached = new ArrayList<>();
+
+    StatementCache(int capacity, AtomicLong hits, AtomicLong misses) {
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() > StatementCache.this.capacity) {
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a cached statement for the given SQL, preparing and caching it on a miss.
+     *
+     * @param physical          The physical connection that owns this cache.
+     * @param owner             The connection handle the statement should report as its connection.
+     * @param sql               The SQL text of the statement.
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} or {@link Statement#NO_GENERATED_KEYS}.
+     * @return A prepared statement whose {@code close()} returns it to this cache.
+     * @throws SQLException If the statement cannot be prepared.
+     */
+    synchronized PreparedStatement prepare(Connection physical, Connection owner, String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K:" + sql : "N:" + sql;
+        CachedStatement cached = statements.get(key);
+        if (cached != null && !cached.inUse) {
+            hits.incrementAndGet();
+            cached.inUse = true;
+            return cached.handle;
+        }
+
+        misses.incrementAndGet();
+        PreparedStatement statement = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS
+                ? physical.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                : physical.prepareStatement(sql);
+        if (cached != null || capacity <= 0) {
+            CachedStatement extra = new CachedStatement(statement, owner, false);
+            extra.inUse = true;
+            uncached.add(extra);
+            return extra.handle;
+        }
+
+        cached = new CachedStatement(statement, owner, true);
+        cached.inUse = true;
+        statements.put(key, cached);
+        return cached.handle;
+    }
+
+    /**
+     * Returns every statement still held by the previous borrower to the cache and closes the uncached ones.
+     * Called when the owning connection goes back to the pool.
+     */
+    synchronized void releaseAll() {
+        for (CachedStatement cached : new ArrayList<>(statements.values())) {
+            if (cached.inUse) {
+                cached.returnToCache();
+            }
+        }
+        for (CachedStatement extra : new ArrayList<>(uncached)) {
+            extra.returnToCache();
+        }
+    }
+
+    /**
+     * Closes every cached statement. Called when the owning physical connection is discarded.
+     */
+    synchronized void clear() {
+        for (CachedStatement cached : statements.values()) {
+            cached.closePhysical();
+        }
+        statements.clear();
+        for (CachedStatement extra : uncached) {
+            extra.inUse = false;
+            extra.closePhysical();
+        }
+        uncached.clear();
+    }
+
+    synchronized int size() {
+        return statements.size();
+    }
+
+    private final class CachedStatement implements InvocationHandler {
+        private final PreparedStatement physical;
+        private final Connection owner;
+        private final PreparedStatement handle;
+        private final boolean cacheable;
+        private final List<ResultSet> openResults = new ArrayList<>();
+        private boolean inUse;
+        private boolean evicted;
+        private boolean settingsChanged;
+
+        private CachedStatement(PreparedStatement physical, Connection owner, boolean cacheable) {
+            this.physical = physical;
+            this.owner = owner;
+            this.cacheable = cacheable;
+            this.handle = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (StatementCache.this) {
+                        if (inUse) {
+                            returnToCache();
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    synchronized (StatementCache.this) {
+                        if (!inUse) {
+                            return true;
+                        }
+                    }
+                    return physical.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return (cacheable ? "Cached" : "Uncached") + physical;
+                default:
+                    break;
+            }
+            synchronized (StatementCache.this) {
+                if (!inUse) {
+                    throw new SQLException("Statement has already been closed.");
+                }
+                switch (method.getName()) {
+                    case "setQueryTimeout":
+                    case "setMaxRows":
+                    case "setFetchSize":
+                        settingsChanged = true;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            try {
+                Object result = method.invoke(physical, args);
+                if (result instanceof ResultSet) {
+                    synchronized (StatementCache.this) {
+                        openResults.add((ResultSet) result);
+                    }
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void returnToCache() {
+            inUse = false;
+            if (!cacheable) {
+                // Closing the statement closes its result sets as well.
+                openResults.clear();
+                uncached.remove(this);
+                closePhysical();
+                return;
+            }
+            try {
+                for (ResultSet resultSet : openResults) {
+                    resultSet.close();
+                }
+                openResults.clear();
+                physical.clearParameters();
+                physical.clearBatch();
+                physical.clearWarnings();
+                if (settingsChanged) {
+                    physical.setQueryTimeout(0);
+                    physical.setMaxRows(0);
+                    physical.setFetchSize(0);
+                    settingsChanged = false;
+                }
+            } catch (SQLException e) {
+                evicted = true;
+                statements.values().remove(this);
+            }
+            if (evicted) {
+                closePhysical();
+            }
+        }
+
+        private void evict() {
+            evicted = true;
+            if (!inUse) {
+                closePhysical();
+            }
+        }
+
+        private void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package database;
+
+import model.OrderItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The outcome of reserving stock for the lines of an order: for every line, whether its quantity
+ * could be taken from the books table.
+ * <p>
+ * A reservation is only committed when every line succeeded; otherwise the rejected lines tell the
+ * caller exactly which books were short.
+ * </p>
+ *
+ * @see BookDAO#reserveStock
+ */
+
+public class StockReservation {
+
+    private final List<OrderItem> items;
+    private final boolean[] reserved;
+
+    public StockReservation(List<OrderItem> items, boolean[] reserved) {
+        this.items = new ArrayList<>(items);
+        this.reserved = reserved.clone();
+    }
+
+    public List<OrderItem> getItems() {
+        return items;
+    }
+
+    public boolean isReserved(int lineIndex) {
+        return reserved[lineIndex];
+    }
+
+    public boolean isFullyReserved() {
+        for (boolean lineReserved : reserved) {
+            if (!lineReserved) {
+                return false;
+            }
+        }
+        return !items.isEmpty();
+    }
+
+    /**
+     * @return The lines whose quantity was not available.
+     */
+    public List<OrderItem> getRejectedItems() {
+        List<OrderItem> rejected = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (!reserved[i]) {
+                rejected.add(items.get(i));
+            }
+        }
+        return rejected;
+    }
+
+    @Override
+    public String toString() {
+        return "StockReservation" + Arrays.toString(reserved);
+    }
+}
@@ -6,6 +6,11 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -19,7 +24,7 @@ import java.util.Optional;
  *     <li>Adding new users to the database.</li>
  * </ul>
  * </p>
- * This class uses JDBC for database interactions and maintains a connection instance for operations.
+ * This class uses JDBC for database interactions and borrows a pooled connection for each operation.
  * All retrieval operations provide their results wrapped in {@link Optional} for safer usage.
  *
  * @see User
@@ -27,13 +32,6 @@ import java.util.Optional;
  */
 
 public class UserDAO {
-    private Connection connection;
-
-    public UserDAO()
-    {
-        this.connection = DatabaseConnectionManager.getInstance().getConnection();
-    }
-
     /**
      * Retrieves a user based on the given username and password.
      *
@@ -113,6 +111,33 @@ public class UserDAO {
     }
 
 
+    /**
+     * Retrieves all users with the given identifiers in a single query on the caller's connection.
+     *
+     * @param conn    The active SQL connection.
+     * @param userIds The unique identifiers of the desired users.
+     * @return A map from user id to user; ids that were not found are absent.
+     * @throws SQLException If the query fails.
+     */
+    static Map<Integer, User> getUsersByIds(Connection conn, Collection<Integer> userIds) throws SQLException {
+        Map<Integer, User> users = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(userIds);
+        if (ids.isEmpty()) {
+            return users;
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM users WHERE id IN (" + SqlHelper.inList(ids.size()) + ")")) {
+            SqlHelper.bindInList(stmt, 1, ids);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    User user = new User(rs.getInt("id"), rs.getString("username"), rs.getString("email"), rs.getString("password"), rs.getString("role"));
+                    users.put(user.getId(), user);
+                }
+            }
+        }
+        return users;
+    }
+
     /**
      * Adds a new user record to the database.
      *
@@ -0,0 +1,58 @@
+package event;
+
+import model.Book;
+
+/**
+ * The `CartChangeEvent` class describes a single change to a shopping cart, so that views can update
+ * only the affected row instead of redrawing the whole cart.
+ * <p>
+ * It carries the kind of change, the position of the line in the cart, the book and its new quantity, and the
+ * cart total after the change. For {@link Type#CLEARED} the index is -1 and the book is null.
+ * <p>
+ * A line is removed by moving the last line into its place: a {@link Type#MOVED} event for the last line at
+ * its new index comes first, then the {@link Type#REMOVED} event for the last index with the removed book.
+ */
+public class CartChangeEvent {
+
+    public enum Type {
+        ADDED,
+        UPDATED,
+        REMOVED,
+        MOVED,
+        CLEARED
+    }
+
+    private final Type type;
+    private final int index;
+    private final Book book;
+    private final int quantity;
+    private final double total;
+
+    public CartChangeEvent(Type type, int index, Book book, int quantity, double total) {
+        this.type = type;
+        this.index = index;
+        this.book = book;
+        this.quantity = quantity;
+        this.total = total;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public double getTotal() {
+        return total;
+    }
+}
@@ -0,0 +1,11 @@
+package event;
+
+/**
+ * The `CartChangeListener` is an interface for components that need to follow the contents of a shopping cart.
+ * <p>
+ * The `cartChanged` method is called once per change, in the order the changes were made, on the thread that
+ * changed the cart. Swing components are expected to hand the event over to the Event Dispatch Thread.
+ */
+public interface CartChangeListener {
+    void cartChanged(CartChangeEvent event);
+}
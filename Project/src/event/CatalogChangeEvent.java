@@ -0,0 +1,75 @@
+package event;
+
+import model.Book;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The `CatalogChangeEvent` class describes what the shared catalog cache learned about the books in the database,
+ * so that in-memory structures derived from the catalog, such as the search index, can follow it incrementally.
+ * <p>
+ * {@link Type#LOADED} carries books freshly read from the database. {@link Type#INVALIDATED} carries the ids of
+ * books that were written and will be read again. {@link Type#DELETED} carries the ids of books that no longer
+ * exist. {@link Type#ADDED} means that new books exist whose ids are not known yet, and {@link Type#RESET} that
+ * everything derived from the catalog should be rebuilt.
+ */
+public class CatalogChangeEvent {
+
+    public enum Type {
+        LOADED,
+        INVALIDATED,
+        DELETED,
+        ADDED,
+        RESET
+    }
+
+    private final Type type;
+    private final Collection<Book> books;
+    private final Collection<Integer> bookIds;
+
+    private CatalogChangeEvent(Type type, Collection<Book> books, Collection<Integer> bookIds) {
+        this.type = type;
+        this.books = books;
+        this.bookIds = bookIds;
+    }
+
+    public static CatalogChangeEvent loaded(Collection<Book> books) {
+        return new CatalogChangeEvent(Type.LOADED, books, List.of());
+    }
+
+    public static CatalogChangeEvent invalidated(Collection<Integer> bookIds) {
+        return new CatalogChangeEvent(Type.INVALIDATED, List.of(), bookIds);
+    }
+
+    public static CatalogChangeEvent deleted(Collection<Integer> bookIds) {
+        return new CatalogChangeEvent(Type.DELETED, List.of(), bookIds);
+    }
+
+    public static CatalogChangeEvent added() {
+        return new CatalogChangeEvent(Type.ADDED, List.of(), List.of());
+    }
+
+    public static CatalogChangeEvent reset() {
+        return new CatalogChangeEvent(Type.RESET, List.of(), List.of());
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The books read from the database; empty unless the type is {@link Type#LOADED}.
+     */
+    public Collection<Book> getBooks() {
+        return books;
+    }
+
+    /**
+     * @return The ids of the written or deleted books; empty unless the type is {@link Type#INVALIDATED} or
+     *         {@link Type#DELETED}.
+     */
+    public Collection<Integer> getBookIds() {
+        return bookIds;
+    }
+}
@@ -0,0 +1,11 @@
+package event;
+
+/**
+ * The `CatalogChangeListener` is an interface for components that keep data derived from the book catalog.
+ * <p>
+ * The `catalogChanged` method is called on the thread that loaded or wrote the books, outside of the cache's lock.
+ * Listeners should return quickly and hand expensive work over to a background thread.
+ */
+public interface CatalogChangeListener {
+    void catalogChanged(CatalogChangeEvent event);
+}
@@ -0,0 +1,258 @@
+package inventory;
+
+import database.DatabaseConnectionManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Soft stock reservations for books sitting in a shopping cart.
+ * <p>
+ * When a book is added to a cart, the copies are held in the {@link InventoryEngine} for
+ * {@code cart.hold.ttlMillis}; adding more copies of the same book extends the hold. Expiry is driven by a
+ * {@link TimingWheel} that advances every {@code cart.hold.tickMillis}, so pending holds cost nothing
+ * until they expire. An expired hold is handed back to the available stock automatically; the book stays
+ * in the cart and is simply checked again at checkout.
+ * </p>
+ * At checkout the cart's holds are claimed and converted into the order's reservation. Holds require the
+ * inventory engine and are enabled with {@code cart.hold.enabled=true}.
+ *
+ * @see InventoryEngine#hold(int, int)
+ * @see controller.CartController
+ */
+
+public class CartReservations {
+
+    private static CartReservations instance;
+
+    private final InventoryEngine engine;
+    private final long ttlMillis;
+    private final TimingWheel<Hold> wheel;
+    private final Map<Object, Map<Integer, Hold>> holdsByOwner = new HashMap<>();
+    private final ScheduledExecutorService ticker;
+
+    private final AtomicLong placed = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong converted = new AtomicLong();
+
+    private CartReservations() {
+        DatabaseConnectionManager config = DatabaseConnectionManager.getInstance();
+        this.engine = InventoryEngine.getInstance();
+        this.ttlMillis = Math.max(1000, config.getLongProperty("cart.hold.ttlMillis", 900000));
+        long tickMillis = Math.max(10, config.getLongProperty("cart.hold.tickMillis", 1000));
+        this.wheel = new TimingWheel<>(tickMillis, System.currentTimeMillis());
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cart-hold-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::expireHolds, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return true if {@code cart.hold.enabled} is set and the inventory engine is enabled.
+     */
+    public static boolean isEnabled() {
+        return InventoryEngine.isEnabled()
+                && DatabaseConnectionManager.getInstance().getBooleanProperty("cart.hold.enabled", false);
+    }
+
+    public static synchronized CartReservations getInstance() {
+        if (instance == null) {
+            instance = new CartReservations();
+        }
+        return instance;
+    }
+
+    /**
+     * Holds copies of a book for a cart and restarts the cart's timer for that book.
+     *
+     * @param owner    The cart the copies are held for.
+     * @param bookId   The unique identifier of the book.
+     * @param quantity The number of additional copies to hold.
+     * @return true if the copies are held, false if not enough stock is available.
+     */
+    public synchronized boolean hold(Object owner, int bookId, int quantity) {
+        if (!engine.hold(bookId, quantity)) {
+            refused.incrementAndGet();
+            return false;
+        }
+        placed.incrementAndGet();
+
+        Map<Integer, Hold> holds = holdsByOwner.computeIfAbsent(owner, key -> new HashMap<>());
+        Hold hold = holds.get(bookId);
+        if (hold == null) {
+            hold = new Hold(owner, bookId);
+            holds.put(bookId, hold);
+        } else {
+            wheel.cancel(hold.timeout);
+        }
+        hold.quantity += quantity;
+        hold.timeout = wheel.schedule(hold, ttlMillis);
+        return true;
+    }
+
+    /**
+     * Gives back some of the copies held for a cart, for example when one copy is removed from it.
+     *
+     * @param owner    The cart the copies are held for.
+     * @param bookId   The unique identifier of the book.
+     * @param quantity The number of copies to release.
+     */
+    public synchronized void release(Object owner, int bookId, int quantity) {
+        Map<Integer, Hold> holds = holdsByOwner.get(owner);
+        Hold hold = holds == null ? null : holds.get(bookId);
+        if (hold == null) {
+            return;
+        }
+        int releasing = Math.min(quantity, hold.quantity);
+        engine.releaseHold(bookId, releasing);
+        released.incrementAndGet();
+        hold.quantity -= releasing;
+        if (hold.quantity == 0) {
+            wheel.cancel(hold.timeout);
+            remove(hold);
+        }
+    }
+
+    /**
+     * Gives back every copy held for a cart, for example when the cart is emptied.
+     *
+     * @param owner The cart the copies are held for.
+     */
+    public synchronized void releaseAll(Object owner) {
+        Map<Integer, Hold> holds = holdsByOwner.remove(owner);
+        if (holds == null) {
+            return;
+        }
+        for (Hold hold : holds.values()) {
+            wheel.cancel(hold.timeout);
+            engine.releaseHold(hold.bookId, hold.quantity);
+            released.incrementAndGet();
+        }
+    }
+
+    /**
+     * Takes the holds of a cart out of expiry tracking so they can be converted into an order. The copies
+     * stay held in the engine until {@link InventoryEngine#reserve(java.util.List, Map)} converts them;
+     * if the order is rejected, they must be handed back with {@link #releaseClaimed(Map)}.
+     *
+     * @param owner The cart that is being checked out.
+     * @return The number of held copies, by book id.
+     */
+    public synchronized Map<Integer, Integer> claim(Object owner) {
+        Map<Integer, Integer> claimed = new HashMap<>();
+        Map<Integer, Hold> holds = holdsByOwner.remove(owner);
+        if (holds != null) {
+            for (Hold hold : holds.values()) {
+                wheel.cancel(hold.timeout);
+                claimed.put(hold.bookId, hold.quantity);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * @param owner The cart the copies are held for.
+     * @return The number of copies currently held for the cart, by book id.
+     */
+    public synchronized Map<Integer, Integer> getHeld(Object owner) {
+        Map<Integer, Integer> held = new HashMap<>();
+        Map<Integer, Hold> holds = holdsByOwner.get(owner);
+        if (holds != null) {
+            for (Hold hold : holds.values()) {
+                held.put(hold.bookId, hold.quantity);
+            }
+        }
+        return held;
+    }
+
+    /**
+     * Records that claimed holds became part of a stored order.
+     */
+    public void recordConverted(Map<Integer, Integer> claimed) {
+        converted.addAndGet(claimed.size());
+    }
+
+    /**
+     * Returns claimed holds of an order that could not be stored to the available stock.
+     */
+    public void releaseClaimed(Map<Integer, Integer> claimed) {
+        for (Map.Entry<Integer, Integer> entry : claimed.entrySet()) {
+            engine.releaseHold(entry.getKey(), entry.getValue());
+            released.incrementAndGet();
+        }
+    }
+
+    private synchronized void expireHolds() {
+        try {
+            wheel.advanceTo(System.currentTimeMillis(), hold -> {
+                engine.releaseHold(hold.bookId, hold.quantity);
+                expired.incrementAndGet();
+                remove(hold);
+            });
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void remove(Hold hold) {
+        Map<Integer, Hold> holds = holdsByOwner.get(hold.owner);
+        if (holds != null) {
+            holds.remove(hold.bookId);
+            if (holds.isEmpty()) {
+                holdsByOwner.remove(hold.owner);
+            }
+        }
+    }
+
+    public synchronized int getActiveHoldCount() {
+        return wheel.size();
+    }
+
+    public long getPlacedCount() {
+        return placed.get();
+    }
+
+    public long getRefusedCount() {
+        return refused.get();
+    }
+
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    public long getReleasedCount() {
+        return released.get();
+    }
+
+    public long getConvertedCount() {
+        return converted.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CartReservations[active=%d, placed=%d, refused=%d, expired=%d, released=%d, converted=%d]",
+                getActiveHoldCount(), getPlacedCount(), getRefusedCount(), getExpiredCount(), getReleasedCount(),
+                getConvertedCount());
+    }
+
+    private static final class Hold {
+        private final Object owner;
+        private final int bookId;
+        private int quantity;
+        private TimingWheel.Timeout<Hold> timeout;
+
+        private Hold(Object owner, int bookId) {
+            this.owner = owner;
+            this.bookId = bookId;
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package inventory;
+
+import database.BookDAO;
+import database.CatalogCache;
+import database.DatabaseConnectionManager;
+import database.StockReservation;
+import model.Book;
+import model.OrderItem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-process owner of the stock counters of every book, used instead of database round trips when
+ * reserving stock at checkout.
+ * <p>
+ * Each book has its own atomic counter, and reservations decrement it with a compare-and-set loop, so
+ * concurrent checkouts never block each other. The counter packs the stock (high 32 bits) and the copies
+ * held for carts (low 32 bits) into one {@code long}, so placing a hold, releasing it and converting it
+ * into a sale are each a single atomic step. Holds are transient and are never logged or checkpointed.
+ * </p>
+ * Every stock change is appended to a write-ahead log in {@code inventory.dataDir} before it is
+ * acknowledged. The engine periodically checkpoints: it writes a snapshot of all stock together with the
+ * last log sequence number, truncates the log and copies the changed quantities back to the
+ * {@code books} table. On start it loads the snapshot (or the {@code books} table on first use) and
+ * replays the log records written after it.
+ * <p>
+ * While the engine is enabled ({@code inventory.engine.enabled=true}) it is the authoritative source of
+ * stock, and the {@code quantity} column trails it by at most one checkpoint interval. Stock edited
+ * directly in the database is overwritten by the next checkpoint.
+ * </p>
+ *
+ * @see WriteAheadLog
+ * @see database.OrderDAO#checkoutBatch(List)
+ */
+
+public class InventoryEngine {
+
+    private static final String SNAPSHOT_FILE = "inventory.snapshot";
+    private static final String LOG_FILE = "inventory.wal";
+
+    private static InventoryEngine instance;
+
+    private final Path snapshotPath;
+    private final Path logPath;
+    private final ConcurrentHashMap<Integer, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private final WriteAheadLog log;
+    private final ScheduledExecutorService checkpointer;
+
+    private final AtomicLong reservations = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong totalReserveNanos = new AtomicLong();
+    private final AtomicLong checkpoints = new AtomicLong();
+    // Set by recover(): where the intact records of the log end.
+    private long intactLogLength;
+
+    private InventoryEngine() throws IOException {
+        DatabaseConnectionManager config = DatabaseConnectionManager.getInstance();
+        Path dataDir = Paths.get(config.getProperty("inventory.dataDir", "inventory"));
+        Files.createDirectories(dataDir);
+        this.snapshotPath = dataDir.resolve(SNAPSHOT_FILE);
+        this.logPath = dataDir.resolve(LOG_FILE);
+
+        long lastSequence = recover();
+        this.log = new WriteAheadLog(logPath, config.getBooleanProperty("inventory.wal.fsync", false), lastSequence + 1,
+                intactLogLength);
+
+        long interval = Math.max(1000, config.getLongProperty("inventory.checkpointIntervalMillis", 10000));
+        this.checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "inventory-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpointQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "inventory-shutdown"));
+    }
+
+    /**
+     * @return true if {@code inventory.engine.enabled} is set, in which case checkout reserves stock
+     * through the engine instead of the database.
+     */
+    public static boolean isEnabled() {
+        return DatabaseConnectionManager.getInstance().getBooleanProperty("inventory.engine.enabled", false);
+    }
+
+    /**
+     * Returns the engine, recovering its state on first use.
+     *
+     * @throws IllegalStateException If the snapshot or the log cannot be read.
+     */
+    public static synchronized InventoryEngine getInstance() {
+        if (instance == null) {
+            try {
+                instance = new InventoryEngine();
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to start the inventory engine.", e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Reserves every line of an order, or none of them. Each line is decremented atomically; if any line
+     * is short, the lines already taken are put back. A successful reservation is written to the log
+     * before this method returns.
+     *
+     * @param items The order lines to reserve.
+     * @return Which lines had enough stock; nothing stays reserved unless every line had.
+     */
+    public StockReservation reserve(List<OrderItem> items) {
+        return reserve(items, Map.of());
+    }
+
+    /**
+     * Reserves every line of an order, or none of them, first using up the copies held for the order's
+     * cart. A held copy is converted into a sale in the same atomic step that takes the stock. If the
+     * reservation fails, the holds are left in place for the caller to release.
+     *
+     * @param items The order lines to reserve.
+     * @param held  The number of copies held for the cart, by book id, as returned by
+     *              {@link CartReservations#claim(Object)}.
+     * @return Which lines had enough stock; nothing stays reserved unless every line had.
+     */
+    public StockReservation reserve(List<OrderItem> items, Map<Integer, Integer> held) {
+        long start = System.nanoTime();
+        boolean[] reserved = new boolean[items.size()];
+        int[] heldUsed = new int[items.size()];
+        boolean complete = !items.isEmpty();
+
+        checkpointLock.readLock().lock();
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                OrderItem item = items.get(i);
+                int bookId = item.getBook().getId();
+                int fromHold = Math.min(item.getQuantity(), held.getOrDefault(bookId, 0));
+                heldUsed[i] = tryTake(counter(bookId), item.getQuantity(), fromHold);
+                reserved[i] = heldUsed[i] >= 0;
+                complete &= reserved[i];
+            }
+
+            if (complete) {
+                try {
+                    logChanges(items, -1);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    complete = false;
+                    undo(items, reserved, heldUsed);
+                    Arrays.fill(reserved, false);
+                }
+            } else {
+                undo(items, reserved, heldUsed);
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+
+        if (complete) {
+            reservations.incrementAndGet();
+        } else {
+            rejections.incrementAndGet();
+        }
+        totalReserveNanos.addAndGet(System.nanoTime() - start);
+        return new StockReservation(items, reserved);
+    }
+
+    /**
+     * Hands back stock taken by {@link #reserve}, for example when the order could not be stored.
+     *
+     * @param items The reserved lines to release.
+     */
+    public void release(List<OrderItem> items) {
+        release(items, Map.of());
+    }
+
+    /**
+     * Hands back stock taken by {@link #reserve(List, Map)} and holds the converted copies again, so the
+     * order can be reserved once more as if it had never been.
+     *
+     * @param items The reserved lines to release.
+     * @param held  The holds passed to {@link #reserve(List, Map)}.
+     */
+    public void release(List<OrderItem> items, Map<Integer, Integer> held) {
+        if (items.isEmpty()) {
+            return;
+        }
+        Map<Integer, Integer> toHold = new HashMap<>(held);
+        checkpointLock.readLock().lock();
+        try {
+            for (OrderItem item : items) {
+                int bookId = item.getBook().getId();
+                int heldAgain = Math.min(item.getQuantity(), toHold.getOrDefault(bookId, 0));
+                toHold.merge(bookId, -heldAgain, Integer::sum);
+                add(counter(bookId), item.getQuantity(), heldAgain);
+            }
+            logChanges(items, 1);
+        } catch (IOException e) {
+            // The counters are already correct in memory; the next checkpoint persists them.
+            e.printStackTrace();
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sets aside copies of a book for a cart, if enough are available. Held copies cannot be reserved by
+     * other orders until they are released or converted.
+     *
+     * @param bookId   The unique identifier of the book.
+     * @param quantity The number of copies to hold.
+     * @return true if the copies are now held, false if not enough were available.
+     */
+    public boolean hold(int bookId, int quantity) {
+        AtomicLong counter = counter(bookId);
+        while (true) {
+            long current = counter.get();
+            int stock = stockOf(current);
+            int held = heldOf(current);
+            if (stock - held < quantity) {
+                return false;
+            }
+            if (counter.compareAndSet(current, pack(stock, held + quantity))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns held copies to the available stock, for example when a hold expires.
+     *
+     * @param bookId   The unique identifier of the book.
+     * @param quantity The number of copies to release.
+     */
+    public void releaseHold(int bookId, int quantity) {
+        AtomicLong counter = counter(bookId);
+        while (true) {
+            long current = counter.get();
+            int held = Math.max(0, heldOf(current) - quantity);
+            if (counter.compareAndSet(current, pack(stockOf(current), held))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param bookId The unique identifier of the book.
+     * @return The number of copies that can currently be reserved or held, not counting held copies.
+     */
+    public int getAvailable(int bookId) {
+        long current = counter(bookId).get();
+        return stockOf(current) - heldOf(current);
+    }
+
+    private AtomicLong counter(int bookId) {
+        AtomicLong counter = counters.get(bookId);
+        if (counter != null) {
+            return counter;
+        }
+        // A book added after the engine started: seed it from the database once.
+        Book book = BookDAO.getBookById(bookId);
+        return counters.computeIfAbsent(bookId, id -> new AtomicLong(pack(book == null ? 0 : book.getQuantity(), 0)));
+    }
+
+    /**
+     * Takes {@code quantity} copies of stock, of which {@code fromHold} were held for the buyer.
+     *
+     * @return The number of held copies used, or -1 if there was not enough stock.
+     */
+    private static int tryTake(AtomicLong counter, int quantity, int fromHold) {
+        while (true) {
+            long current = counter.get();
+            int stock = stockOf(current);
+            int held = heldOf(current);
+            int usedHold = Math.min(fromHold, held);
+            if (stock - held + usedHold < quantity) {
+                return -1;
+            }
+            if (counter.compareAndSet(current, pack(stock - quantity, held - usedHold))) {
+                return usedHold;
+            }
+        }
+    }
+
+    private static void add(AtomicLong counter, int stockDelta, int heldDelta) {
+        while (true) {
+            long current = counter.get();
+            if (counter.compareAndSet(current, pack(stockOf(current) + stockDelta, heldOf(current) + heldDelta))) {
+                return;
+            }
+        }
+    }
+
+    private static long pack(int stock, int held) {
+        return ((long) stock << 32) | (held & 0xFFFFFFFFL);
+    }
+
+    private static int stockOf(long counter) {
+        return (int) (counter >> 32);
+    }
+
+    private static int heldOf(long counter) {
+        return (int) counter;
+    }
+
+    private void undo(List<OrderItem> items, boolean[] taken, int[] heldUsed) {
+        for (int i = 0; i < items.size(); i++) {
+            if (taken[i]) {
+                OrderItem item = items.get(i);
+                add(counter(item.getBook().getId()), item.getQuantity(), heldUsed[i]);
+            }
+        }
+    }
+
+    private void logChanges(List<OrderItem> items, int sign) throws IOException {
+        int[] bookIds = new int[items.size()];
+        int[] deltas = new int[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            bookIds[i] = items.get(i).getBook().getId();
+            deltas[i] = sign * items.get(i).getQuantity();
+            dirty.add(bookIds[i]);
+        }
+        log.append(bookIds, deltas);
+    }
+
+    /**
+     * Rebuilds the counters from the last snapshot and the log, or from the {@code books} table when
+     * there is no snapshot yet.
+     *
+     * @return The sequence number of the last change applied.
+     */
+    private long recover() throws IOException {
+        long snapshotSequence = 0;
+        if (Files.exists(snapshotPath)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+                snapshotSequence = in.readLong();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    counters.put(in.readInt(), new AtomicLong(pack(in.readInt(), 0)));
+                }
+            }
+            // A crash between truncating the log and writing the books table leaves the table behind the snapshot.
+            for (Map.Entry<Integer, Integer> entry : BookDAO.getStockLevels().entrySet()) {
+                AtomicLong counter = counters.get(entry.getKey());
+                if (counter != null && stockOf(counter.get()) != entry.getValue()) {
+                    dirty.add(entry.getKey());
+                }
+            }
+        } else {
+            for (Map.Entry<Integer, Integer> entry : BookDAO.getStockLevels().entrySet()) {
+                counters.put(entry.getKey(), new AtomicLong(pack(entry.getValue(), 0)));
+            }
+        }
+
+        int[] replayed = new int[1];
+        long[] lastSequence = {snapshotSequence};
+        intactLogLength = WriteAheadLog.replay(logPath, snapshotSequence, (sequence, bookId, delta) -> {
+            add(counters.computeIfAbsent(bookId, id -> new AtomicLong()), delta, 0);
+            dirty.add(bookId);
+            replayed[0]++;
+            lastSequence[0] = Math.max(lastSequence[0], sequence);
+        });
+        System.out.println("Inventory recovered " + counters.size() + " books from snapshot sequence " + snapshotSequence
+                + ", replayed " + replayed[0] + " log records.");
+        return lastSequence[0];
+    }
+
+    /**
+     * Writes a snapshot of all counters, truncates the log and copies the changed quantities to the
+     * {@code books} table. Reservations are paused only while the snapshot is taken, not during the
+     * database write.
+     *
+     * @throws IOException If the snapshot cannot be written; the log is then kept.
+     */
+    public void checkpoint() throws IOException {
+        Map<Integer, Integer> changed = new HashMap<>();
+        checkpointLock.writeLock().lock();
+        try {
+            Map<Integer, Integer> stock = new HashMap<>();
+            for (Map.Entry<Integer, AtomicLong> entry : counters.entrySet()) {
+                stock.put(entry.getKey(), stockOf(entry.getValue().get()));
+            }
+            writeSnapshot(stock, log.getLastSequence());
+            log.truncate();
+
+            for (Integer bookId : dirty) {
+                changed.put(bookId, stock.get(bookId));
+            }
+            dirty.clear();
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+
+        if (!changed.isEmpty()) {
+            if (BookDAO.writeStockLevels(changed)) {
+                for (Integer bookId : changed.keySet()) {
+                    CatalogCache.getInstance().invalidate(bookId);
+                }
+            } else {
+                dirty.addAll(changed.keySet());
+            }
+        }
+        checkpoints.incrementAndGet();
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the snapshot to a temporary file, forces it to disk and moves it into place, so the log is only
+     * truncated once the snapshot that replaces it is durable.
+     */
+    private void writeSnapshot(Map<Integer, Integer> stock, long sequence) throws IOException {
+        Path temp = snapshotPath.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeLong(sequence);
+            out.writeInt(stock.size());
+            for (Map.Entry<Integer, Integer> entry : stock.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Takes a final checkpoint and closes the log.
+     */
+    public void shutdown() {
+        checkpointer.shutdownNow();
+        checkpointQuietly();
+        try {
+            log.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public long getReservationCount() {
+        return reservations.get();
+    }
+
+    public long getRejectionCount() {
+        return rejections.get();
+    }
+
+    public double getAverageReserveMicros() {
+        long count = reservations.get() + rejections.get();
+        return count == 0 ? 0.0 : totalReserveNanos.get() / (count * 1000.0);
+    }
+
+    public long getCheckpointCount() {
+        return checkpoints.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("InventoryEngine[books=%d, dirty=%d, reservations=%d, rejections=%d, avgReserve=%.1fus, checkpoints=%d, lastSequence=%d]",
+                counters.size(), dirty.size(), getReservationCount(), getRejectionCount(), getAverageReserveMicros(),
+                getCheckpointCount(), log.getLastSequence());
+    }
+}
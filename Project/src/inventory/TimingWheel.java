@@ -0,0 +1,198 @@
+package inventory;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel for large numbers of timeouts with a coarse resolution.
+ * <p>
+ * Time advances in ticks of {@code tickMillis}. There are four wheels of 64 slots each; the first one
+ * covers the next 64 ticks, and every following wheel covers 64 times as much as the one below it. A
+ * timeout is put into the slot of the smallest wheel that reaches its deadline, and moves down a wheel
+ * each time the wheel below completes a turn. Scheduling and cancelling are O(1), and a tick only
+ * touches the timeouts that expire or move down, no matter how many are pending.
+ * </p>
+ * Deadlines beyond the largest wheel (about 16.7 million ticks) are parked in its farthest slot and
+ * rescheduled when they reach the bottom. This class is not thread-safe; callers synchronize.
+ *
+ * @param <T> The payload handed back when a timeout expires.
+ */
+
+final class TimingWheel<T> {
+
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    /**
+     * A scheduled timeout; keep it to cancel the timeout later.
+     */
+    static final class Timeout<T> {
+        private final T payload;
+        private long deadlineTick;
+        private Timeout<T> previous;
+        private Timeout<T> next;
+        private Slot<T> slot;
+
+        private Timeout(T payload, long deadlineTick) {
+            this.payload = payload;
+            this.deadlineTick = deadlineTick;
+        }
+
+        T getPayload() {
+            return payload;
+        }
+
+        boolean isPending() {
+            return slot != null;
+        }
+    }
+
+    private static final class Slot<T> {
+        private Timeout<T> head;
+
+        private void add(Timeout<T> timeout) {
+            timeout.slot = this;
+            timeout.previous = null;
+            timeout.next = head;
+            if (head != null) {
+                head.previous = timeout;
+            }
+            head = timeout;
+        }
+
+        private void remove(Timeout<T> timeout) {
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.slot = null;
+            timeout.previous = null;
+            timeout.next = null;
+        }
+
+        private Timeout<T> detachAll() {
+            Timeout<T> first = head;
+            head = null;
+            return first;
+        }
+    }
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final Slot<T>[][] wheels;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = Math.max(1, tickMillis);
+        this.startMillis = startMillis;
+        this.wheels = new Slot[LEVELS][SLOTS];
+        for (Slot<T>[] wheel : wheels) {
+            for (int i = 0; i < SLOTS; i++) {
+                wheel[i] = new Slot<>();
+            }
+        }
+    }
+
+    /**
+     * Schedules a timeout. The delay is rounded up to whole ticks, and is at least one tick.
+     *
+     * @param payload     The value handed to the expiry handler.
+     * @param delayMillis The time until the timeout expires.
+     * @return A handle that can be passed to {@link #cancel}.
+     */
+    Timeout<T> schedule(T payload, long delayMillis) {
+        long ticks = Math.max(1, (delayMillis + tickMillis - 1) / tickMillis);
+        Timeout<T> timeout = new Timeout<>(payload, currentTick + ticks);
+        place(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Cancels a pending timeout.
+     *
+     * @return true if the timeout was pending, false if it had already expired or been cancelled.
+     */
+    boolean cancel(Timeout<T> timeout) {
+        if (timeout == null || timeout.slot == null) {
+            return false;
+        }
+        timeout.slot.remove(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Advances the wheel to the given time and hands every timeout that expired on the way to the handler.
+     *
+     * @param nowMillis The current time.
+     * @param handler   Receives the payload of each expired timeout.
+     * @return The number of timeouts that expired.
+     */
+    int advanceTo(long nowMillis, Consumer<T> handler) {
+        long targetTick = (nowMillis - startMillis) / tickMillis;
+        int expired = 0;
+        while (currentTick < targetTick) {
+            currentTick++;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(wheels[level][(int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK]);
+                }
+            }
+
+            Timeout<T> timeout = wheels[0][(int) currentTick & SLOT_MASK].detachAll();
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                timeout.slot = null;
+                timeout.previous = null;
+                timeout.next = null;
+                if (timeout.deadlineTick <= currentTick) {
+                    size--;
+                    expired++;
+                    handler.accept(timeout.payload);
+                } else {
+                    place(timeout);
+                }
+                timeout = next;
+            }
+        }
+        return expired;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void cascade(Slot<T> slot) {
+        Timeout<T> timeout = slot.detachAll();
+        while (timeout != null) {
+            Timeout<T> next = timeout.next;
+            timeout.slot = null;
+            place(timeout);
+            timeout = next;
+        }
+    }
+
+    private void place(Timeout<T> timeout) {
+        long deadline = Math.max(timeout.deadlineTick, currentTick);
+        long remaining = deadline - currentTick;
+        if (remaining >= MAX_SPAN) {
+            deadline = currentTick + MAX_SPAN - 1;
+            remaining = MAX_SPAN - 1;
+        }
+
+        int level = 0;
+        while (level < LEVELS - 1 && remaining >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        wheels[level][(int) (deadline >>> (SLOT_BITS * level)) & SLOT_MASK].add(timeout);
+    }
+}
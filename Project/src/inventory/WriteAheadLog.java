@@ -0,0 +1,149 @@
+package inventory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of stock changes used by {@link InventoryEngine} to survive restarts.
+ * <p>
+ * Every record is 20 bytes: a sequence number, a book id, a signed quantity delta and a CRC32 of the
+ * preceding 16 bytes. A record whose checksum does not match marks a torn write at the end of the log;
+ * replay stops there, and the log is cut back to the last intact record when it is reopened, so records
+ * appended after a restart are never hidden behind a torn one.
+ * </p>
+ */
+
+final class WriteAheadLog implements Closeable {
+
+    static final int RECORD_SIZE = 20;
+
+    /**
+     * Receives the records read back by {@link #replay}.
+     */
+    interface RecordHandler {
+        void apply(long sequence, int bookId, int delta);
+    }
+
+    private final FileChannel channel;
+    private final boolean fsync;
+    private final CRC32 crc = new CRC32();
+    private long nextSequence;
+
+    /**
+     * Opens the log for appending after its intact records, dropping a torn tail.
+     *
+     * @param intactLength The length of the intact records, as returned by {@link #replay}.
+     */
+    WriteAheadLog(Path path, boolean fsync, long nextSequence, long intactLength) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        this.fsync = fsync;
+        this.nextSequence = nextSequence;
+        if (channel.size() > intactLength) {
+            channel.truncate(intactLength);
+            channel.force(false);
+        }
+        channel.position(intactLength);
+    }
+
+    /**
+     * Appends one record per changed book as a single write.
+     *
+     * @param bookIds The ids of the changed books.
+     * @param deltas  The signed quantity change of each book.
+     * @return The sequence number of the last record written.
+     * @throws IOException If the records could not be written.
+     */
+    synchronized long append(int[] bookIds, int[] deltas) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * bookIds.length);
+        for (int i = 0; i < bookIds.length; i++) {
+            int start = buffer.position();
+            buffer.putLong(nextSequence++);
+            buffer.putInt(bookIds[i]);
+            buffer.putInt(deltas[i]);
+            crc.reset();
+            crc.update(buffer.array(), start, RECORD_SIZE - 4);
+            buffer.putInt((int) crc.getValue());
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+        return nextSequence - 1;
+    }
+
+    synchronized long getLastSequence() {
+        return nextSequence - 1;
+    }
+
+    /**
+     * Discards every record, once a checkpoint has captured their effect.
+     */
+    synchronized void truncate() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads back every intact record with a sequence number greater than {@code afterSequence}.
+     *
+     * @param path          The log file; a missing file is treated as empty.
+     * @param afterSequence Records up to and including this sequence are already reflected in the snapshot.
+     * @param handler       Receives each record to apply.
+     * @return The length in bytes of the intact records at the start of the log; anything after it is torn.
+     * @throws IOException If the file cannot be read.
+     */
+    static long replay(Path path, long afterSequence, RecordHandler handler) throws IOException {
+        long lastSequence = afterSequence;
+        long intactLength = 0;
+        if (!Files.exists(path)) {
+            return intactLength;
+        }
+
+        CRC32 checksum = new CRC32();
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+            while (true) {
+                record.clear();
+                while (record.hasRemaining() && in.read(record) > 0) {
+                    // keep reading until the record is complete or the file ends
+                }
+                if (record.hasRemaining()) {
+                    break;
+                }
+                record.flip();
+                checksum.reset();
+                checksum.update(record.array(), 0, RECORD_SIZE - 4);
+                long sequence = record.getLong();
+                int bookId = record.getInt();
+                int delta = record.getInt();
+                if (record.getInt() != (int) checksum.getValue()) {
+                    System.out.println("Inventory log ends with a damaged record after sequence " + lastSequence);
+                    break;
+                }
+                if (sequence > afterSequence) {
+                    handler.apply(sequence, bookId, delta);
+                }
+                lastSequence = Math.max(lastSequence, sequence);
+                intactLength += RECORD_SIZE;
+            }
+        }
+        return intactLength;
+    }
+}
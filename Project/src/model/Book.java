@@ -69,6 +69,25 @@ public class Book {
         return this.getTitle() + " - $" + this.getPrice();
     }
 
+    /**
+     * Two books are equal when they have the same id, even if they were loaded separately.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Book)) {
+            return false;
+        }
+        return id == ((Book) o).id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(id);
+    }
+
     public Language getLanguage() {
         return language;
     }
@@ -0,0 +1,29 @@
+package model;
+
+/**
+ * The current stock and price of one book, as read by a batched availability check.
+ */
+
+public class BookAvailability {
+    private final int bookId;
+    private final int available;
+    private final double price;
+
+    public BookAvailability(int bookId, int available, double price) {
+        this.bookId = bookId;
+        this.available = available;
+        this.price = price;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+}
@@ -0,0 +1,150 @@
+package model;
+
+/**
+ * Describes a catalog query: which books to match, in what order and how many to return.
+ * Every field is optional; an empty criteria object matches the whole catalog sorted by id.
+ * {@link Category#VIEW_ALL} and {@link Language#VIEW_ALL} mean "no filter".
+ * {@link Sort#RELEVANCE} orders the matches of a title fragment by search score, and by id otherwise.
+ */
+
+public class BookSearchCriteria {
+
+    public enum Sort {
+        ID("Catalog order"),
+        RELEVANCE("Best match"),
+        TITLE("Title"),
+        AUTHOR("Author"),
+        PRICE_ASCENDING("Price: low to high"),
+        PRICE_DESCENDING("Price: high to low");
+
+        private final String displayName;
+
+        Sort(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    private String titleFragment;
+    private boolean fuzzy;
+    private Category category;
+    private Language language;
+    private boolean inStockOnly;
+    private Double minPrice;
+    private Double maxPrice;
+    private Sort sort = Sort.ID;
+    private int limit;
+
+    public BookSearchCriteria() {
+    }
+
+    public BookSearchCriteria(BookSearchCriteria other) {
+        this.titleFragment = other.titleFragment;
+        this.fuzzy = other.fuzzy;
+        this.category = other.category;
+        this.language = other.language;
+        this.inStockOnly = other.inStockOnly;
+        this.minPrice = other.minPrice;
+        this.maxPrice = other.maxPrice;
+        this.sort = other.sort;
+        this.limit = other.limit;
+    }
+
+    public String getTitleFragment() {
+        return titleFragment;
+    }
+
+    public void setTitleFragment(String titleFragment) {
+        this.titleFragment = titleFragment;
+    }
+
+    public boolean hasTitleFragment() {
+        return titleFragment != null && !titleFragment.isBlank();
+    }
+
+    public boolean isFuzzy() {
+        return fuzzy;
+    }
+
+    /**
+     * @param fuzzy true to also match words of the title fragment that contain a typo.
+     */
+    public void setFuzzy(boolean fuzzy) {
+        this.fuzzy = fuzzy;
+    }
+
+    public Category getCategory() {
+        return category;
+    }
+
+    public void setCategory(Category category) {
+        this.category = category;
+    }
+
+    public boolean hasCategory() {
+        return category != null && category != Category.VIEW_ALL;
+    }
+
+    public Language getLanguage() {
+        return language;
+    }
+
+    public void setLanguage(Language language) {
+        this.language = language;
+    }
+
+    public boolean hasLanguage() {
+        return language != null && language != Language.VIEW_ALL;
+    }
+
+    public boolean isInStockOnly() {
+        return inStockOnly;
+    }
+
+    public void setInStockOnly(boolean inStockOnly) {
+        this.inStockOnly = inStockOnly;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(Double minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(Double maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public void setSort(Sort sort) {
+        this.sort = sort == null ? Sort.ID : sort;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param limit The maximum number of books to return, or 0 for no limit.
+     */
+    public void setLimit(int limit) {
+        this.limit = Math.max(0, limit);
+    }
+}
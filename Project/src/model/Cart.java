@@ -1,49 +1,178 @@
 package model;
 
+import event.CartChangeEvent;
+import event.CartChangeListener;
+
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Represents a shopping cart in the application.
  * Manages a collection of items that a user intends
  * to purchase, providing methods to add, remove, and
  * manipulate cart contents.
+ * <p>
+ * Lines are keyed by book id, so the same book loaded twice still ends up on one line, and kept in the
+ * order they were added, except that removing a line moves the last line into its place. With the position
+ * of every line kept by id, each change takes constant time. The cart total is kept in cents and adjusted
+ * on every change instead of being summed again. All methods are synchronized, so the cart can be read from a background thread while
+ * the Event Dispatch Thread changes it; {@link #getItems()} returns a consistent copy.
+ * </p>
+ * Registered {@link CartChangeListener}s are told about every change, with the index of the affected line,
+ * while the cart's lock is held. Synchronizing on the cart while reading {@link #getItems()} and registering
+ * a listener guarantees that no change is missed in between.
  */
 
 public class Cart {
-    private Map<Book, Integer> items = new HashMap<>();
+    private final Map<Integer, Integer> quantities = new HashMap<>();
+    private final Map<Integer, Book> books = new HashMap<>();
+    private final List<Integer> lineOrder = new ArrayList<>();
+    private final Map<Integer, Integer> lineIndex = new HashMap<>();
+    private final List<CartChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private long totalCents;
 
 
-    public void addBook(Book book, int quantity) {
-        items.put(book, items.getOrDefault(book, 0) + quantity);
+    public synchronized void addBook(Book book, int quantity) {
+        Integer current = quantities.get(book.getId());
+        setLine(book, current == null ? quantity : current + quantity);
     }
 
-    public void removeBook(Book book) {
-        if (items.containsKey(book)) {
-            int count = items.get(book);
-            if (count == 1) {
-                items.remove(book);
-            } else {
-                items.put(book, count - 1);
-            }
+    /**
+     * Removes one copy of the book; the line disappears with its last copy.
+     */
+    public synchronized void removeBook(Book book) {
+        Integer current = quantities.get(book.getId());
+        if (current != null) {
+            setLine(books.get(book.getId()), current - 1);
         }
     }
 
-    public void removeAllOfBook(Book book) {
-        items.remove(book);
+    public synchronized void removeAllOfBook(Book book) {
+        if (quantities.containsKey(book.getId())) {
+            setLine(books.get(book.getId()), 0);
+        }
     }
 
+    /**
+     * Sets the number of copies of a book, adding or removing its line as needed.
+     *
+     * @param book     The book to change.
+     * @param quantity The new number of copies; 0 or less removes the line.
+     */
+    public synchronized void setQuantity(Book book, int quantity) {
+        setLine(books.getOrDefault(book.getId(), book), quantity);
+    }
+
+
+    /**
+     * Updates the price of books in the cart, for example after the checkout pre-flight found that
+     * prices have changed. The lines keep their position and quantity.
+     *
+     * @param prices The new prices, by book id; books that are not in the cart are ignored.
+     */
+    public synchronized void applyPrices(Map<Integer, Double> prices) {
+        for (Map.Entry<Integer, Double> price : prices.entrySet()) {
+            int bookId = price.getKey();
+            Book book = books.get(bookId);
+            if (book == null) {
+                continue;
+            }
+            int quantity = quantities.get(bookId);
+            totalCents += (Math.round(price.getValue() * 100) - Math.round(book.getPrice() * 100)) * quantity;
+            Book repriced = new Book(book.getId(), book.getTitle(), book.getAuthor(), price.getValue(),
+                    book.getQuantity(), book.getLanguage(), book.getCategory());
+            books.put(bookId, repriced);
+            fire(new CartChangeEvent(CartChangeEvent.Type.UPDATED, lineIndex.get(bookId), repriced, quantity, getTotal()));
+        }
+    }
 
-    public void clearCart() {
-        items.clear();
+    public synchronized void clearCart() {
+        quantities.clear();
+        books.clear();
+        lineOrder.clear();
+        lineIndex.clear();
+        totalCents = 0;
+        fire(new CartChangeEvent(CartChangeEvent.Type.CLEARED, -1, null, 0, 0.0));
 
     }
 
-    public Map<Book, Integer> getItems() {
+    /**
+     * @return A copy of the cart contents, books mapped to their quantities, in line order.
+     */
+    public synchronized Map<Book, Integer> getItems() {
+        Map<Book, Integer> items = new LinkedHashMap<>();
+        for (Integer bookId : lineOrder) {
+            items.put(books.get(bookId), quantities.get(bookId));
+        }
         return items;
     }
 
+    public synchronized int getQuantity(int bookId) {
+        return quantities.getOrDefault(bookId, 0);
+    }
+
+    public synchronized int getLineCount() {
+        return lineOrder.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return lineOrder.isEmpty();
+    }
+
+    public synchronized double getTotal() {
+        return totalCents / 100.0;
+    }
+
+    public void addCartChangeListener(CartChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeCartChangeListener(CartChangeListener listener) {
+        listeners.remove(listener);
+    }
 
+    private void setLine(Book book, int quantity) {
+        int bookId = book.getId();
+        Integer previous = quantities.get(bookId);
+        int previousQuantity = previous == null ? 0 : previous;
+        long unitCents = Math.round(books.getOrDefault(bookId, book).getPrice() * 100);
+        totalCents += unitCents * (Math.max(0, quantity) - previousQuantity);
 
+        if (quantity <= 0) {
+            if (previous == null) {
+                return;
+            }
+            int index = lineIndex.remove(bookId);
+            int lastIndex = lineOrder.size() - 1;
+            int lastId = lineOrder.remove(lastIndex);
+            quantities.remove(bookId);
+            Book removed = books.remove(bookId);
+            if (index != lastIndex) {
+                lineOrder.set(index, lastId);
+                lineIndex.put(lastId, index);
+                fire(new CartChangeEvent(CartChangeEvent.Type.MOVED, index, books.get(lastId), quantities.get(lastId), getTotal()));
+            }
+            fire(new CartChangeEvent(CartChangeEvent.Type.REMOVED, lastIndex, removed, 0, getTotal()));
+        } else if (previous == null) {
+            quantities.put(bookId, quantity);
+            books.put(bookId, book);
+            lineIndex.put(bookId, lineOrder.size());
+            lineOrder.add(bookId);
+            fire(new CartChangeEvent(CartChangeEvent.Type.ADDED, lineOrder.size() - 1, book, quantity, getTotal()));
+        } else {
+            quantities.put(bookId, quantity);
+            fire(new CartChangeEvent(CartChangeEvent.Type.UPDATED, lineIndex.get(bookId), books.get(bookId), quantity, getTotal()));
+        }
+    }
+
+    private void fire(CartChangeEvent event) {
+        for (CartChangeListener listener : listeners) {
+            listener.cartChanged(event);
+        }
+    }
 
 }
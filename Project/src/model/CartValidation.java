@@ -0,0 +1,103 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of checking every line of a cart against the current stock and prices.
+ * <p>
+ * A line is short when fewer copies are available than are in the cart (a book that no longer exists
+ * has none available), and repriced when the current price differs from the price shown in the cart.
+ * </p>
+ */
+
+public class CartValidation {
+    private final Map<Book, Integer> items;
+    private final Map<Integer, BookAvailability> availability;
+    private final List<Book> shortBooks = new ArrayList<>();
+    private final List<Book> repricedBooks = new ArrayList<>();
+
+    /**
+     * Compares the cart lines with the given availability.
+     *
+     * @param items        The cart contents, books mapped to their quantities.
+     * @param availability The current availability of the books, by book id.
+     */
+    public CartValidation(Map<Book, Integer> items, Map<Integer, BookAvailability> availability) {
+        this.items = items;
+        this.availability = availability;
+        for (Map.Entry<Book, Integer> item : items.entrySet()) {
+            Book book = item.getKey();
+            BookAvailability current = availability.get(book.getId());
+            if (current == null || current.getAvailable() < item.getValue()) {
+                shortBooks.add(book);
+            }
+            if (current != null && Math.round(current.getPrice() * 100) != Math.round(book.getPrice() * 100)) {
+                repricedBooks.add(book);
+            }
+        }
+    }
+
+    /**
+     * @return The availability of the book, or null if it no longer exists.
+     */
+    public BookAvailability getAvailability(int bookId) {
+        return availability.get(bookId);
+    }
+
+    public List<Book> getShortBooks() {
+        return Collections.unmodifiableList(shortBooks);
+    }
+
+    public List<Book> getRepricedBooks() {
+        return Collections.unmodifiableList(repricedBooks);
+    }
+
+    /**
+     * @return The current price of the book, or the price shown in the cart if the book no longer exists.
+     */
+    public double getCurrentPrice(Book book) {
+        BookAvailability current = availability.get(book.getId());
+        return current == null ? book.getPrice() : current.getPrice();
+    }
+
+    /**
+     * @return The current prices of the repriced books, by book id.
+     */
+    public Map<Integer, Double> getCurrentPrices() {
+        Map<Integer, Double> prices = new LinkedHashMap<>();
+        for (Book book : repricedBooks) {
+            prices.put(book.getId(), getCurrentPrice(book));
+        }
+        return prices;
+    }
+
+    /**
+     * @return The cart total at the current prices.
+     */
+    public double getCurrentTotal() {
+        long totalCents = 0;
+        for (Map.Entry<Book, Integer> item : items.entrySet()) {
+            totalCents += Math.round(getCurrentPrice(item.getKey()) * 100) * item.getValue();
+        }
+        return totalCents / 100.0;
+    }
+
+    public boolean isShort(Book book) {
+        return shortBooks.contains(book);
+    }
+
+    public boolean isRepriced(Book book) {
+        return repricedBooks.contains(book);
+    }
+
+    /**
+     * @return true if every line is in stock at the price shown.
+     */
+    public boolean isValid() {
+        return shortBooks.isEmpty() && repricedBooks.isEmpty();
+    }
+}
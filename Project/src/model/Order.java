@@ -2,7 +2,9 @@ package model;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a customer's completed transaction.
@@ -17,6 +19,8 @@ public class Order {
     private User user;
     private int totalQuantity;
     private double totalPrice;
+    private boolean itemsLoaded = true;
+    private Map<Integer, Integer> heldQuantities = new HashMap<>();
 
     public Order(int id, User user, List<OrderItem> orderItems) {
         this.id = id;
@@ -86,6 +90,28 @@ public class Order {
     public void setTotalPrice(double totalPrice) {
         this.totalPrice = totalPrice;
     }
+    /**
+     * @return false if only the order summary was loaded and the line items still have to be fetched.
+     */
+    public boolean isItemsLoaded() {
+        return itemsLoaded;
+    }
+
+    public void setItemsLoaded(boolean itemsLoaded) {
+        this.itemsLoaded = itemsLoaded;
+    }
+
+    /**
+     * @return The copies held for this order's cart before checkout, by book id; empty if none were held.
+     */
+    public Map<Integer, Integer> getHeldQuantities() {
+        return heldQuantities;
+    }
+
+    public void setHeldQuantities(Map<Integer, Integer> heldQuantities) {
+        this.heldQuantities = heldQuantities;
+    }
+
     public int getUserID(){
         return user.getId();
     }
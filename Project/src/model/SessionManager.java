@@ -12,6 +12,7 @@ import java.util.List;
 public class SessionManager {
     private static SessionManager instance;
     private User currentUser;
+    private Cart cart = new Cart();
     private List<OrderItem> currentOrderItems = new ArrayList<>();
 
     private SessionManager() {}
@@ -35,12 +36,23 @@ public class SessionManager {
         this.currentOrderItems.add(item);
     }
 
+    /**
+     * @return The shopping cart of the current session, shared by every frame.
+     */
+    public Cart getCart() {
+        return cart;
+    }
+
     public void login(User user) {
         this.currentUser = user;
     }
 
+    /**
+     * Ends the session and starts a new, empty cart for the next user.
+     */
     public void logout() {
         this.currentUser = null;
+        this.cart = new Cart();
     }
 
     public void clearCurrentOrderItems() {
@@ -49,16 +61,4 @@ public class SessionManager {
         }
     }
 
-    public boolean isOrderValid() {
-        for (OrderItem item : currentOrderItems) {
-            Book book = item.getBook();
-            if (book.getQuantity() <= 0) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-
-
 }
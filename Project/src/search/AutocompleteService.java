@@ -0,0 +1,341 @@
+package search;
+
+import database.BookDAO;
+import database.CatalogCache;
+import database.DatabaseConnectionManager;
+import database.OrderDAO;
+import event.CatalogChangeEvent;
+import event.CatalogChangeListener;
+import model.Book;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Suggests book titles and author names for the text typed so far, answered from memory on every keystroke.
+ * <p>
+ * Every title and author is stored in a {@link RadixTrie} under its normalized text and under the text from
+ * each of its first {@value #MAX_WORD_STARTS} words on, so "potter" suggests "Harry Potter". A title is
+ * weighted by the copies sold of its book and an author by the copies sold of all their books, so the
+ * best sellers come first. The trie is built from one bulk query for the books and one aggregate query for
+ * the sales on the "search-autocomplete" thread, follows the {@link CatalogChangeEvent}s of the
+ * {@link CatalogCache} like {@link SearchService} does, and reloads the sales every
+ * {@code search.autocomplete.salesRefreshMillis}.
+ * </p>
+ * Suggestions are enabled with {@code search.autocomplete.enabled}. Lookups never touch the database.
+ * {@code bench/search/AutocompleteBenchmark} measures the footprint and the lookup latency of the trie.
+ */
+
+public class AutocompleteService implements CatalogChangeListener {
+
+    static final int MAX_WORD_STARTS = 4;
+    private static final int CATCH_UP_PAGE_SIZE = 1000;
+
+    private static AutocompleteService instance;
+
+    private volatile RadixTrie<Suggestion> trie = new RadixTrie<>();
+    private volatile boolean ready;
+    private final ScheduledExecutorService maintainer;
+
+    // Confined to the maintainer thread.
+    private Map<Integer, BookEntry> books = new HashMap<>();
+    private Map<String, AuthorEntry> authors = new HashMap<>();
+    private Map<Integer, Integer> sales = new HashMap<>();
+    private int maxBookId;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong totalLookupNanos = new AtomicLong();
+
+    private AutocompleteService() {
+        long salesRefreshMillis = Math.max(1000, DatabaseConnectionManager.getInstance()
+                .getLongProperty("search.autocomplete.salesRefreshMillis", 300000));
+        this.maintainer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "search-autocomplete");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CatalogCache.getInstance().addCatalogChangeListener(this);
+        maintainer.execute(this::rebuild);
+        maintainer.scheduleWithFixedDelay(this::refreshSales, salesRefreshMillis, salesRefreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return true if {@code search.autocomplete.enabled} is set.
+     */
+    public static boolean isEnabled() {
+        return DatabaseConnectionManager.getInstance().getBooleanProperty("search.autocomplete.enabled", true);
+    }
+
+    public static synchronized AutocompleteService getInstance() {
+        if (instance == null) {
+            instance = new AutocompleteService();
+        }
+        return instance;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns the best-selling titles and authors starting with the typed text, or with one of its words.
+     *
+     * @param typed The text typed so far; a trailing space means the last word is complete.
+     * @param limit The maximum number of suggestions.
+     * @return Suggestions by descending weight; empty if nothing was typed.
+     */
+    public List<Suggestion> suggest(String typed, int limit) {
+        long start = System.nanoTime();
+        String prefix = prefixOf(typed);
+        List<Suggestion> suggestions = prefix.isEmpty() ? new ArrayList<>() : trie.top(prefix, limit);
+        lookups.incrementAndGet();
+        totalLookupNanos.addAndGet(System.nanoTime() - start);
+        return suggestions;
+    }
+
+    @Override
+    public void catalogChanged(CatalogChangeEvent event) {
+        switch (event.getType()) {
+            case LOADED:
+                List<Book> loaded = new ArrayList<>(event.getBooks());
+                maintainer.execute(() -> {
+                    for (Book book : loaded) {
+                        put(book.getId(), book.getTitle(), book.getAuthor());
+                    }
+                });
+                break;
+            case DELETED:
+                List<Integer> deleted = new ArrayList<>(event.getBookIds());
+                maintainer.execute(() -> {
+                    for (Integer id : deleted) {
+                        remove(id);
+                    }
+                });
+                break;
+            case ADDED:
+                maintainer.execute(this::catchUp);
+                break;
+            case RESET:
+                maintainer.execute(this::rebuild);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Normalizes typed text the same way keys are normalized, keeping a trailing word separator.
+     */
+    static String prefixOf(String typed) {
+        List<String> terms = Tokenizer.tokenize(typed);
+        if (terms.isEmpty()) {
+            return "";
+        }
+        String prefix = String.join(" ", terms);
+        char last = typed.charAt(typed.length() - 1);
+        return Character.isLetterOrDigit(last) ? prefix : prefix + " ";
+    }
+
+    /**
+     * @return The keys a title or author is stored under: the whole normalized text and the text from each
+     *         of its first words on.
+     */
+    static Set<String> keysOf(String text) {
+        List<String> terms = Tokenizer.tokenize(text);
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < Math.min(terms.size(), MAX_WORD_STARTS); i++) {
+            keys.add(String.join(" ", terms.subList(i, terms.size())));
+        }
+        return keys;
+    }
+
+    static void insert(RadixTrie<Suggestion> trie, Suggestion suggestion) {
+        for (String key : keysOf(suggestion.getText())) {
+            trie.insert(key, suggestion, suggestion.getWeight());
+        }
+    }
+
+    private static void remove(RadixTrie<Suggestion> trie, Suggestion suggestion) {
+        for (String key : keysOf(suggestion.getText())) {
+            trie.remove(key, suggestion);
+        }
+    }
+
+    /**
+     * Builds a new trie from one query for the books and one for the sales, and swaps it in.
+     */
+    private void rebuild() {
+        try {
+            long start = System.currentTimeMillis();
+            Map<Integer, Integer> newSales = OrderDAO.getSalesByBook();
+            List<Book> catalog = new BookDAO().getAllBooks();
+
+            Map<Integer, BookEntry> newBooks = new HashMap<>();
+            Map<String, AuthorEntry> newAuthors = new HashMap<>();
+            RadixTrie<Suggestion> newTrie = new RadixTrie<>();
+            int newMaxBookId = 0;
+            for (Book book : catalog) {
+                int sold = newSales.getOrDefault(book.getId(), 0);
+                Suggestion title = new Suggestion(Suggestion.Type.TITLE, book.getTitle(), book.getId(), sold + 1);
+                insert(newTrie, title);
+                newBooks.put(book.getId(), new BookEntry(title, book.getAuthor(), sold));
+                String authorKey = String.join(" ", Tokenizer.tokenize(book.getAuthor()));
+                if (!authorKey.isEmpty()) {
+                    AuthorEntry author = newAuthors.computeIfAbsent(authorKey, key -> new AuthorEntry());
+                    author.name = book.getAuthor();
+                    author.sold += sold;
+                    author.bookCount++;
+                }
+                newMaxBookId = Math.max(newMaxBookId, book.getId());
+            }
+            for (AuthorEntry author : newAuthors.values()) {
+                author.suggestion = new Suggestion(Suggestion.Type.AUTHOR, author.name, 0, author.sold + author.bookCount);
+                insert(newTrie, author.suggestion);
+            }
+
+            books = newBooks;
+            authors = newAuthors;
+            sales = newSales;
+            maxBookId = newMaxBookId;
+            trie = newTrie;
+            ready = true;
+            System.out.println("Autocomplete built: " + newTrie.size() + " keys, " + newTrie.nodeCount() + " nodes in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Re-weights the books whose sales changed since the last refresh.
+     */
+    private void refreshSales() {
+        try {
+            Map<Integer, Integer> newSales = OrderDAO.getSalesByBook();
+            Map<Integer, Integer> oldSales = sales;
+            sales = newSales;
+            for (Map.Entry<Integer, Integer> entry : newSales.entrySet()) {
+                if (!entry.getValue().equals(oldSales.get(entry.getKey()))) {
+                    BookEntry book = books.get(entry.getKey());
+                    if (book != null) {
+                        put(entry.getKey(), book.title.getText(), book.author);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void catchUp() {
+        List<Book> page;
+        do {
+            page = BookDAO.getBooksAfterId(maxBookId, CATCH_UP_PAGE_SIZE);
+            for (Book book : page) {
+                put(book.getId(), book.getTitle(), book.getAuthor());
+            }
+        } while (page.size() == CATCH_UP_PAGE_SIZE);
+    }
+
+    /**
+     * Adds a book or updates its title, author or weight, adjusting the weight of its author.
+     */
+    private void put(int bookId, String title, String author) {
+        int sold = sales.getOrDefault(bookId, 0);
+        BookEntry old = books.get(bookId);
+        if (old != null && old.title.getText().equals(title) && String.valueOf(old.author).equals(String.valueOf(author))
+                && old.sold == sold) {
+            return;
+        }
+        RadixTrie<Suggestion> current = trie;
+        if (old != null) {
+            remove(current, old.title);
+            adjustAuthor(current, old.author, -old.sold, -1);
+        }
+        Suggestion suggestion = new Suggestion(Suggestion.Type.TITLE, title, bookId, sold + 1);
+        insert(current, suggestion);
+        adjustAuthor(current, author, sold, 1);
+        books.put(bookId, new BookEntry(suggestion, author, sold));
+        maxBookId = Math.max(maxBookId, bookId);
+    }
+
+    /**
+     * Removes a book that no longer exists, adjusting the weight of its author.
+     */
+    private void remove(int bookId) {
+        BookEntry old = books.remove(bookId);
+        if (old != null) {
+            RadixTrie<Suggestion> current = trie;
+            remove(current, old.title);
+            adjustAuthor(current, old.author, -old.sold, -1);
+        }
+    }
+
+    private void adjustAuthor(RadixTrie<Suggestion> current, String name, int soldDelta, int bookDelta) {
+        String key = String.join(" ", Tokenizer.tokenize(name));
+        if (key.isEmpty()) {
+            return;
+        }
+        AuthorEntry author = authors.computeIfAbsent(key, k -> new AuthorEntry());
+        if (author.suggestion != null) {
+            remove(current, author.suggestion);
+        }
+        author.sold += soldDelta;
+        author.bookCount += bookDelta;
+        if (author.bookCount <= 0) {
+            authors.remove(key);
+            return;
+        }
+        if (bookDelta > 0) {
+            author.name = name;
+        }
+        author.suggestion = new Suggestion(Suggestion.Type.AUTHOR, author.name, 0, author.sold + author.bookCount);
+        insert(current, author.suggestion);
+    }
+
+    public long getLookupCount() {
+        return lookups.get();
+    }
+
+    public double getAverageLookupMillis() {
+        long count = lookups.get();
+        return count == 0 ? 0.0 : totalLookupNanos.get() / (count * 1_000_000.0);
+    }
+
+    public int getKeyCount() {
+        return trie.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AutocompleteService[ready=%b, keys=%d, lookups=%d, avgLookup=%.3fms]",
+                isReady(), getKeyCount(), getLookupCount(), getAverageLookupMillis());
+    }
+
+    private static final class BookEntry {
+        private final Suggestion title;
+        private final String author;
+        private final int sold;
+
+        private BookEntry(Suggestion title, String author, int sold) {
+            this.title = title;
+            this.author = author;
+            this.sold = sold;
+        }
+    }
+
+    private static final class AuthorEntry {
+        private String name;
+        private int sold;
+        private int bookCount;
+        private Suggestion suggestion;
+    }
+}
@@ -0,0 +1,261 @@
+package search;
+
+import model.Book;
+import model.Category;
+import model.Language;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bitmaps over the catalog for filtering by category, language and stock without looking at the books.
+ * <p>
+ * Every book gets a dense ordinal in ascending id order, and every facet value is a bitmap with one bit per
+ * ordinal, stored as plain {@code long} words: one per {@link Category}, one per {@link Language}, one for
+ * the books in stock and one for the books that exist. A query combines them word by word, ORing the selected
+ * values of a facet and ANDing the facets, and counts the books of every category and language in the same
+ * pass. Changing a book only flips its bits, so a book selling out drops out of the in-stock bitmap at once.
+ * </p>
+ * Ordinals follow the book ids, so a book with a lower id than the highest indexed one cannot be added; the
+ * caller rebuilds instead. Queries share a read lock; updates take the write lock.
+ */
+
+final class FacetIndex {
+
+    private static final Category[] CATEGORIES = Category.values();
+    private static final Language[] LANGUAGES = Language.values();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int[] bookIdByOrdinal = new int[1024];
+    private int ordinalCount;
+    private long[] live = new long[16];
+    private long[] inStock = new long[16];
+    private final long[][] categories = new long[CATEGORIES.length][16];
+    private final long[][] languages = new long[LANGUAGES.length][16];
+    private int liveCount;
+
+    /**
+     * @return false if the book is not indexed and its id is lower than the highest indexed id, so it cannot
+     *         be appended in id order.
+     */
+    boolean accepts(int bookId) {
+        lock.readLock().lock();
+        try {
+            return ordinalCount == 0 || bookId >= bookIdByOrdinal[ordinalCount - 1] || ordinalOf(bookId) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a book or updates the facet bits of an indexed one. The book must be {@linkplain #accepts accepted}.
+     *
+     * @return true if any bit changed.
+     */
+    boolean put(Book book) {
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinalOf(book.getId());
+            if (ordinal < 0) {
+                if (ordinalCount > 0 && book.getId() < bookIdByOrdinal[ordinalCount - 1]) {
+                    throw new IllegalArgumentException("Book " + book.getId() + " is below the highest indexed id.");
+                }
+                ordinal = append(book.getId());
+            }
+            boolean changed = false;
+            if (!get(live, ordinal)) {
+                set(live, ordinal, true);
+                liveCount++;
+                changed = true;
+            }
+            changed |= set(inStock, ordinal, book.getQuantity() > 0);
+            for (int i = 0; i < CATEGORIES.length; i++) {
+                changed |= set(categories[i], ordinal, CATEGORIES[i] == book.getCategory());
+            }
+            for (int i = 0; i < LANGUAGES.length; i++) {
+                changed |= set(languages[i], ordinal, LANGUAGES[i] == book.getLanguage());
+            }
+            return changed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a book from every bitmap; its ordinal is not reused.
+     *
+     * @return true if the book was indexed.
+     */
+    boolean remove(int bookId) {
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinalOf(bookId);
+            if (ordinal < 0 || !get(live, ordinal)) {
+                return false;
+            }
+            set(live, ordinal, false);
+            set(inStock, ordinal, false);
+            for (long[] words : categories) {
+                set(words, ordinal, false);
+            }
+            for (long[] words : languages) {
+                set(words, ordinal, false);
+            }
+            liveCount--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Evaluates a filter and counts the books per category and per language in one pass over the words.
+     * The count of a category is the number of books the filter would match with that category selected
+     * instead, and likewise for languages.
+     *
+     * @param selectedCategories The categories to accept; empty accepts all.
+     * @param selectedLanguages  The languages to accept; empty accepts all.
+     * @param inStockOnly        Whether to accept only books in stock.
+     * @param within             The ids of the books to consider, for example search hits, or null for all.
+     */
+    FacetResult query(Set<Category> selectedCategories, Set<Language> selectedLanguages, boolean inStockOnly,
+                      Collection<Integer> within) {
+        lock.readLock().lock();
+        try {
+            int wordCount = wordsFor(ordinalCount);
+            long[] restriction = null;
+            if (within != null) {
+                restriction = new long[wordCount];
+                for (Integer bookId : within) {
+                    int ordinal = ordinalOf(bookId);
+                    if (ordinal >= 0) {
+                        set(restriction, ordinal, true);
+                    }
+                }
+            }
+            long[] matches = new long[wordCount];
+            int[] categoryCounts = new int[CATEGORIES.length];
+            int[] languageCounts = new int[LANGUAGES.length];
+            long[][] categoryWords = selected(categories, CATEGORIES, selectedCategories);
+            long[][] languageWords = selected(languages, LANGUAGES, selectedLanguages);
+            int count = 0;
+
+            for (int w = 0; w < wordCount; w++) {
+                long base = inStockOnly ? live[w] & inStock[w] : live[w];
+                if (restriction != null) {
+                    base &= restriction[w];
+                }
+                if (base == 0) {
+                    continue;
+                }
+                long categoryMask = categoryWords == null ? -1L : or(categoryWords, w);
+                long languageMask = languageWords == null ? -1L : or(languageWords, w);
+
+                long byLanguage = base & languageMask;
+                for (int i = 0; i < CATEGORIES.length; i++) {
+                    categoryCounts[i] += Long.bitCount(byLanguage & categories[i][w]);
+                }
+                long byCategory = base & categoryMask;
+                for (int i = 0; i < LANGUAGES.length; i++) {
+                    languageCounts[i] += Long.bitCount(byCategory & languages[i][w]);
+                }
+                matches[w] = byLanguage & categoryMask;
+                count += Long.bitCount(matches[w]);
+            }
+            return new FacetResult(bookIdByOrdinal, ordinalCount, matches, count, categoryCounts, languageCounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The highest id ever indexed, or 0 if the index is empty.
+     */
+    int getMaxBookId() {
+        lock.readLock().lock();
+        try {
+            return ordinalCount == 0 ? 0 : bookIdByOrdinal[ordinalCount - 1];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The bitmaps of the selected values, or null if the selection accepts every value.
+     */
+    private static <E extends Enum<E>> long[][] selected(long[][] bitmaps, E[] values, Set<E> selection) {
+        if (selection == null || selection.isEmpty()) {
+            return null;
+        }
+        long[][] chosen = new long[selection.size()][];
+        int i = 0;
+        for (E value : values) {
+            if (selection.contains(value)) {
+                chosen[i++] = bitmaps[value.ordinal()];
+            }
+        }
+        return i == chosen.length ? chosen : Arrays.copyOf(chosen, i);
+    }
+
+    private static long or(long[][] bitmaps, int word) {
+        long result = 0;
+        for (long[] bitmap : bitmaps) {
+            result |= bitmap[word];
+        }
+        return result;
+    }
+
+    private int ordinalOf(int bookId) {
+        return Arrays.binarySearch(bookIdByOrdinal, 0, ordinalCount, bookId);
+    }
+
+    private int append(int bookId) {
+        if (ordinalCount == bookIdByOrdinal.length) {
+            bookIdByOrdinal = Arrays.copyOf(bookIdByOrdinal, ordinalCount * 2);
+        }
+        int ordinal = ordinalCount++;
+        bookIdByOrdinal[ordinal] = bookId;
+
+        int wordCount = wordsFor(ordinalCount);
+        if (wordCount > live.length) {
+            int capacity = Math.max(wordCount, live.length * 2);
+            live = Arrays.copyOf(live, capacity);
+            inStock = Arrays.copyOf(inStock, capacity);
+            for (int i = 0; i < categories.length; i++) {
+                categories[i] = Arrays.copyOf(categories[i], capacity);
+            }
+            for (int i = 0; i < languages.length; i++) {
+                languages[i] = Arrays.copyOf(languages[i], capacity);
+            }
+        }
+        return ordinal;
+    }
+
+    private static int wordsFor(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    private static boolean get(long[] words, int bit) {
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * @return true if the bit changed.
+     */
+    private static boolean set(long[] words, int bit, boolean value) {
+        long before = words[bit >>> 6];
+        words[bit >>> 6] = value ? before | 1L << bit : before & ~(1L << bit);
+        return words[bit >>> 6] != before;
+    }
+}
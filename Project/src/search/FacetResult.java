@@ -0,0 +1,123 @@
+package search;
+
+import model.Category;
+import model.Language;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The books matching a facet filter, as a bitmap over book ordinals, with the book counts per category and
+ * per language computed in the same pass.
+ * <p>
+ * The result is a snapshot: later catalog changes do not affect it. Matching books are listed in ascending
+ * id order, the same order as {@link model.BookSearchCriteria.Sort#ID}.
+ * </p>
+ *
+ * @see FacetService
+ */
+
+public class FacetResult {
+
+    private final int[] bookIdByOrdinal;
+    private final int ordinalCount;
+    private final long[] matches;
+    private final int count;
+    private final int[] categoryCounts;
+    private final int[] languageCounts;
+
+    FacetResult(int[] bookIdByOrdinal, int ordinalCount, long[] matches, int count, int[] categoryCounts,
+                int[] languageCounts) {
+        this.bookIdByOrdinal = bookIdByOrdinal;
+        this.ordinalCount = ordinalCount;
+        this.matches = matches;
+        this.count = count;
+        this.categoryCounts = categoryCounts;
+        this.languageCounts = languageCounts;
+    }
+
+    /**
+     * @return The number of matching books.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return true if the book with the given id matches the filter.
+     */
+    public boolean contains(int bookId) {
+        int ordinal = Arrays.binarySearch(bookIdByOrdinal, 0, ordinalCount, bookId);
+        return ordinal >= 0 && (matches[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * @return The number of books that would match with only this category selected;
+     *         for {@link Category#VIEW_ALL}, with any category.
+     */
+    public int getCategoryCount(Category category) {
+        if (category == Category.VIEW_ALL) {
+            return Arrays.stream(categoryCounts).sum();
+        }
+        return categoryCounts[category.ordinal()];
+    }
+
+    /**
+     * @return The number of books that would match with only this language selected;
+     *         for {@link Language#VIEW_ALL}, with any language.
+     */
+    public int getLanguageCount(Language language) {
+        if (language == Language.VIEW_ALL) {
+            return Arrays.stream(languageCounts).sum();
+        }
+        return languageCounts[language.ordinal()];
+    }
+
+    /**
+     * Lists the ids of the matching books from a position on.
+     *
+     * @param offset The number of matching books to skip.
+     * @param limit  The maximum number of ids to return.
+     */
+    public List<Integer> getBookIds(int offset, int limit) {
+        List<Integer> ids = new ArrayList<>(Math.min(limit, count));
+        int skipped = 0;
+        for (int w = 0; w < matches.length && ids.size() < limit; w++) {
+            long word = matches[w];
+            int bits = Long.bitCount(word);
+            if (skipped + bits <= offset) {
+                skipped += bits;
+                continue;
+            }
+            while (word != 0 && ids.size() < limit) {
+                int ordinal = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                if (skipped++ >= offset) {
+                    ids.add(bookIdByOrdinal[ordinal]);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Lists the ids of the matching books that follow a book id, for keyset pagination.
+     *
+     * @param afterBookId The id of the last book seen, or 0 to start at the beginning.
+     * @param limit       The maximum number of ids to return.
+     */
+    public List<Integer> getBookIdsAfter(int afterBookId, int limit) {
+        List<Integer> ids = new ArrayList<>(Math.min(limit, count));
+        int position = Arrays.binarySearch(bookIdByOrdinal, 0, ordinalCount, afterBookId);
+        int ordinal = position >= 0 ? position + 1 : -position - 1;
+        for (int w = ordinal >>> 6; w < matches.length && ids.size() < limit; w++) {
+            long word = w == ordinal >>> 6 ? matches[w] & (-1L << ordinal) : matches[w];
+            while (word != 0 && ids.size() < limit) {
+                ids.add(bookIdByOrdinal[(w << 6) + Long.numberOfTrailingZeros(word)]);
+                word &= word - 1;
+            }
+        }
+        return ids;
+    }
+}
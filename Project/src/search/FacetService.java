@@ -0,0 +1,239 @@
+package search;
+
+import database.BookDAO;
+import database.CatalogCache;
+import database.DatabaseConnectionManager;
+import event.CatalogChangeEvent;
+import event.CatalogChangeListener;
+import model.Book;
+import model.Category;
+import model.Language;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Filters the catalog by category, language and stock from in-memory bitmaps, and counts the books behind
+ * every choice of the category and language filters.
+ * <p>
+ * The {@link FacetIndex} is built from one bulk query on the "search-facets" thread when the service is first
+ * used, and follows the {@link CatalogChangeEvent}s of the {@link CatalogCache} afterwards: loaded books update
+ * their bits, added books are fetched by id, and a reset rebuilds the index. Books whose stock was written are
+ * collected and re-read through the cache in one batched query, so a book that sells out leaves the in-stock
+ * bitmap within moments and without a rebuild. Until the first build has finished, {@link #isReady()} is false
+ * and callers fall back to the database.
+ * </p>
+ * The facets are enabled with {@code search.facets.enabled}; queries and their durations are counted.
+ *
+ * @see controller.BookController
+ */
+
+public class FacetService implements CatalogChangeListener {
+
+    private static final int CATCH_UP_PAGE_SIZE = 1000;
+
+    private static FacetService instance;
+
+    private volatile FacetIndex index = new FacetIndex();
+    private volatile boolean ready;
+    private final AtomicLong version = new AtomicLong();
+    private final ExecutorService maintainer;
+    private final Set<Integer> staleStock = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong totalQueryNanos = new AtomicLong();
+    private final AtomicLong stockRefreshes = new AtomicLong();
+
+    private FacetService() {
+        this.maintainer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "search-facets");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CatalogCache.getInstance().addCatalogChangeListener(this);
+        maintainer.execute(this::rebuild);
+    }
+
+    /**
+     * @return true if {@code search.facets.enabled} is set.
+     */
+    public static boolean isEnabled() {
+        return DatabaseConnectionManager.getInstance().getBooleanProperty("search.facets.enabled", true);
+    }
+
+    public static synchronized FacetService getInstance() {
+        if (instance == null) {
+            instance = new FacetService();
+        }
+        return instance;
+    }
+
+    /**
+     * @return true once the bitmaps have been built from the database.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Finds the books in any of the selected categories and any of the selected languages, and counts the
+     * books per category and per language for the same filter.
+     *
+     * @param categories  The categories to accept; empty or {@link Category#VIEW_ALL} accepts all.
+     * @param languages   The languages to accept; empty or {@link Language#VIEW_ALL} accepts all.
+     * @param inStockOnly Whether to accept only books in stock.
+     * @param within      The ids of the books to consider, for example the hits of a text search, or null for
+     *                    the whole catalog.
+     * @return The matching books and the facet counts.
+     */
+    public FacetResult query(Set<Category> categories, Set<Language> languages, boolean inStockOnly,
+                             Collection<Integer> within) {
+        long start = System.nanoTime();
+        FacetResult result = index.query(categories.contains(Category.VIEW_ALL) ? Set.of() : categories,
+                languages.contains(Language.VIEW_ALL) ? Set.of() : languages, inStockOnly, within);
+        queries.incrementAndGet();
+        totalQueryNanos.addAndGet(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * @return A number that changes whenever a facet bit changes, for callers caching results.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public void catalogChanged(CatalogChangeEvent event) {
+        switch (event.getType()) {
+            case LOADED:
+                List<Book> books = new ArrayList<>(event.getBooks());
+                maintainer.execute(() -> putBooks(books));
+                break;
+            case INVALIDATED:
+                staleStock.addAll(event.getBookIds());
+                if (refreshScheduled.compareAndSet(false, true)) {
+                    maintainer.execute(this::refreshStock);
+                }
+                break;
+            case DELETED:
+                List<Integer> deleted = new ArrayList<>(event.getBookIds());
+                maintainer.execute(() -> removeBooks(deleted));
+                break;
+            case ADDED:
+                maintainer.execute(this::catchUp);
+                break;
+            case RESET:
+                maintainer.execute(this::rebuild);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Builds new bitmaps from one bulk query and swaps them in; queries keep using the old ones meanwhile.
+     */
+    private void rebuild() {
+        try {
+            long start = System.currentTimeMillis();
+            List<Book> books = new BookDAO().getAllBooks();
+            books.sort(Comparator.comparingInt(Book::getId));
+            FacetIndex rebuilt = new FacetIndex();
+            for (Book book : books) {
+                rebuilt.put(book);
+            }
+            index = rebuilt;
+            ready = true;
+            version.incrementAndGet();
+            System.out.println("Facet index built: " + rebuilt.size() + " books in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void putBooks(List<Book> books) {
+        boolean changed = false;
+        for (Book book : books) {
+            if (!index.accepts(book.getId())) {
+                // A book with an id below the highest indexed one; ordinals follow ids, so start over.
+                rebuild();
+                return;
+            }
+            changed |= index.put(book);
+        }
+        if (changed) {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Re-reads the books whose stock was written since the last refresh, in one query through the cache.
+     * The cache publishes them as loaded, which updates their bits.
+     */
+    private void refreshStock() {
+        refreshScheduled.set(false);
+        List<Integer> ids = new ArrayList<>(staleStock);
+        staleStock.removeAll(ids);
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            List<Integer> missing = new ArrayList<>(ids);
+            missing.removeAll(CatalogCache.getInstance().getBooks(ids).keySet());
+            removeBooks(missing);
+            stockRefreshes.incrementAndGet();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void removeBooks(List<Integer> ids) {
+        for (Integer id : ids) {
+            if (index.remove(id)) {
+                version.incrementAndGet();
+            }
+        }
+    }
+
+    private void catchUp() {
+        List<Book> page;
+        do {
+            page = BookDAO.getBooksAfterId(index.getMaxBookId(), CATCH_UP_PAGE_SIZE);
+            putBooks(page);
+        } while (page.size() == CATCH_UP_PAGE_SIZE);
+    }
+
+    public int getIndexedBookCount() {
+        return index.size();
+    }
+
+    public long getQueryCount() {
+        return queries.get();
+    }
+
+    public double getAverageQueryMillis() {
+        long count = queries.get();
+        return count == 0 ? 0.0 : totalQueryNanos.get() / (count * 1_000_000.0);
+    }
+
+    public long getStockRefreshCount() {
+        return stockRefreshes.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FacetService[ready=%b, books=%d, queries=%d, avgQuery=%.3fms, stockRefreshes=%d]",
+                isReady(), getIndexedBookCount(), getQueryCount(), getAverageQueryMillis(), getStockRefreshCount());
+    }
+}
@@ -0,0 +1,519 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory inverted index over the titles and authors of books, ranked with BM25.
+ * <p>
+ * Every indexed book gets a dense ordinal, and every term a posting list: the sorted ordinals of the books
+ * containing it, with the term frequency of each. A title occurrence counts {@value #TITLE_WEIGHT} times,
+ * an author occurrence once. New and changed books always get a fresh, higher ordinal, so adding a book
+ * only appends to posting lists. The old ordinal of a changed or removed book is marked deleted and
+ * skipped while searching; once deleted ordinals make up a quarter of the index, the posting lists are
+ * compacted in one pass.
+ * </p>
+ * Queries are evaluated document-at-a-time: in {@link SearchMode#ALL} the posting lists are intersected
+ * by leapfrogging from the rarest term with galloping search, in {@link SearchMode#ANY} they are merged.
+ * The last query term also matches as a prefix, at half weight, so results appear while a word is still
+ * being typed but exact matches rank first. In {@link SearchMode#FUZZY} every term that is not indexed is
+ * expanded to the words a {@link TrigramIndex} finds within one or two typos of it, at a weight that halves
+ * with every edit, and the expanded terms are intersected like in {@link SearchMode#ALL}.
+ * Only the best {@code limit} hits are kept, in a bounded heap. Searches share a read lock; updates take
+ * the write lock.
+ */
+
+final class InvertedIndex {
+
+    static final int TITLE_WEIGHT = 2;
+    static final int AUTHOR_WEIGHT = 1;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final double PREFIX_WEIGHT = 0.5;
+    private static final int MAX_FUZZY_EXPANSIONS = 16;
+    private static final double FUZZY_WEIGHT = 0.5;
+    private static final int MAX_FREQUENCY = Byte.MAX_VALUE;
+    private static final int END = Integer.MAX_VALUE;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Postings> dictionary = new TreeMap<>();
+    private final TrigramIndex trigrams = new TrigramIndex();
+    private final Map<Integer, Integer> ordinalByBook = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private int[] bookIdByOrdinal = new int[1024];
+    private int[] lengthByOrdinal = new int[1024];
+    private int[] hashByOrdinal = new int[1024];
+    private int nextOrdinal;
+    private int liveCount;
+    private long totalLength;
+    private int maxBookId;
+
+    /**
+     * Adds a book, or re-indexes it if its title or author changed.
+     *
+     * @return true if the index changed.
+     */
+    boolean index(int bookId, String title, String author) {
+        int hash = contentHash(title, author);
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinalByBook.get(bookId);
+            if (ordinal != null) {
+                if (hashByOrdinal[ordinal] == hash) {
+                    return false;
+                }
+                delete(ordinal);
+            }
+            insert(bookId, title, author, hash);
+            compactIfNeeded();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a book from the index.
+     *
+     * @return true if the book was indexed.
+     */
+    boolean remove(int bookId) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinalByBook.remove(bookId);
+            if (ordinal == null) {
+                return false;
+            }
+            delete(ordinal);
+            compactIfNeeded();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the books matching a query, best first.
+     *
+     * @param query The words to look for; the last one also matches as a prefix.
+     * @param mode  Whether all or any of the words must match.
+     * @param limit The maximum number of hits to return.
+     * @return The best hits, ordered by descending score; empty for a query without terms.
+     */
+    List<SearchHit> search(String query, SearchMode mode, int limit) {
+        return search(query, mode, limit, Long.MAX_VALUE);
+    }
+
+    /**
+     * Finds the books matching a query, best first, giving fuzzy term expansion a time budget.
+     *
+     * @param budgetNanos How long the {@link SearchMode#FUZZY} lookup of similar words may take; when it runs
+     *                    out, the words found so far are used.
+     */
+    List<SearchHit> search(String query, SearchMode mode, int limit, long budgetNanos) {
+        long deadline = budgetNanos == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + budgetNanos;
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(Tokenizer.tokenize(query)));
+        if (terms.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Clause> clauses = new ArrayList<>(terms.size());
+            for (int i = 0; i < terms.size(); i++) {
+                Clause clause = clause(terms.get(i), i == terms.size() - 1, mode == SearchMode.FUZZY, deadline);
+                if (clause.isEmpty()) {
+                    if (mode != SearchMode.ANY) {
+                        return new ArrayList<>();
+                    }
+                } else {
+                    clauses.add(clause);
+                }
+            }
+            if (clauses.isEmpty()) {
+                return new ArrayList<>();
+            }
+
+            PriorityQueue<SearchHit> best = new PriorityQueue<>(Math.min(limit, 1024) + 1, InvertedIndex::compareHits);
+            if (mode != SearchMode.ANY) {
+                intersect(clauses, best, limit);
+            } else {
+                merge(clauses, best, limit);
+            }
+
+            SearchHit[] hits = best.toArray(new SearchHit[0]);
+            Arrays.sort(hits, (a, b) -> compareHits(b, a));
+            return new ArrayList<>(Arrays.asList(hits));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The highest book id that was ever indexed, or 0 if the index is empty.
+     */
+    int getMaxBookId() {
+        lock.readLock().lock();
+        try {
+            return maxBookId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int termCount() {
+        lock.readLock().lock();
+        try {
+            return dictionary.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void intersect(List<Clause> clauses, PriorityQueue<SearchHit> best, int limit) {
+        clauses.sort((a, b) -> Long.compare(a.cost(), b.cost()));
+        Clause lead = clauses.get(0);
+        int candidate = lead.advance(0);
+        while (candidate != END) {
+            int next = candidate;
+            for (int i = 1; i < clauses.size() && next == candidate; i++) {
+                next = clauses.get(i).advance(candidate);
+            }
+            if (next == candidate) {
+                if (!deleted.get(candidate)) {
+                    offer(best, limit, candidate, score(clauses, candidate));
+                }
+                next = candidate + 1;
+            }
+            candidate = lead.advance(next);
+        }
+    }
+
+    private void merge(List<Clause> clauses, PriorityQueue<SearchHit> best, int limit) {
+        int candidate = END;
+        for (Clause clause : clauses) {
+            candidate = Math.min(candidate, clause.advance(0));
+        }
+        while (candidate != END) {
+            int next = END;
+            if (!deleted.get(candidate)) {
+                offer(best, limit, candidate, score(clauses, candidate));
+            }
+            for (Clause clause : clauses) {
+                next = Math.min(next, clause.advance(candidate + 1));
+            }
+            candidate = next;
+        }
+    }
+
+    private double score(List<Clause> clauses, int ordinal) {
+        double lengthNorm = K1 * (1 - B + B * lengthByOrdinal[ordinal] / averageLength());
+        double score = 0;
+        for (Clause clause : clauses) {
+            for (Cursor cursor : clause.cursors) {
+                if (cursor.doc() == ordinal) {
+                    int frequency = cursor.frequency();
+                    score += cursor.idf * frequency * (K1 + 1) / (frequency + lengthNorm);
+                }
+            }
+        }
+        return score;
+    }
+
+    private void offer(PriorityQueue<SearchHit> best, int limit, int ordinal, double score) {
+        if (best.size() < limit) {
+            best.add(new SearchHit(bookIdByOrdinal[ordinal], score));
+            return;
+        }
+        SearchHit worst = best.peek();
+        if (score > worst.getScore() || (score == worst.getScore() && bookIdByOrdinal[ordinal] < worst.getBookId())) {
+            best.poll();
+            best.add(new SearchHit(bookIdByOrdinal[ordinal], score));
+        }
+    }
+
+    /**
+     * Orders hits by score, breaking ties in favour of the lower book id.
+     */
+    private static int compareHits(SearchHit a, SearchHit b) {
+        int byScore = Double.compare(a.getScore(), b.getScore());
+        return byScore != 0 ? byScore : Integer.compare(b.getBookId(), a.getBookId());
+    }
+
+    /**
+     * Collects the posting lists a query term matches, each with the highest weight it is reached with:
+     * the term itself, its prefix expansions if it is the last term, and, in fuzzy mode, similar words if the
+     * term itself is not indexed.
+     */
+    private Clause clause(String term, boolean prefix, boolean fuzzy, long deadline) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        if (dictionary.containsKey(term)) {
+            weights.put(term, 1.0);
+        }
+        if (fuzzy && weights.isEmpty()) {
+            for (TrigramIndex.Match match : trigrams.match(term, maxTypos(term), MAX_FUZZY_EXPANSIONS, deadline)) {
+                if (dictionary.containsKey(match.term)) {
+                    weights.merge(match.term, Math.pow(FUZZY_WEIGHT, match.distance), Math::max);
+                }
+            }
+        }
+        if (prefix) {
+            int expansions = 0;
+            for (String candidate : dictionary.tailMap(term, false).keySet()) {
+                if (!candidate.startsWith(term) || expansions++ >= MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+                weights.merge(candidate, PREFIX_WEIGHT, Math::max);
+            }
+        }
+
+        Cursor[] cursors = new Cursor[weights.size()];
+        int i = 0;
+        for (Map.Entry<String, Double> weight : weights.entrySet()) {
+            Postings postings = dictionary.get(weight.getKey());
+            cursors[i++] = new Cursor(postings, weight.getValue() * idf(postings.size));
+        }
+        return new Clause(cursors);
+    }
+
+    /**
+     * @return How many typos a term of this length may contain: none up to two characters, one up to five,
+     *         two beyond.
+     */
+    private static int maxTypos(String term) {
+        return term.length() <= 2 ? 0 : term.length() <= 5 ? 1 : 2;
+    }
+
+    private double idf(int documentFrequency) {
+        return Math.log(1 + (liveCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private double averageLength() {
+        return liveCount == 0 ? 1.0 : Math.max(1.0, (double) totalLength / liveCount);
+    }
+
+    private void insert(int bookId, String title, String author, int hash) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = 0;
+        for (String term : Tokenizer.tokenize(title)) {
+            frequencies.merge(term, TITLE_WEIGHT, Integer::sum);
+            length += TITLE_WEIGHT;
+        }
+        for (String term : Tokenizer.tokenize(author)) {
+            frequencies.merge(term, AUTHOR_WEIGHT, Integer::sum);
+            length += AUTHOR_WEIGHT;
+        }
+
+        int ordinal = nextOrdinal++;
+        ensureCapacity(ordinal + 1);
+        bookIdByOrdinal[ordinal] = bookId;
+        lengthByOrdinal[ordinal] = length;
+        hashByOrdinal[ordinal] = hash;
+        ordinalByBook.put(bookId, ordinal);
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            Postings postings = dictionary.get(entry.getKey());
+            if (postings == null) {
+                postings = new Postings();
+                dictionary.put(entry.getKey(), postings);
+                trigrams.add(entry.getKey());
+            }
+            postings.add(ordinal, entry.getValue());
+        }
+        liveCount++;
+        totalLength += length;
+        maxBookId = Math.max(maxBookId, bookId);
+    }
+
+    private void delete(int ordinal) {
+        deleted.set(ordinal);
+        liveCount--;
+        totalLength -= lengthByOrdinal[ordinal];
+    }
+
+    /**
+     * Drops deleted ordinals from every posting list and renumbers the remaining ones, keeping their order.
+     */
+    private void compactIfNeeded() {
+        int deletedCount = nextOrdinal - liveCount;
+        if (deletedCount < 1024 || deletedCount * 4 < nextOrdinal) {
+            return;
+        }
+
+        int[] remap = new int[nextOrdinal];
+        int live = 0;
+        for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+            if (deleted.get(ordinal)) {
+                remap[ordinal] = -1;
+            } else {
+                remap[ordinal] = live;
+                bookIdByOrdinal[live] = bookIdByOrdinal[ordinal];
+                lengthByOrdinal[live] = lengthByOrdinal[ordinal];
+                hashByOrdinal[live] = hashByOrdinal[ordinal];
+                ordinalByBook.put(bookIdByOrdinal[live], live);
+                live++;
+            }
+        }
+
+        dictionary.values().removeIf(postings -> postings.compact(remap) == 0);
+        deleted.clear();
+        nextOrdinal = live;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > bookIdByOrdinal.length) {
+            int newLength = Math.max(capacity, bookIdByOrdinal.length * 2);
+            bookIdByOrdinal = Arrays.copyOf(bookIdByOrdinal, newLength);
+            lengthByOrdinal = Arrays.copyOf(lengthByOrdinal, newLength);
+            hashByOrdinal = Arrays.copyOf(hashByOrdinal, newLength);
+        }
+    }
+
+    private static int contentHash(String title, String author) {
+        return 31 * String.valueOf(title).hashCode() + String.valueOf(author).hashCode();
+    }
+
+    /**
+     * The sorted ordinals of the books containing one term, with the weighted frequency of the term in each.
+     */
+    private static final class Postings {
+        private int[] docs = new int[2];
+        private byte[] frequencies = new byte[2];
+        private int size;
+
+        private void add(int ordinal, int frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docs[size] = ordinal;
+            frequencies[size] = (byte) Math.min(frequency, MAX_FREQUENCY);
+            size++;
+        }
+
+        /**
+         * @return The number of entries left.
+         */
+        private int compact(int[] remap) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int ordinal = remap[docs[i]];
+                if (ordinal >= 0) {
+                    docs[kept] = ordinal;
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            if (kept > 0 && kept < docs.length / 4) {
+                docs = Arrays.copyOf(docs, kept * 2);
+                frequencies = Arrays.copyOf(frequencies, kept * 2);
+            }
+            return kept;
+        }
+    }
+
+    /**
+     * Walks one posting list in increasing order.
+     */
+    private static final class Cursor {
+        private final Postings postings;
+        private final double idf;
+        private int position;
+
+        private Cursor(Postings postings, double idf) {
+            this.postings = postings;
+            this.idf = idf;
+        }
+
+        private int doc() {
+            return position < postings.size ? postings.docs[position] : END;
+        }
+
+        private int frequency() {
+            return postings.frequencies[position];
+        }
+
+        /**
+         * Moves to the first entry at or after {@code target}, galloping ahead and then searching binary.
+         */
+        private int advance(int target) {
+            int[] docs = postings.docs;
+            int size = postings.size;
+            if (position >= size || docs[position] >= target) {
+                return doc();
+            }
+            int low = position;
+            int step = 1;
+            int high = position + step;
+            while (high < size && docs[high] < target) {
+                low = high;
+                step <<= 1;
+                high = position + step;
+            }
+            high = Math.min(high, size);
+            // docs[low] < target, and docs[high] >= target or high == size.
+            while (low + 1 < high) {
+                int middle = (low + high) >>> 1;
+                if (docs[middle] < target) {
+                    low = middle;
+                } else {
+                    high = middle;
+                }
+            }
+            position = high;
+            return doc();
+        }
+    }
+
+    /**
+     * The union of the posting lists one query term matches: the term itself and, for the last term,
+     * its prefix expansions.
+     */
+    private static final class Clause {
+        private final Cursor[] cursors;
+
+        private Clause(Cursor[] cursors) {
+            this.cursors = cursors;
+        }
+
+        private boolean isEmpty() {
+            return cursors.length == 0;
+        }
+
+        private long cost() {
+            long cost = 0;
+            for (Cursor cursor : cursors) {
+                cost += cursor.postings.size;
+            }
+            return cost;
+        }
+
+        private int advance(int target) {
+            int doc = END;
+            for (Cursor cursor : cursors) {
+                doc = Math.min(doc, cursor.advance(target));
+            }
+            return doc;
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A radix tree mapping string keys to weighted values, answering "the k heaviest values under this prefix".
+ * <p>
+ * Chains of single-child nodes are collapsed into one edge. Edge labels are not separate strings: every
+ * inserted key suffix is appended once to a shared character pool, and a node only keeps the range of its
+ * label in the pool. Children are kept in an array sorted by their first character and found by binary
+ * search; leaves share one empty child array. Every node also records the heaviest weight below it, so a
+ * top-k lookup walks down to the prefix and then expands nodes best-first from a priority queue: it stops
+ * after k values and never visits subtrees that cannot beat them, however many keys share the prefix.
+ * </p>
+ * A value may be stored under several keys, for example every word start of a title; lookups return each
+ * value once. Lookups share a read lock; updates take the write lock.
+ *
+ * @param <T> The stored values; they are compared by identity.
+ */
+
+final class RadixTrie<T> {
+
+    private static final char[] NO_CHARS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node(0, 0);
+    private char[] pool = new char[4096];
+    private int poolSize;
+    private int size;
+    private int nodeCount = 1;
+
+    /**
+     * Stores a value under a key with the given weight.
+     */
+    void insert(String key, T value, int weight) {
+        lock.writeLock().lock();
+        try {
+            Node node = root;
+            int position = 0;
+            node.maxWeight = Math.max(node.maxWeight, weight);
+            while (position < key.length()) {
+                Node child = node.child(key.charAt(position));
+                if (child == null) {
+                    child = new Node(append(key, position), poolSize);
+                    node.addChild(key.charAt(position), child);
+                    nodeCount++;
+                    node = child;
+                    position = key.length();
+                } else {
+                    int common = commonPrefix(child, key, position);
+                    if (common < child.labelLength()) {
+                        child = split(node, child, common);
+                    }
+                    node = child;
+                    position += common;
+                }
+                node.maxWeight = Math.max(node.maxWeight, weight);
+            }
+            node.addValue(value, weight);
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a value stored under a key.
+     *
+     * @return true if the value was stored under the key.
+     */
+    boolean remove(String key, T value) {
+        lock.writeLock().lock();
+        try {
+            List<Node> path = new ArrayList<>();
+            Node node = root;
+            int position = 0;
+            path.add(node);
+            while (position < key.length()) {
+                Node child = node.child(key.charAt(position));
+                if (child == null || commonPrefix(child, key, position) < child.labelLength()) {
+                    return false;
+                }
+                position += child.labelLength();
+                node = child;
+                path.add(node);
+            }
+            if (!node.removeValue(value)) {
+                return false;
+            }
+            size--;
+
+            // Recompute the maximum weights bottom-up and drop nodes that became empty leaves.
+            for (int i = path.size() - 1; i >= 0; i--) {
+                Node current = path.get(i);
+                if (i > 0 && current.isEmpty()) {
+                    path.get(i - 1).removeChild(pool[current.start]);
+                    nodeCount--;
+                } else {
+                    current.recomputeMaxWeight();
+                }
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the heaviest values stored under keys starting with the given prefix.
+     *
+     * @param prefix The start of the keys to look for.
+     * @param limit  The maximum number of values to return.
+     * @return Distinct values by descending weight.
+     */
+    List<T> top(String prefix, int limit) {
+        List<T> result = new ArrayList<>();
+        if (limit <= 0) {
+            return result;
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int position = 0;
+            while (position < prefix.length()) {
+                Node child = node.child(prefix.charAt(position));
+                if (child == null) {
+                    return result;
+                }
+                int common = commonPrefix(child, prefix, position);
+                if (common < child.labelLength() && position + common < prefix.length()) {
+                    return result;
+                }
+                position += common;
+                node = child;
+            }
+
+            Map<Object, Boolean> seen = new IdentityHashMap<>();
+            PriorityQueue<Candidate> queue = new PriorityQueue<>();
+            queue.add(new Candidate(node, null, node.maxWeight));
+            while (!queue.isEmpty() && result.size() < limit) {
+                Candidate candidate = queue.poll();
+                if (candidate.node == null) {
+                    if (seen.put(candidate.value, Boolean.TRUE) == null) {
+                        @SuppressWarnings("unchecked")
+                        T value = (T) candidate.value;
+                        result.add(value);
+                    }
+                    continue;
+                }
+                Node expanded = candidate.node;
+                for (int i = 0; i < expanded.valueCount; i++) {
+                    queue.add(new Candidate(null, expanded.values[i], expanded.weights[i]));
+                }
+                for (int i = 0; i < expanded.childCount; i++) {
+                    queue.add(new Candidate(expanded.children[i], null, expanded.children[i].maxWeight));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of label characters in the pool, including those of removed keys.
+     */
+    int poolSize() {
+        lock.readLock().lock();
+        try {
+            return poolSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int nodeCount() {
+        lock.readLock().lock();
+        try {
+            return nodeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Splits the edge to {@code child} after {@code length} characters and returns the new middle node.
+     */
+    private Node split(Node parent, Node child, int length) {
+        Node middle = new Node(child.start, child.start + length);
+        middle.maxWeight = child.maxWeight;
+        parent.replaceChild(pool[child.start], middle);
+        child.start += length;
+        middle.addChild(pool[child.start], child);
+        nodeCount++;
+        return middle;
+    }
+
+    /**
+     * Appends the rest of a key to the pool.
+     *
+     * @return The pool offset of the appended characters.
+     */
+    private int append(String key, int from) {
+        int length = key.length() - from;
+        if (poolSize + length > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(poolSize + length, pool.length * 2));
+        }
+        key.getChars(from, key.length(), pool, poolSize);
+        int start = poolSize;
+        poolSize += length;
+        return start;
+    }
+
+    /**
+     * @return How many characters of the node's label match the key from {@code position} on.
+     */
+    private int commonPrefix(Node node, String key, int position) {
+        int length = Math.min(node.labelLength(), key.length() - position);
+        int i = 0;
+        while (i < length && pool[node.start + i] == key.charAt(position + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static final class Node {
+        private int start;
+        private final int end;
+        private char[] childChars = NO_CHARS;
+        private Node[] children = NO_NODES;
+        private int childCount;
+        private Object[] values;
+        private int[] weights;
+        private int valueCount;
+        private int maxWeight;
+
+        private Node(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        private int labelLength() {
+            return end - start;
+        }
+
+
+        private Node child(char c) {
+            int index = Arrays.binarySearch(childChars, 0, childCount, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private void addChild(char firstChar, Node child) {
+            int index = -Arrays.binarySearch(childChars, 0, childCount, firstChar) - 1;
+            if (childCount == children.length) {
+                int capacity = Math.max(2, childCount * 2);
+                childChars = Arrays.copyOf(childChars, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(childChars, index, childChars, index + 1, childCount - index);
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            childChars[index] = firstChar;
+            children[index] = child;
+            childCount++;
+        }
+
+        private void replaceChild(char firstChar, Node newChild) {
+            children[Arrays.binarySearch(childChars, 0, childCount, firstChar)] = newChild;
+        }
+
+        private void removeChild(char firstChar) {
+            int index = Arrays.binarySearch(childChars, 0, childCount, firstChar);
+            System.arraycopy(childChars, index + 1, childChars, index, childCount - index - 1);
+            System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+            childCount--;
+            children[childCount] = null;
+        }
+
+        private void addValue(Object value, int weight) {
+            if (values == null) {
+                values = new Object[1];
+                weights = new int[1];
+            } else if (valueCount == values.length) {
+                values = Arrays.copyOf(values, valueCount * 2);
+                weights = Arrays.copyOf(weights, valueCount * 2);
+            }
+            values[valueCount] = value;
+            weights[valueCount] = weight;
+            valueCount++;
+        }
+
+        private boolean removeValue(Object value) {
+            for (int i = 0; i < valueCount; i++) {
+                if (values[i] == value) {
+                    valueCount--;
+                    values[i] = values[valueCount];
+                    weights[i] = weights[valueCount];
+                    values[valueCount] = null;
+                    if (valueCount == 0) {
+                        values = null;
+                        weights = null;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isEmpty() {
+            return valueCount == 0 && childCount == 0;
+        }
+
+        private void recomputeMaxWeight() {
+            int max = 0;
+            for (int i = 0; i < valueCount; i++) {
+                max = Math.max(max, weights[i]);
+            }
+            for (int i = 0; i < childCount; i++) {
+                max = Math.max(max, children[i].maxWeight);
+            }
+            maxWeight = max;
+        }
+    }
+
+    /**
+     * A node to expand or a value to emit, ordered heaviest first; values win ties so they are emitted early.
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+        private final Node node;
+        private final Object value;
+        private final int weight;
+
+        private Candidate(Node node, Object value, int weight) {
+            this.node = node;
+            this.value = value;
+            this.weight = weight;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            if (weight != other.weight) {
+                return Integer.compare(other.weight, weight);
+            }
+            return Boolean.compare(node != null, other.node != null);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package search;
+
+/**
+ * One book matching a search, with its relevance score. Higher scores rank first.
+ */
+
+public class SearchHit {
+    private final int bookId;
+    private final double score;
+
+    public SearchHit(int bookId, double score) {
+        this.bookId = bookId;
+        this.score = score;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SearchHit[bookId=%d, score=%.3f]", bookId, score);
+    }
+}
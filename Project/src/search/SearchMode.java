@@ -0,0 +1,20 @@
+package search;
+
+/**
+ * How the terms of a search query are combined.
+ */
+
+public enum SearchMode {
+    /**
+     * Every term must occur in the title or author of a book.
+     */
+    ALL,
+    /**
+     * At least one term must occur; books matching more terms rank higher.
+     */
+    ANY,
+    /**
+     * Like {@link #ALL}, but every term also matches indexed words a few typos away from it.
+     */
+    FUZZY
+}
@@ -0,0 +1,222 @@
+package search;
+
+import database.BookDAO;
+import database.CatalogCache;
+import database.DatabaseConnectionManager;
+import event.CatalogChangeEvent;
+import event.CatalogChangeListener;
+import model.Book;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers title and author searches from an in-memory {@link InvertedIndex} instead of {@code LIKE '%x%'} scans.
+ * <p>
+ * The index is built from one bulk query on a background thread when the service is first used, and kept
+ * in sync afterwards through the {@link CatalogChangeEvent}s of the {@link CatalogCache}: loaded books are
+ * re-indexed if their title or author changed, newly added books are fetched by id and appended, and a
+ * reset rebuilds the index. All index maintenance runs on the single "search-index" thread, in the order
+ * the events arrived. Until the first build has finished, {@link #isReady()} is false and callers fall
+ * back to the database.
+ * </p>
+ * The index is enabled with {@code search.index.enabled}; searches, rebuilds and their durations are counted.
+ *
+ * @see controller.BookController
+ */
+
+public class SearchService implements CatalogChangeListener {
+
+    private static final int CATCH_UP_PAGE_SIZE = 1000;
+
+    private static SearchService instance;
+
+    private volatile InvertedIndex index = new InvertedIndex();
+    private volatile boolean ready;
+    private final AtomicLong version = new AtomicLong();
+    private final ExecutorService maintainer;
+    private final long fuzzyBudgetNanos;
+
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong totalSearchNanos = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private volatile long lastRebuildMillis;
+
+    private SearchService() {
+        this.fuzzyBudgetNanos = Math.max(1, DatabaseConnectionManager.getInstance()
+                .getLongProperty("search.fuzzy.budgetMillis", 25)) * 1_000_000L;
+        this.maintainer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CatalogCache.getInstance().addCatalogChangeListener(this);
+        maintainer.execute(this::rebuild);
+    }
+
+    /**
+     * @return true if {@code search.index.enabled} is set.
+     */
+    public static boolean isEnabled() {
+        return DatabaseConnectionManager.getInstance().getBooleanProperty("search.index.enabled", true);
+    }
+
+    public static synchronized SearchService getInstance() {
+        if (instance == null) {
+            instance = new SearchService();
+        }
+        return instance;
+    }
+
+    /**
+     * @return true once the index has been built from the database.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Finds the books whose title or author match a query, best first.
+     * In {@link SearchMode#FUZZY}, looking up similar words is limited to {@code search.fuzzy.budgetMillis}.
+     *
+     * @param query The words to look for; the last one also matches as a prefix.
+     * @param mode  Whether all or any of the words must match, and whether typos are tolerated.
+     * @param limit The maximum number of hits to return.
+     * @return The best hits by BM25 score.
+     */
+    public List<SearchHit> search(String query, SearchMode mode, int limit) {
+        long start = System.nanoTime();
+        List<SearchHit> hits = mode == SearchMode.FUZZY
+                ? index.search(query, mode, limit, fuzzyBudgetNanos)
+                : index.search(query, mode, limit);
+        searches.incrementAndGet();
+        totalSearchNanos.addAndGet(System.nanoTime() - start);
+        return hits;
+    }
+
+    /**
+     * Removes books that turned out to no longer exist, for example when a search hit could not be loaded.
+     */
+    public void removeBooks(Collection<Integer> bookIds) {
+        List<Integer> ids = new ArrayList<>(bookIds);
+        maintainer.execute(() -> {
+            for (Integer id : ids) {
+                if (index.remove(id)) {
+                    version.incrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * Schedules a full rebuild from the database.
+     */
+    public void requestRebuild() {
+        maintainer.execute(this::rebuild);
+    }
+
+    /**
+     * @return A number that changes whenever the indexed content changes, for callers caching search results.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public void catalogChanged(CatalogChangeEvent event) {
+        switch (event.getType()) {
+            case LOADED:
+                List<Book> books = new ArrayList<>(event.getBooks());
+                maintainer.execute(() -> indexBooks(books));
+                break;
+            case DELETED:
+                removeBooks(event.getBookIds());
+                break;
+            case ADDED:
+                maintainer.execute(this::catchUp);
+                break;
+            case RESET:
+                maintainer.execute(this::rebuild);
+                break;
+            default:
+                // Stock writes do not change titles or authors; the next load re-checks the text.
+                break;
+        }
+    }
+
+    /**
+     * Builds a new index from one bulk query and swaps it in; searches keep using the old index meanwhile.
+     */
+    private void rebuild() {
+        try {
+            long start = System.currentTimeMillis();
+            List<Book> books = new BookDAO().getAllBooks();
+            InvertedIndex rebuilt = new InvertedIndex();
+            for (Book book : books) {
+                rebuilt.index(book.getId(), book.getTitle(), book.getAuthor());
+            }
+            index = rebuilt;
+            ready = true;
+            version.incrementAndGet();
+            rebuilds.incrementAndGet();
+            lastRebuildMillis = System.currentTimeMillis() - start;
+            System.out.println("Search index built: " + rebuilt.size() + " books, " + rebuilt.termCount()
+                    + " terms in " + lastRebuildMillis + " ms");
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void indexBooks(Collection<Book> books) {
+        boolean changed = false;
+        for (Book book : books) {
+            changed |= index.index(book.getId(), book.getTitle(), book.getAuthor());
+        }
+        if (changed) {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Appends the books added since the highest indexed id, a page at a time.
+     */
+    private void catchUp() {
+        List<Book> page;
+        do {
+            page = BookDAO.getBooksAfterId(index.getMaxBookId(), CATCH_UP_PAGE_SIZE);
+            indexBooks(page);
+        } while (page.size() == CATCH_UP_PAGE_SIZE);
+    }
+
+    public int getIndexedBookCount() {
+        return index.size();
+    }
+
+    public long getSearchCount() {
+        return searches.get();
+    }
+
+    public double getAverageSearchMillis() {
+        long count = searches.get();
+        return count == 0 ? 0.0 : totalSearchNanos.get() / (count * 1_000_000.0);
+    }
+
+    public long getRebuildCount() {
+        return rebuilds.get();
+    }
+
+    public long getLastRebuildMillis() {
+        return lastRebuildMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SearchService[ready=%b, books=%d, searches=%d, avgSearch=%.3fms, rebuilds=%d, lastRebuild=%dms]",
+                isReady(), getIndexedBookCount(), getSearchCount(), getAverageSearchMillis(), getRebuildCount(),
+                getLastRebuildMillis());
+    }
+}
@@ -0,0 +1,52 @@
+package search;
+
+/**
+ * One autocomplete suggestion: a book title or an author name, with the weight it was ranked by.
+ */
+
+public class Suggestion {
+
+    public enum Type {
+        TITLE,
+        AUTHOR
+    }
+
+    private final Type type;
+    private final String text;
+    private final int bookId;
+    private final int weight;
+
+    public Suggestion(Type type, String text, int bookId, int weight) {
+        this.type = type;
+        this.text = text;
+        this.bookId = bookId;
+        this.weight = weight;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return The book of a title suggestion, or 0 for an author.
+     */
+    public int getBookId() {
+        return bookId;
+    }
+
+    /**
+     * @return The copies sold of the book, or of all books of the author, plus one per book.
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,59 @@
+package search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits titles, author names and queries into search terms.
+ * <p>
+ * Text is lower-cased and stripped of accents, so accented and plain spellings produce the same term,
+ * and split at every character that is neither a letter nor a digit. Books and queries go through the same
+ * tokenizer, so a query term matches exactly the terms that were indexed.
+ * </p>
+ */
+
+final class Tokenizer {
+
+    private Tokenizer() {
+    }
+
+    /**
+     * @param text The text to split; null is treated as empty.
+     * @return The terms of the text, in order, including repeated ones.
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        String normalized = normalize(text);
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                terms.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Lower-cases the text and removes diacritical marks.
+     */
+    static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder builder = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                builder.append(c);
+            }
+        }
+        return builder.toString().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,247 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the indexed terms within a small edit distance of a misspelled term.
+ * <p>
+ * Every term is split into the character trigrams of {@code "$" + term + "$"}, and every trigram maps to
+ * the ids of the terms containing it. One edit changes at most {@value #GRAMS_PER_EDIT} trigrams, so a
+ * term within distance {@code k} of the query shares at least {@code grams - 4k} of its trigrams. Candidates
+ * are counted by merging the sorted trigram lists of the query only, filtered by that bound and by length,
+ * and only the survivors are verified with a bounded Damerau-Levenshtein distance, most overlapping first;
+ * the vocabulary is never scanned.
+ * </p>
+ * Candidate counting and verification stop at a deadline and return what was found so far. Terms are
+ * never removed; callers skip terms that no longer occur. This class is not thread-safe; callers synchronize.
+ */
+
+final class TrigramIndex {
+
+    private static final int GRAMS_PER_EDIT = 4;
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    private final List<String> terms = new ArrayList<>();
+    private final Map<String, Integer> idByTerm = new HashMap<>();
+    private int[] lengths = new int[1024];
+    private final Map<String, IdList> termsByGram = new HashMap<>();
+
+    /**
+     * A term close to the query, with its edit distance.
+     */
+    static final class Match {
+        final String term;
+        final int distance;
+
+        private Match(String term, int distance) {
+            this.term = term;
+            this.distance = distance;
+        }
+    }
+
+    /**
+     * Adds a term; adding a known term has no effect.
+     */
+    void add(String term) {
+        if (idByTerm.containsKey(term)) {
+            return;
+        }
+        int id = terms.size();
+        terms.add(term);
+        idByTerm.put(term, id);
+        if (id == lengths.length) {
+            lengths = Arrays.copyOf(lengths, id * 2);
+        }
+        lengths[id] = term.length();
+        for (String gram : grams(term)) {
+            IdList ids = termsByGram.computeIfAbsent(gram, key -> new IdList());
+            if (ids.size == 0 || ids.ids[ids.size - 1] != id) {
+                ids.add(id);
+            }
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} terms within {@code maxDistance} edits of the given one, excluding the term
+     * itself, closest first. Candidates sharing the most trigrams are verified first.
+     *
+     * @param term           The possibly misspelled term.
+     * @param maxDistance    The largest edit distance to accept.
+     * @param limit          The maximum number of matches to return.
+     * @param deadlineNanos  The {@link System#nanoTime()} after which the search stops early.
+     * @return The matches found before the deadline.
+     */
+    List<Match> match(String term, int maxDistance, int limit, long deadlineNanos) {
+        List<Match> matches = new ArrayList<>();
+        if (maxDistance <= 0 || terms.isEmpty()) {
+            return matches;
+        }
+        List<String> queryGrams = grams(term);
+        int required = Math.max(1, queryGrams.size() - GRAMS_PER_EDIT * maxDistance);
+        List<IdList> lists = new ArrayList<>();
+        for (String gram : queryGrams) {
+            IdList ids = termsByGram.get(gram);
+            if (ids != null) {
+                lists.add(ids);
+            }
+        }
+        if (lists.size() < required) {
+            return matches;
+        }
+
+        // The id lists are sorted, so merging them counts the shared trigrams of every candidate in one pass
+        // without a counter per vocabulary term.
+        int[] positions = new int[lists.size()];
+        int[] candidates = new int[64];
+        int[] sharedCounts = new int[64];
+        int candidateCount = 0;
+        long work = 0;
+        while (true) {
+            int id = Integer.MAX_VALUE;
+            for (int i = 0; i < lists.size(); i++) {
+                IdList ids = lists.get(i);
+                if (positions[i] < ids.size) {
+                    id = Math.min(id, ids.ids[positions[i]]);
+                }
+            }
+            if (id == Integer.MAX_VALUE) {
+                break;
+            }
+            int shared = 0;
+            for (int i = 0; i < lists.size(); i++) {
+                IdList ids = lists.get(i);
+                if (positions[i] < ids.size && ids.ids[positions[i]] == id) {
+                    positions[i]++;
+                    shared++;
+                }
+            }
+            if (shared >= required && Math.abs(lengths[id] - term.length()) <= maxDistance) {
+                if (candidateCount == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                    sharedCounts = Arrays.copyOf(sharedCounts, candidateCount * 2);
+                }
+                candidates[candidateCount] = id;
+                sharedCounts[candidateCount++] = shared;
+            }
+            if (++work % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > deadlineNanos) {
+                break;
+            }
+        }
+        return sortAndLimit(verify(term, maxDistance, candidates, sharedCounts, candidateCount, queryGrams.size(),
+                limit, deadlineNanos), limit);
+    }
+
+    int size() {
+        return terms.size();
+    }
+
+    /**
+     * Verifies candidates in order of decreasing trigram overlap, so the likeliest matches are checked first,
+     * and stops once {@code limit} matches are found or the deadline has passed.
+     */
+    private List<Match> verify(String term, int maxDistance, int[] candidates, int[] sharedCounts, int candidateCount,
+                               int maxShared, int limit, long deadlineNanos) {
+        int[] bucketStart = new int[maxShared + 2];
+        for (int i = 0; i < candidateCount; i++) {
+            bucketStart[maxShared - sharedCounts[i] + 1]++;
+        }
+        for (int i = 1; i < bucketStart.length; i++) {
+            bucketStart[i] += bucketStart[i - 1];
+        }
+        int[] byOverlap = new int[candidateCount];
+        for (int i = 0; i < candidateCount; i++) {
+            byOverlap[bucketStart[maxShared - sharedCounts[i]]++] = candidates[i];
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (int i = 0; i < candidateCount && matches.size() < limit; i++) {
+            String candidate = terms.get(byOverlap[i]);
+            if (!candidate.equals(term)) {
+                int distance = distance(term, candidate, maxDistance);
+                if (distance <= maxDistance) {
+                    matches.add(new Match(candidate, distance));
+                }
+            }
+            if (i % 256 == 255 && System.nanoTime() > deadlineNanos) {
+                break;
+            }
+        }
+        return matches;
+    }
+
+    private static List<Match> sortAndLimit(List<Match> matches, int limit) {
+        matches.sort((a, b) -> a.distance != b.distance ? Integer.compare(a.distance, b.distance) : a.term.compareTo(b.term));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * Computes the optimal string alignment distance (Damerau-Levenshtein with adjacent transpositions),
+     * giving up as soon as it must exceed {@code max}.
+     *
+     * @return The distance, or {@code max + 1} if it is larger than {@code max}.
+     */
+    static int distance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] previousPrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMinimum = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previousPrevious[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMinimum = Math.min(rowMinimum, value);
+            }
+            if (rowMinimum > max) {
+                return max + 1;
+            }
+            int[] recycled = previousPrevious;
+            previousPrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+
+    private static List<String> grams(String term) {
+        String padded = "$" + term + "$";
+        List<String> grams = new ArrayList<>(Math.max(1, padded.length() - 2));
+        if (padded.length() < 3) {
+            grams.add(padded);
+            return grams;
+        }
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            String gram = padded.substring(i, i + 3);
+            if (!grams.contains(gram)) {
+                grams.add(gram);
+            }
+        }
+        return grams;
+    }
+
+    private static final class IdList {
+        private int[] ids = new int[2];
+        private int size;
+
+        private void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+}
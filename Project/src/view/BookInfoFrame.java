@@ -94,7 +94,10 @@ public class BookInfoFrame extends JFrame {
         addToCartButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                cartController.addBookToCart(book, 1);
+                if (!cartController.addBookToCart(book, 1)) {
+                    JOptionPane.showMessageDialog(BookInfoFrame.this, "Sorry, this book is no longer in stock.");
+                    return;
+                }
 
                 JOptionPane.showMessageDialog(BookInfoFrame.this, "Book added to cart!");
 
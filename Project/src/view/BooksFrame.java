@@ -1,19 +1,18 @@
 package view;
 
 import controller.BookController;
-import model.Book;
+import model.BookSearchCriteria;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.List;
 
 /**
  * The BooksFrame provides a user interface to display and manage the bookstore's book inventory.
  * <p>
  * Features include:
  * - Displaying a table of books with details like ID, Name, Price, and Quantity.
- * - Utilizes the BookController to fetch and display all book details.
+ * - Utilizes the BookController to scan the columnar catalog and display all book details.
  * <p>
  * Note: This frame is mainly for viewing purposes; the table data is not editable.
  */
@@ -64,10 +63,9 @@ public class BooksFrame extends JFrame {
         model.setColumnIdentifiers(columnNames);
         model.setRowCount(0);
 
-        List<Book> books = bookController.getAllBooks();
-        for (Book book : books) {
+        bookController.forEachBook(new BookSearchCriteria(), book -> {
             Object[] row = new Object[]{book.getId(), book.getTitle(), book.getPrice(), book.getQuantity()};
             model.addRow(row);
-        }
+        });
     }
 }
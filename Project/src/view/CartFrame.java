@@ -1,8 +1,14 @@
 package view;
 
 import controller.CartController;
+import controller.CartValidator;
 import controller.OrderController;
+import database.CheckoutResult;
+import event.CartChangeListener;
 import model.Book;
+import model.BookAvailability;
+import model.CartValidation;
+import model.OrderItem;
 import model.SessionManager;
 import model.User;
 import view.tablemodels.CartTableModel;
@@ -11,6 +17,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.List;
 import java.util.Map;
 
 
@@ -27,6 +34,13 @@ import java.util.Map;
 
 public class CartFrame extends JFrame {
     private JTable cartTable;
+    private CartTableModel cartTableModel;
+    private CartValidator cartValidator;
+    private CartValidation lastValidation;
+    private final CartChangeListener totalListener = event -> {
+        cartValidator.requestValidation();
+        SwingUtilities.invokeLater(this::updateCartView);
+    };
     private JLabel totalLabel;
     private JButton buyButton;
     private JButton emptyCartButton;
@@ -51,12 +65,17 @@ public class CartFrame extends JFrame {
         initAll();
         layoutAll();
         activateApp();
+        cartValidator = new CartValidator(cartController.getCart(),
+                validation -> SwingUtilities.invokeLater(() -> showValidation(validation)));
+        cartController.getCart().addCartChangeListener(totalListener);
+        cartValidator.requestValidation();
 
         updateCartView();
     }
 
     private void initAll() {
-        cartTable = new JTable(new CartTableModel(cartController.getCart().getItems()));
+        cartTableModel = new CartTableModel(cartController);
+        cartTable = new JTable(cartTableModel);
         cartTable.setFillsViewportHeight(true);
 
         totalLabel = new JLabel("Total: $0");
@@ -66,11 +85,7 @@ public class CartFrame extends JFrame {
         emptyCartButton = new JButton("Empty Cart");
         removeButton = new JButton("Remove");
 
-        cartTable.getColumnModel().getColumn(0).setCellRenderer(cartTable.getDefaultRenderer(Boolean.class));
-
-        cartTable.getColumnModel().getColumn(0).setCellEditor(cartTable.getDefaultEditor(Boolean.class));
-
-        if(cartController.getCart().getItems().isEmpty()){
+        if(cartController.getCart().isEmpty()){
             buyButton.setEnabled(false);
             emptyCartButton.setEnabled(false);
             removeButton.setEnabled(false);
@@ -100,49 +115,47 @@ public class CartFrame extends JFrame {
         buyButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                User currentUser = SessionManager.getInstance().getCurrentUser();
-                Map<Book, Integer> cartItems = cartController.getCart().getItems();
-
                 setAllComponentsEnabled(false);
 
-                PaymentFrame paymentFrame = new PaymentFrame();
+                SwingWorker<CartValidation, Void> preflight = new SwingWorker<CartValidation, Void>() {
+                    @Override
+                    protected CartValidation doInBackground() {
+                        return orderController.preflight(cartController.getCart());
+                    }
 
-                paymentFrame.addPaymentEventListener(event -> {
-                    if (event.isPaymentSuccessful()) {
-                        SwingWorker<Boolean, Void> worker = new SwingWorker<Boolean, Void>() {
-                            @Override
-                            protected Boolean doInBackground() throws Exception {
-                                return orderController.createOrder(currentUser, cartItems);
+                    @Override
+                    protected void done() {
+                        try {
+                            CartValidation validation = get();
+                            if (validation == null) {
+                                JOptionPane.showMessageDialog(CartFrame.this, "Could not check the current stock. Please try again.");
+                                setAllComponentsEnabled(true);
+                                return;
                             }
-
-                            @Override
-                            protected void done() {
-                                try {
-                                    boolean orderSuccessful = get();
-                                    if (orderSuccessful) {
-                                        cartController.getCart().clearCart();
-                                        updateCartView();
-
-                                    } else {
-                                        JOptionPane.showMessageDialog(CartFrame.this, "There was an issue processing your order. Please check stock availability.");
-                                    }
-                                } catch (Exception ex) {
-                                    ex.printStackTrace();
-                                    JOptionPane.showMessageDialog(CartFrame.this, "An error occurred while processing your order.");
-                                } finally {
-                                    updateCartView();
-                                    setAllComponentsEnabled(false);
+                            showValidation(validation);
+                            if (!validation.getShortBooks().isEmpty()) {
+                                JOptionPane.showMessageDialog(CartFrame.this, describeShortage(validation));
+                                setAllComponentsEnabled(true);
+                                return;
+                            }
+                            if (!validation.getRepricedBooks().isEmpty()) {
+                                int choice = JOptionPane.showConfirmDialog(CartFrame.this, describePriceChanges(validation),
+                                        "Prices changed", JOptionPane.OK_CANCEL_OPTION);
+                                if (choice != JOptionPane.OK_OPTION) {
+                                    setAllComponentsEnabled(true);
+                                    return;
                                 }
+                                cartController.getCart().applyPrices(validation.getCurrentPrices());
                             }
-                        };
-                        updateCartView();
-                        worker.execute();
+                            startPayment();
+                        } catch (Exception ex) {
+                            ex.printStackTrace();
+                            JOptionPane.showMessageDialog(CartFrame.this, "An error occurred while processing your order.");
+                            setAllComponentsEnabled(true);
+                        }
                     }
-                });
-                updateCartView();
-                paymentFrame.setVisible(true);
-                setAllComponentsEnabled(false);
-
+                };
+                preflight.execute();
             }
         });
 
@@ -171,7 +184,7 @@ public class CartFrame extends JFrame {
                 Book bookToRemove = tableModel.getBookAt(modelRowIndex);
 
                 if (bookToRemove != null) {
-                    cartController.getCart().removeBook(bookToRemove);
+                    cartController.removeBookFromCart(bookToRemove);
                     updateCartView();
                 }
             }
@@ -180,18 +193,107 @@ public class CartFrame extends JFrame {
 
 
 
+    }
+
+    /**
+     * Opens the payment window for the cart as it is now, after the pre-flight check has passed.
+     */
+    private void startPayment() {
+        User currentUser = SessionManager.getInstance().getCurrentUser();
+        Map<Book, Integer> cartItems = cartController.getCart().getItems();
+
+        PaymentFrame paymentFrame = new PaymentFrame();
+
+        paymentFrame.addPaymentEventListener(event -> {
+            if (event.isPaymentSuccessful()) {
+                SwingWorker<CheckoutResult, Void> worker = new SwingWorker<CheckoutResult, Void>() {
+                    @Override
+                    protected CheckoutResult doInBackground() throws Exception {
+                        return orderController.createOrder(currentUser, cartItems, cartController.claimHolds());
+                    }
+
+                    @Override
+                    protected void done() {
+                        try {
+                            CheckoutResult result = get();
+                            if (result.isSuccessful()) {
+                                cartController.emptyCart();
+                                cartController.flushCart();
+                                updateCartView();
+
+                            } else {
+                                JOptionPane.showMessageDialog(CartFrame.this, describeFailure(result));
+                            }
+                        } catch (Exception ex) {
+                            ex.printStackTrace();
+                            JOptionPane.showMessageDialog(CartFrame.this, "An error occurred while processing your order.");
+                        } finally {
+                            updateCartView();
+                            setAllComponentsEnabled(false);
+                        }
+                    }
+                };
+                updateCartView();
+                worker.execute();
+            }
+        });
+        updateCartView();
+        paymentFrame.setVisible(true);
+        setAllComponentsEnabled(false);
     }
 
     private void updateCartView() {
-        CartTableModel tableModel = new CartTableModel(cartController.getCart().getItems());
-        cartTable.setModel(tableModel);
+        String total = "Total: $" + cartController.getCart().getTotal();
+        if (lastValidation != null && !lastValidation.isValid()) {
+            total += "  (some items changed, see Availability)";
+        }
+        totalLabel.setText(total);
+    }
+
+    private void showValidation(CartValidation validation) {
+        lastValidation = validation;
+        cartTableModel.setValidation(validation);
+        updateCartView();
+    }
+
+    private String describeShortage(CartValidation validation) {
+        StringBuilder message = new StringBuilder("Not enough stock for:");
+        for (Book book : validation.getShortBooks()) {
+            BookAvailability availability = validation.getAvailability(book.getId());
+            message.append("\n- ").append(book.getTitle())
+                    .append(" (").append(availability == null ? 0 : availability.getAvailable()).append(" available)");
+        }
+        return message.toString();
+    }
+
+    @Override
+    public void dispose() {
+        cartValidator.shutdown();
+        cartTableModel.detach();
+        cartController.getCart().removeCartChangeListener(totalListener);
+        super.dispose();
+    }
 
-        double total = 0.0;
-        for (Map.Entry<Book, Integer> entry : cartController.getCart().getItems().entrySet()) {
-            total += entry.getKey().getPrice() * entry.getValue();
-            System.out.println("It's currently: " + total);
+    private String describePriceChanges(CartValidation validation) {
+        StringBuilder message = new StringBuilder("Some prices have changed since these books were added to your cart:");
+        for (Book book : validation.getRepricedBooks()) {
+            message.append("\n- ").append(book.getTitle()).append(": $").append(book.getPrice())
+                    .append(" -> $").append(validation.getCurrentPrice(book));
+        }
+        message.append("\n\nNew total: $").append(validation.getCurrentTotal()).append("\nContinue to payment?");
+        return message.toString();
+    }
+
+    private String describeFailure(CheckoutResult result) {
+        List<OrderItem> rejectedItems = result.getRejectedItems();
+        if (rejectedItems.isEmpty()) {
+            return "There was an issue processing your order. Please check stock availability.";
+        }
+        StringBuilder message = new StringBuilder("Not enough stock for:");
+        for (OrderItem item : rejectedItems) {
+            message.append("\n- ").append(item.getBook().getTitle()).append(" (").append(item.getQuantity()).append(" requested)");
         }
-        totalLabel.setText("Total: $" + total);
+        return message.toString();
     }
 
     private void setAllComponentsEnabled(boolean enabled) {
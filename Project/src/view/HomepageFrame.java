@@ -4,14 +4,16 @@ import controller.BookController;
 import controller.CartController;
 import controller.UserController;
 import model.*;
-import view.tablemodels.BookTableModel;
+import search.FacetResult;
+import view.tablemodels.LazyBookTableModel;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.*;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
 
 /**
  * The HomepageFrame serves as the primary user interface for browsing and selecting books
@@ -21,6 +23,9 @@ import java.util.concurrent.ExecutionException;
  * - Displaying a list of in-stock books.
  * - Options to add selected books to the shopping cart.
  * - Navigation buttons to view the cart, user profile, or logout.
+ * - A search field that suggests best-selling titles and authors and searches while typing. Keystrokes are
+ *   debounced, and every new search cancels the one still loading.
+ * - Category and language filters that show how many books each choice would list.
  * <p>
  * This frame interacts with various controllers (`BookController`, `CartController`, `UserController`)
  * to manage book data, cart actions, and user sessions. It is designed with a BorderLayout, showcasing
@@ -29,11 +34,14 @@ import java.util.concurrent.ExecutionException;
 
 public class HomepageFrame extends JFrame {
 
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_CACHED_PAGES = 10;
+
     private BookController bookController;
     private CartController cartController;
     private UserController userController;
     private JTable bookTable;
-    private BookTableModel tableModel;
+    private LazyBookTableModel tableModel;
     private JButton addToCartButton;
     private JButton goToCartButton;
     private JButton logoutButton;
@@ -43,8 +51,13 @@ public class HomepageFrame extends JFrame {
     private JPanel searchPanel;
     private JTextField searchField;
     private JButton searchButton;
+    private SearchSuggestionPopup suggestionPopup;
+    private Timer searchTimer;
+    private long lastKeystrokeNanos;
     private JComboBox<Category> categoryComboBox;
     private JComboBox<Language> languageComboBox;
+    private FacetResult facetCounts;
+    private int facetRequest;
 
 
     public HomepageFrame() {
@@ -80,6 +93,10 @@ public class HomepageFrame extends JFrame {
 
         // fields
         searchField = new JTextField(20);
+        suggestionPopup = new SearchSuggestionPopup(searchField, this::updateBooks);
+        searchTimer = new Timer(bookController.getSearchDebounceMillis(),
+                e -> updateBooks(searchField.getText(), lastKeystrokeNanos));
+        searchTimer.setRepeats(false);
         categoryComboBox = new JComboBox<>();
         languageComboBox = new JComboBox<>();
 
@@ -90,14 +107,31 @@ public class HomepageFrame extends JFrame {
         for (Language language : Language.values()) {
             languageComboBox.addItem(language);
         }
+        categoryComboBox.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                Object text = value != null && facetCounts != null
+                        ? value + " (" + facetCounts.getCategoryCount((Category) value) + ")" : value;
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
+        languageComboBox.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                Object text = value != null && facetCounts != null
+                        ? value + " (" + facetCounts.getLanguageCount((Language) value) + ")" : value;
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
 
 
         // table
-        tableModel = new BookTableModel(new ArrayList<>());
+        tableModel = new LazyBookTableModel(bookController, PAGE_SIZE, MAX_CACHED_PAGES);
 
         bookTable = new JTable(tableModel);
         bookTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
-        bookTable.setAutoCreateRowSorter(true);
 
         bookTable.getColumnModel().getColumn(0).setCellRenderer(bookTable.getDefaultRenderer(Boolean.class));
 
@@ -141,25 +175,20 @@ public class HomepageFrame extends JFrame {
             @Override
             public void actionPerformed(ActionEvent e) {
                 int addedCount = 0;
-                for (int viewRow = 0; viewRow < bookTable.getRowCount(); viewRow++) {
-                    Object cellValue = bookTable.getValueAt(viewRow, 0);
-                    if (cellValue == null) {
-                        continue;
-                    }
-                    boolean isSelected;
-                    isSelected = (boolean) bookTable.getValueAt(viewRow, 0);
-                    if (isSelected) {
-                        int modelRow = bookTable.convertRowIndexToModel(viewRow);
-                        Book selectedBook = tableModel.getBookAt(modelRow);
-                        if (selectedBook != null) {
-                            OrderItem orderItem = new OrderItem(0, selectedBook, 1, selectedBook.getPrice());
-                            cartController.addBookToCart(orderItem.getBook(),1);
-                            addedCount++;
-                        }
+                List<String> unavailable = new ArrayList<>();
+                for (Book selectedBook : tableModel.getSelectedBooks()) {
+                    OrderItem orderItem = new OrderItem(0, selectedBook, 1, selectedBook.getPrice());
+                    if (cartController.addBookToCart(orderItem.getBook(),1)) {
+                        addedCount++;
+                    } else {
+                        unavailable.add(selectedBook.getTitle());
                     }
                 }
 
-                if (addedCount > 0) {
+                if (!unavailable.isEmpty()) {
+                    updateBooks(null);
+                    JOptionPane.showMessageDialog(HomepageFrame.this, "No longer in stock: " + String.join(", ", unavailable));
+                } else if (addedCount > 0) {
                     updateBooks(null);
                     JOptionPane.showMessageDialog(HomepageFrame.this, "Selected books added to cart.");
                 } else {
@@ -204,7 +233,63 @@ public class HomepageFrame extends JFrame {
             }
         });
 
+        ActionListener filterListener = new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                updateBooks(searchField.getText());
+            }
+        };
+        categoryComboBox.addActionListener(filterListener);
+        languageComboBox.addActionListener(filterListener);
 
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                scheduleSearch();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                scheduleSearch();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+
+        searchField.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (!suggestionPopup.acceptSelection()) {
+                    updateBooks(searchField.getText());
+                }
+            }
+        });
+
+
+
+        bookTable.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                BookSearchCriteria criteria = tableModel.getCriteria();
+                switch (bookTable.convertColumnIndexToModel(bookTable.columnAtPoint(e.getPoint()))) {
+                    case 1:
+                        criteria.setSort(BookSearchCriteria.Sort.TITLE);
+                        break;
+                    case 2:
+                        criteria.setSort(BookSearchCriteria.Sort.AUTHOR);
+                        break;
+                    case 3:
+                        criteria.setSort(criteria.getSort() == BookSearchCriteria.Sort.PRICE_ASCENDING
+                                ? BookSearchCriteria.Sort.PRICE_DESCENDING : BookSearchCriteria.Sort.PRICE_ASCENDING);
+                        break;
+                    default:
+                        return;
+                }
+                tableModel.setCriteria(criteria);
+            }
+        });
 
         bookTable.addMouseListener(new MouseAdapter() {
             @Override
@@ -225,51 +310,75 @@ public class HomepageFrame extends JFrame {
 
     }
 
-    private void updateBooks(String query) {
-        SwingWorker<List<Book>, Void> worker = new SwingWorker<>() {
-            @Override
-            protected List<Book> doInBackground() throws Exception {
-                List<Book> allBooks = bookController.getAllBooks();
-                List<Book> booksToDisplay = new ArrayList<>();
-
-                Category selectedCategory = (Category) categoryComboBox.getSelectedItem();
-                Language selectedLanguage = (Language) languageComboBox.getSelectedItem();
-
-                for (Book book : allBooks) {
-                    if (book.getQuantity() <= 0) {
-                        continue;
-                    }
+    @Override
+    public void dispose() {
+        searchTimer.stop();
+        tableModel.detach();
+        super.dispose();
+    }
 
-                    if (query != null && !query.isEmpty() && !book.getTitle().toLowerCase().contains(query.toLowerCase())) {
-                        continue;
-                    }
+    /**
+     * Searches once typing has paused for the debounce delay; every keystroke restarts the delay.
+     */
+    private void scheduleSearch() {
+        lastKeystrokeNanos = System.nanoTime();
+        searchTimer.restart();
+    }
 
-                    if (selectedCategory != Category.VIEW_ALL && book.getCategory() != selectedCategory) {
-                        continue;
-                    }
+    private void updateBooks(String query) {
+        updateBooks(query, System.nanoTime());
+    }
 
-                    if (selectedLanguage != Language.VIEW_ALL && book.getLanguage() != selectedLanguage) {
-                        continue;
-                    }
+    /**
+     * Shows the books matching the query and the selected filters, replacing any search still loading.
+     *
+     * @param requestedAt When the search was asked for, from {@link System#nanoTime()}, for the latency
+     *                    metrics of the table model.
+     */
+    private void updateBooks(String query, long requestedAt) {
+        searchTimer.stop();
+        BookSearchCriteria criteria = new BookSearchCriteria();
+        criteria.setTitleFragment(query);
+        criteria.setCategory((Category) categoryComboBox.getSelectedItem());
+        criteria.setLanguage((Language) languageComboBox.getSelectedItem());
+        criteria.setInStockOnly(true);
+        BookSearchCriteria.Sort sort = tableModel.getCriteria().getSort();
+        if (criteria.hasTitleFragment() && sort == BookSearchCriteria.Sort.ID) {
+            sort = BookSearchCriteria.Sort.RELEVANCE;
+        } else if (!criteria.hasTitleFragment() && sort == BookSearchCriteria.Sort.RELEVANCE) {
+            sort = BookSearchCriteria.Sort.ID;
+        }
+        criteria.setSort(sort);
 
-                    booksToDisplay.add(book);
-                }
+        tableModel.setCriteria(criteria, requestedAt);
+        updateFacetCounts(criteria);
+    }
 
-                return booksToDisplay;
+    /**
+     * Recounts the books behind every category and language choice in the background and repaints the filters.
+     */
+    private void updateFacetCounts(BookSearchCriteria criteria) {
+        int request = ++facetRequest;
+        SwingWorker<FacetResult, Void> worker = new SwingWorker<>() {
+            @Override
+            protected FacetResult doInBackground() {
+                return bookController.getFacetCounts(criteria);
             }
 
             @Override
             protected void done() {
+                if (request != facetRequest) {
+                    return;
+                }
                 try {
-                    List<Book> booksToDisplay = get();
-                    tableModel.setBooks(booksToDisplay);
-
-                } catch (InterruptedException | ExecutionException e) {
-                    JOptionPane.showMessageDialog(HomepageFrame.this, "Don't look, I'm broken!");
+                    facetCounts = get();
+                    categoryComboBox.repaint();
+                    languageComboBox.repaint();
+                } catch (Exception e) {
+                    e.printStackTrace();
                 }
             }
         };
-
         worker.execute();
     }
 
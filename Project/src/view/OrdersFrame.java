@@ -2,6 +2,7 @@ package view;
 
 import controller.OrderController;
 import model.Order;
+import model.OrderItem;
 import model.SessionManager;
 
 import javax.swing.*;
@@ -9,6 +10,7 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
 import java.util.List;
 
 /***
@@ -17,6 +19,8 @@ import java.util.List;
  * Displayed in a table format, the frame shows the order ID, user ID, and order date. The content of the table varies based on the user's role.
  * <p>
  * Administrators see the last ten orders from all users, while customers see only their own order history. This distinction is managed using the `SessionManager` to determine the current user's role.
+ * <p>
+ * Customers' orders are listed as summaries; the books of an order are loaded and shown below the table only when its row is selected.
  */
 
 public class OrdersFrame extends JFrame{
@@ -24,6 +28,8 @@ public class OrdersFrame extends JFrame{
     private JPanel buttonPanel;
     private JButton refresh;
     private JTable ordersTable;
+    private JTextArea orderDetailsArea;
+    private List<Order> displayedOrders = new ArrayList<>();
     private OrderController orderController = new OrderController();
 
     public OrdersFrame() {
@@ -45,7 +51,9 @@ public class OrdersFrame extends JFrame{
         ordersPanel = new JPanel();
         refresh = new JButton("Refresh");
         ordersTable = new JTable();
-        ordersTable.setEnabled(false);
+        ordersTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        orderDetailsArea = new JTextArea(5, 40);
+        orderDetailsArea.setEditable(false);
         populateOrdersTable();
     }
 
@@ -53,6 +61,7 @@ public class OrdersFrame extends JFrame{
         ordersPanel.setLayout(new BorderLayout());
         JScrollPane scrollPane = new JScrollPane(ordersTable);
         ordersPanel.add(scrollPane, BorderLayout.CENTER);
+        ordersPanel.add(new JScrollPane(orderDetailsArea), BorderLayout.SOUTH);
         buttonPanel.setLayout(new FlowLayout());
         buttonPanel.add(refresh);
         add(ordersPanel, BorderLayout.CENTER);
@@ -66,27 +75,72 @@ public class OrdersFrame extends JFrame{
                 populateOrdersTable();
             }
         });
+
+        ordersTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                int selectedRow = ordersTable.getSelectedRow();
+                if (selectedRow >= 0 && selectedRow < displayedOrders.size()) {
+                    showOrderDetails(displayedOrders.get(selectedRow));
+                }
+            }
+        });
+    }
+
+    private void showOrderDetails(Order order) {
+        if (order.isItemsLoaded()) {
+            orderDetailsArea.setText(describeItems(order));
+            return;
+        }
+
+        orderDetailsArea.setText("Loading...");
+        SwingWorker<Void, Void> worker = new SwingWorker<>() {
+            @Override
+            protected Void doInBackground() {
+                orderController.loadOrderItems(List.of(order));
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                int selectedRow = ordersTable.getSelectedRow();
+                if (selectedRow >= 0 && selectedRow < displayedOrders.size() && displayedOrders.get(selectedRow) == order) {
+                    orderDetailsArea.setText(describeItems(order));
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    private String describeItems(Order order) {
+        StringBuilder details = new StringBuilder();
+        for (OrderItem item : order.getOrderItems()) {
+            String title = item.getBook() != null ? item.getBook().getTitle() : "Unknown book";
+            details.append(title).append(" x").append(item.getQuantity())
+                    .append(" - $").append(item.getPriceAtOrder()).append("\n");
+        }
+        return details.toString();
     }
 
     private void populateOrdersTable() {
         SwingWorker<Void, Void> worker = new SwingWorker<>() {
             DefaultTableModel model;
+            List<Order> orders = new ArrayList<>();
 
             @Override
             protected Void doInBackground() {
 
                 if (SessionManager.getInstance().getCurrentUser().getRole().equals("admin")) {
                     String[] columnNames = {"User", "Order Id", "Order Date"};
-                    model = new DefaultTableModel(columnNames, 0);
-                    List<Order> orders = orderController.getLastTenOrders();
+                    model = createReadOnlyModel(columnNames);
+                    orders = orderController.getLastTenOrders();
                     for (Order order : orders) {
                         Object[] row = new Object[]{order.getUserID(), order.getId(), order.getOrderDate()};
                         model.addRow(row);
                     }
                 } else if (SessionManager.getInstance().getCurrentUser().getRole().equals("customer")) {
                     String[] columnNames = {"Order Date", "Number of Items Bought", "Total Price"};
-                    model = new DefaultTableModel(columnNames, 0);
-                    List<Order> orders = orderController.getOrderByUserId(SessionManager.getInstance().getCurrentUser().getId());
+                    model = createReadOnlyModel(columnNames);
+                    orders = orderController.getOrderByUserId(SessionManager.getInstance().getCurrentUser().getId());
                     for (Order order : orders) {
                         Object[] row = new Object[]{order.getOrderDate(), order.getTotalQuantity(), order.getTotalPrice()};
                         model.addRow(row);
@@ -97,6 +151,8 @@ public class OrdersFrame extends JFrame{
 
             @Override
             protected void done() {
+                displayedOrders = orders;
+                orderDetailsArea.setText("");
                 ordersTable.setModel(model);
             }
         };
@@ -104,5 +160,14 @@ public class OrdersFrame extends JFrame{
         worker.execute();
     }
 
+    private DefaultTableModel createReadOnlyModel(String[] columnNames) {
+        return new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+
 
 }
@@ -0,0 +1,159 @@
+package view;
+
+import search.AutocompleteService;
+import search.Suggestion;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.event.ActionEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A suggestion list that drops down below a search field while the user types.
+ * <p>
+ * Every keystroke asks the {@link AutocompleteService} for the best-selling matching titles and authors;
+ * the lookup is served from memory, so it runs directly on the Event Dispatch Thread. The arrow keys move
+ * through the suggestions, Enter or a click accepts one and Escape closes the list. Accepting a suggestion
+ * puts its text into the field and hands it to the search callback.
+ * </p>
+ */
+
+public class SearchSuggestionPopup {
+
+    private static final int MAX_SUGGESTIONS = 8;
+
+    private final JTextField field;
+    private final Consumer<String> onSearch;
+    private final JPopupMenu popup = new JPopupMenu();
+    private final DefaultListModel<Suggestion> suggestions = new DefaultListModel<>();
+    private final JList<Suggestion> list = new JList<>(suggestions);
+    private boolean accepting;
+
+    /**
+     * @param field    The search field to complete.
+     * @param onSearch Receives the text to search for when a suggestion is accepted.
+     */
+    public SearchSuggestionPopup(JTextField field, Consumer<String> onSearch) {
+        this.field = field;
+        this.onSearch = onSearch;
+
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setFocusable(false);
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public java.awt.Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                                   boolean isSelected, boolean cellHasFocus) {
+                Suggestion suggestion = (Suggestion) value;
+                String text = suggestion.getType() == Suggestion.Type.AUTHOR
+                        ? suggestion.getText() + " (author)" : suggestion.getText();
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
+        popup.setFocusable(false);
+        popup.add(new JScrollPane(list));
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                update();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                update();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                update();
+            }
+        });
+
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = list.locationToIndex(e.getPoint());
+                if (index >= 0) {
+                    accept(suggestions.get(index));
+                }
+            }
+        });
+
+        bindKey("DOWN", "suggestion-next", () -> move(1));
+        bindKey("UP", "suggestion-previous", () -> move(-1));
+        bindKey("ESCAPE", "suggestion-close", () -> popup.setVisible(false));
+
+        if (AutocompleteService.isEnabled()) {
+            // Start building the suggestions in the background before the first keystroke.
+            AutocompleteService.getInstance();
+        }
+    }
+
+    /**
+     * Accepts the highlighted suggestion, if the list is open and one is highlighted.
+     *
+     * @return true if a suggestion was accepted.
+     */
+    public boolean acceptSelection() {
+        if (popup.isVisible() && list.getSelectedValue() != null) {
+            accept(list.getSelectedValue());
+            return true;
+        }
+        popup.setVisible(false);
+        return false;
+    }
+
+    private void update() {
+        if (accepting || !AutocompleteService.isEnabled()) {
+            return;
+        }
+        List<Suggestion> found = AutocompleteService.getInstance().suggest(field.getText(), MAX_SUGGESTIONS);
+        suggestions.clear();
+        for (Suggestion suggestion : found) {
+            suggestions.addElement(suggestion);
+        }
+        if (found.isEmpty() || !field.isShowing()) {
+            popup.setVisible(false);
+            return;
+        }
+        list.setVisibleRowCount(found.size());
+        popup.setPopupSize(field.getWidth(), list.getPreferredScrollableViewportSize().height + 6);
+        popup.show(field, 0, field.getHeight());
+        field.requestFocusInWindow();
+    }
+
+    private void move(int step) {
+        if (!popup.isVisible() || suggestions.isEmpty()) {
+            return;
+        }
+        int current = list.getSelectedIndex();
+        int index = current < 0 ? (step > 0 ? 0 : suggestions.size() - 1) : Math.floorMod(current + step, suggestions.size());
+        list.setSelectedIndex(index);
+        list.ensureIndexIsVisible(index);
+    }
+
+    private void accept(Suggestion suggestion) {
+        popup.setVisible(false);
+        accepting = true;
+        try {
+            field.setText(suggestion.getText());
+        } finally {
+            accepting = false;
+        }
+        onSearch.accept(suggestion.getText());
+    }
+
+    private void bindKey(String key, String name, Runnable action) {
+        field.getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(key), name);
+        field.getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+}
@@ -1,7 +1,13 @@
 package view.tablemodels;
 
-import database.BookDAO;
+import controller.CartController;
+import event.CartChangeEvent;
+import event.CartChangeListener;
 import model.Book;
+import model.BookAvailability;
+import model.Cart;
+import model.CartValidation;
+
 import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
 import java.util.ArrayList;
@@ -15,22 +21,79 @@ import java.util.Map;
  * This model extends the {@link AbstractTableModel} and provides columns for the book title, price, and quantity.
  * Users can edit the quantity column to change the number of copies for a particular book in the cart.
  * </p>
- *
+ * The model follows the cart through {@link CartChangeEvent}s and fires row inserted, updated and deleted
+ * events for the affected line only. Call {@link #detach()} when the table is closed.
+ * The availability column shows the outcome of the last {@link CartValidation}, if any.
  */
-public class CartTableModel extends AbstractTableModel {
-    private String[] columnNames = {"Book Title", "Price", "Quantity"};
-    private List<Book> books;
-    private Map<Book, Integer> quantities;
+public class CartTableModel extends AbstractTableModel implements CartChangeListener {
+    private String[] columnNames = {"Book Title", "Price", "Quantity", "Availability"};
+    private final CartController cartController;
+    private final Cart cart;
+    private final List<Book> books = new ArrayList<>();
+    private final List<Integer> quantities = new ArrayList<>();
+    private CartValidation validation;
 
 
     /**
-     * Constructs a new {@code CartTableModel} with the specified cart items.
+     * Constructs a new {@code CartTableModel} that shows and edits the cart of the given controller.
      *
-     * @param cartItems a map containing books as keys and their respective quantities as values
+     * @param cartController the controller owning the cart
+     */
+    public CartTableModel(CartController cartController) {
+        this.cartController = cartController;
+        this.cart = cartController.getCart();
+        // Take the initial rows and subscribe atomically, so no change is missed or applied twice.
+        synchronized (cart) {
+            for (Map.Entry<Book, Integer> item : cart.getItems().entrySet()) {
+                books.add(item.getKey());
+                quantities.add(item.getValue());
+            }
+            cart.addCartChangeListener(this);
+        }
+    }
+
+    /**
+     * Stops following the cart.
      */
-    public CartTableModel(Map<Book, Integer> cartItems) {
-        this.books = new ArrayList<>(cartItems.keySet());
-        this.quantities = cartItems;
+    public void detach() {
+        cart.removeCartChangeListener(this);
+    }
+
+    /**
+     * Queues the change on the event dispatch thread, even when it is fired there. The events carry row
+     * indexes, so they are applied strictly in the order the cart fired them, which a change made on the
+     * event dispatch thread could otherwise overtake.
+     */
+    @Override
+    public void cartChanged(CartChangeEvent event) {
+        SwingUtilities.invokeLater(() -> apply(event));
+    }
+
+    private void apply(CartChangeEvent event) {
+        int index = event.getIndex();
+        switch (event.getType()) {
+            case ADDED:
+                books.add(index, event.getBook());
+                quantities.add(index, event.getQuantity());
+                fireTableRowsInserted(index, index);
+                break;
+            case UPDATED:
+            case MOVED:
+                books.set(index, event.getBook());
+                quantities.set(index, event.getQuantity());
+                fireTableRowsUpdated(index, index);
+                break;
+            case REMOVED:
+                books.remove(index);
+                quantities.remove(index);
+                fireTableRowsDeleted(index, index);
+                break;
+            default:
+                books.clear();
+                quantities.clear();
+                fireTableDataChanged();
+                break;
+        }
     }
 
     @Override
@@ -52,7 +115,9 @@ public class CartTableModel extends AbstractTableModel {
             case 1:
                 return book.getPrice();
             case 2:
-                return quantities.get(book);
+                return quantities.get(rowIndex);
+            case 3:
+                return describeAvailability(book, quantities.get(rowIndex));
             default:
                 return null;
         }
@@ -75,19 +140,46 @@ public class CartTableModel extends AbstractTableModel {
 
             try {
                 int enteredQuantity = Integer.parseInt(String.valueOf(value));
-                if (!BookDAO.isBookInStock(book.getId(), enteredQuantity)) {
-                    JOptionPane.showMessageDialog(null, "Entered quantity exceeds available stock. Available quantity: " + book.getQuantity());
+                if (enteredQuantity <= 0) {
+                    JOptionPane.showMessageDialog(null, "Whoops! Invalid input!");
                     return;
                 }
-
-                quantities.put(book, enteredQuantity);
-                fireTableCellUpdated(row, col);
+                if (!cartController.setBookQuantity(book, enteredQuantity)) {
+                    JOptionPane.showMessageDialog(null, "Entered quantity exceeds available stock.");
+                }
             } catch (NumberFormatException e) {
                JOptionPane.showMessageDialog(null, "Whoops! Invalid input!");
             }
         }
     }
 
+    /**
+     * Shows the result of a background stock and price check.
+     */
+    public void setValidation(CartValidation validation) {
+        this.validation = validation;
+        if (!books.isEmpty()) {
+            fireTableRowsUpdated(0, books.size() - 1);
+        }
+    }
+
+    private String describeAvailability(Book book, int quantity) {
+        if (validation == null) {
+            return "Checking...";
+        }
+        BookAvailability availability = validation.getAvailability(book.getId());
+        if (availability == null) {
+            return "No longer available";
+        }
+        if (availability.getAvailable() < quantity) {
+            return availability.getAvailable() <= 0 ? "Out of stock" : "Only " + availability.getAvailable() + " left";
+        }
+        if (validation.isRepriced(book)) {
+            return "Price now $" + availability.getPrice();
+        }
+        return "In stock";
+    }
+
     public Book getBookAt(int rowIndex) {
         return books.get(rowIndex);
     }
@@ -0,0 +1,564 @@
+package view.tablemodels;
+
+import controller.BookController;
+import database.CancellationToken;
+import database.CatalogCache;
+import event.CatalogChangeEvent;
+import event.CatalogChangeListener;
+import model.Book;
+import model.BookSearchCriteria;
+import model.Category;
+import model.Language;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A virtualized variant of {@link BookTableModel} for large catalogs.
+ * <p>
+ * Instead of holding every matching book, the model only knows the number of matching rows and loads
+ * fixed-size pages on demand when the table asks for a row that is not in memory. Pages are fetched
+ * with keyset pagination, using the last book of the previous page as the position, and the next page
+ * is prefetched in the background. At most {@code maxCachedPages} pages are kept; the least recently
+ * used ones are dropped and reloaded when scrolled back into view.
+ * </p>
+ * Rows that are not loaded yet show a placeholder title. Selection is tracked by book id, so it
+ * survives pages being evicted and reloaded.
+ * <p>
+ * Each query gets a {@link CancellationToken}. A new query cancels the loads of the previous one, including
+ * their database statements, and results of superseded loads are dropped, so only the latest query is ever
+ * shown. The time from the request of a query, such as the keystroke that caused it, until its first page
+ * has been painted is recorded for monitoring.
+ * </p>
+ * <p>
+ * The model follows the {@link CatalogChangeEvent}s of the {@link CatalogCache}, so stock and prices written
+ * by other customers show up while the table is open. Changes to the books on loaded pages are collected
+ * from any thread and applied on the Event Dispatch Thread at most once per {@code FRAME_MILLIS}, firing
+ * row updated and deleted events for the affected rows only; selection and scroll position are kept.
+ * Changed books stay in place even if they no longer match the filters, and books added elsewhere appear
+ * on the next search. Call {@link #detach()} when the table is closed.
+ * </p>
+ * All other state is confined to the Event Dispatch Thread.
+ */
+public class LazyBookTableModel extends AbstractTableModel implements CatalogChangeListener {
+
+    private static final String LOADING = "Loading...";
+    private static final int FRAME_MILLIS = 16;
+
+    private final String[] columnNames = {"Selected", "Title", "Author", "Price", "Language", "Category"};
+    private final BookController bookController;
+    private final int pageSize;
+    private final int maxCachedPages;
+
+    private final LinkedHashMap<Integer, List<Book>> pages;
+    private final Map<Integer, Book> lastBookOfPage = new HashMap<>();
+    private final Set<Integer> pagesInFlight = new HashSet<>();
+    private final Map<Integer, Book> selectedBooks = new LinkedHashMap<>();
+
+    private BookSearchCriteria criteria = new BookSearchCriteria();
+    private int rowCount;
+    private int generation;
+    private CancellationToken token = new CancellationToken();
+    private boolean firstPagePending;
+
+    private long completedQueries;
+    private long supersededQueries;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+    private long lastLatencyNanos;
+    private long lastQueryNanos;
+
+    // Written by the Event Dispatch Thread, read by the threads that publish catalog changes.
+    private volatile Set<Integer> shownIds = Collections.emptySet();
+    private final Map<Integer, Book> pendingUpdates = new HashMap<>();
+    private final Set<Integer> pendingDeletions = new HashSet<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Timer flushTimer;
+
+    public LazyBookTableModel(BookController bookController, int pageSize, int maxCachedPages) {
+        this.bookController = bookController;
+        this.pageSize = pageSize;
+        this.maxCachedPages = Math.max(2, maxCachedPages);
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Book>> eldest) {
+                return size() > LazyBookTableModel.this.maxCachedPages;
+            }
+        };
+        this.flushTimer = new Timer(FRAME_MILLIS, e -> flushChanges());
+        flushTimer.setRepeats(false);
+        CatalogCache.getInstance().addCatalogChangeListener(this);
+    }
+
+    /**
+     * Stops following the catalog.
+     */
+    public void detach() {
+        CatalogCache.getInstance().removeCatalogChangeListener(this);
+        flushTimer.stop();
+        token.cancel();
+    }
+
+    @Override
+    public void catalogChanged(CatalogChangeEvent event) {
+        Set<Integer> shown = shownIds;
+        boolean relevant = false;
+        synchronized (pendingUpdates) {
+            switch (event.getType()) {
+                case LOADED:
+                    for (Book book : event.getBooks()) {
+                        if (shown.contains(book.getId())) {
+                            pendingUpdates.put(book.getId(), book);
+                            pendingDeletions.remove(book.getId());
+                            relevant = true;
+                        }
+                    }
+                    break;
+                case DELETED:
+                    for (Integer id : event.getBookIds()) {
+                        if (shown.contains(id)) {
+                            pendingDeletions.add(id);
+                            pendingUpdates.remove(id);
+                            relevant = true;
+                        }
+                    }
+                    break;
+                default:
+                    // Written books are published as loaded once they have been read again.
+                    break;
+            }
+        }
+        if (relevant && flushScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(flushTimer::restart);
+        }
+    }
+
+    /**
+     * Replaces the query behind the table. The row count and the first page are loaded in the background;
+     * the table is emptied until they arrive.
+     *
+     * @param criteria The filters and sort order of the rows to show.
+     */
+    public void setCriteria(BookSearchCriteria criteria) {
+        setCriteria(criteria, System.nanoTime());
+    }
+
+    /**
+     * Replaces the query behind the table, cancelling everything still loading for the previous query.
+     *
+     * @param criteria    The filters and sort order of the rows to show.
+     * @param requestedAt When the query was asked for, from {@link System#nanoTime()}; the latency of the
+     *                    query is measured from there.
+     */
+    public void setCriteria(BookSearchCriteria criteria, long requestedAt) {
+        token.cancel();
+        if (firstPagePending) {
+            supersededQueries++;
+        }
+        token = new CancellationToken();
+        firstPagePending = true;
+        this.criteria = new BookSearchCriteria(criteria);
+        int requestGeneration = ++generation;
+        pages.clear();
+        lastBookOfPage.clear();
+        pagesInFlight.clear();
+        selectedBooks.clear();
+        rowCount = 0;
+        updateShownIds();
+        fireTableDataChanged();
+
+        BookSearchCriteria query = this.criteria;
+        CancellationToken requestToken = token;
+        pagesInFlight.add(0);
+        SwingWorker<List<Book>, Void> worker = new SwingWorker<>() {
+            private int count;
+            private long queryNanos;
+
+            @Override
+            protected List<Book> doInBackground() {
+                long start = System.nanoTime();
+                count = bookController.countBooks(query, requestToken);
+                List<Book> firstPage = bookController.getBooksAfter(query, null, pageSize, requestToken);
+                queryNanos = System.nanoTime() - start;
+                return firstPage;
+            }
+
+            @Override
+            protected void done() {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                pagesInFlight.remove(0);
+                firstPagePending = false;
+                try {
+                    List<Book> firstPage = get();
+                    rowCount = Math.max(count, firstPage.size());
+                    storePage(0, firstPage);
+                    fireTableDataChanged();
+                    // Runs after the repaint requested by the event above.
+                    SwingUtilities.invokeLater(() -> recordLatency(requestedAt, queryNanos));
+                } catch (Exception e) {
+                    report(e);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    public BookSearchCriteria getCriteria() {
+        return new BookSearchCriteria(criteria);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        Book book = getBookAt(rowIndex);
+        if (book == null) {
+            return columnIndex == 1 ? LOADING : null;
+        }
+        switch (columnIndex) {
+            case 0: return book.getQuantity() <= 0 ? null : selectedBooks.containsKey(book.getId());
+            case 1: return book.getTitle();
+            case 2: return book.getAuthor();
+            case 3: return book.getPrice();
+            case 4: return book.getLanguage().getDisplayName();
+            case 5: return book.getCategory() == null ? null : book.getCategory().toString();
+            default: return null;
+        }
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        switch (columnIndex) {
+            case 0: return Boolean.class;
+            case 1, 2: return String.class;
+            case 3: return Double.class;
+            case 4: return Language.class;
+            case 5: return Category.class;
+            default: return Object.class;
+        }
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        if (columnIndex != 0) {
+            return false;
+        }
+        Book book = getBookAt(rowIndex);
+        return book != null && book.getQuantity() > 0;
+    }
+
+    @Override
+    public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
+        Book book = getBookAt(rowIndex);
+        if (columnIndex == 0 && aValue instanceof Boolean && book != null) {
+            if ((Boolean) aValue) {
+                selectedBooks.put(book.getId(), book);
+            } else {
+                selectedBooks.remove(book.getId());
+            }
+            fireTableCellUpdated(rowIndex, columnIndex);
+        }
+    }
+
+    /**
+     * Returns the book shown in the given row, or null if its page is still loading.
+     * Asking for a row of a page that is not in memory schedules that page to load.
+     */
+    public Book getBookAt(int rowIndex) {
+        int pageIndex = rowIndex / pageSize;
+        List<Book> page = pages.get(pageIndex);
+        if (page == null) {
+            requestPage(pageIndex);
+            return null;
+        }
+        if (rowIndex % pageSize == 0 || rowIndex % pageSize == pageSize - 1) {
+            prefetch(pageIndex + 1);
+        }
+        int offsetInPage = rowIndex % pageSize;
+        return offsetInPage < page.size() ? page.get(offsetInPage) : null;
+    }
+
+    /**
+     * @return The books whose "Selected" box is ticked, in the order they were selected.
+     */
+    public List<Book> getSelectedBooks() {
+        return new ArrayList<>(selectedBooks.values());
+    }
+
+    public void clearSelection() {
+        selectedBooks.clear();
+        if (rowCount > 0) {
+            fireTableRowsUpdated(0, rowCount - 1);
+        }
+    }
+
+    private void prefetch(int pageIndex) {
+        if ((long) pageIndex * pageSize < rowCount && !pages.containsKey(pageIndex)) {
+            requestPage(pageIndex);
+        }
+    }
+
+    private void requestPage(int pageIndex) {
+        if (pagesInFlight.contains(pageIndex)) {
+            return;
+        }
+        pagesInFlight.add(pageIndex);
+
+        int requestGeneration = generation;
+        BookSearchCriteria query = criteria;
+        CancellationToken requestToken = token;
+        Book previousPageEnd = pageIndex == 0 ? null : lastBookOfPage.get(pageIndex - 1);
+        boolean useKeyset = pageIndex == 0 || previousPageEnd != null && !bookController.pagesByPosition(query);
+
+        SwingWorker<List<Book>, Void> worker = new SwingWorker<>() {
+            @Override
+            protected List<Book> doInBackground() {
+                return useKeyset
+                        ? bookController.getBooksAfter(query, previousPageEnd, pageSize, requestToken)
+                        : bookController.getBooksAt(query, pageIndex * pageSize, pageSize, requestToken);
+            }
+
+            @Override
+            protected void done() {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                pagesInFlight.remove(pageIndex);
+                try {
+                    List<Book> page = get();
+                    storePage(pageIndex, page);
+                    int firstRow = pageIndex * pageSize;
+                    if (page.size() < pageSize && firstRow + page.size() < rowCount) {
+                        // The catalog shrank since the count was taken; the table ends with this page.
+                        rowCount = firstRow + page.size();
+                        fireTableDataChanged();
+                        return;
+                    }
+                    int lastRow = Math.min(rowCount, firstRow + pageSize) - 1;
+                    if (lastRow >= firstRow) {
+                        fireTableRowsUpdated(firstRow, lastRow);
+                    }
+                } catch (Exception e) {
+                    report(e);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    private void recordLatency(long requestedAt, long queryNanos) {
+        long latency = System.nanoTime() - requestedAt;
+        completedQueries++;
+        totalLatencyNanos += latency;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+        lastLatencyNanos = latency;
+        lastQueryNanos = queryNanos;
+    }
+
+    /**
+     * Prints the failure of a load, unless it failed because its query was cancelled.
+     */
+    private static void report(Exception e) {
+        Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+        if (!(cause instanceof CancellationException)) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return The number of queries whose first page was shown.
+     */
+    public long getCompletedQueryCount() {
+        return completedQueries;
+    }
+
+    /**
+     * @return The number of queries replaced by a newer one before their first page arrived.
+     */
+    public long getSupersededQueryCount() {
+        return supersededQueries;
+    }
+
+    /**
+     * @return The average time from requesting a query until its first page was painted.
+     */
+    public double getAverageLatencyMillis() {
+        return completedQueries == 0 ? 0.0 : totalLatencyNanos / (completedQueries * 1_000_000.0);
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos / 1_000_000.0;
+    }
+
+    public double getLastLatencyMillis() {
+        return lastLatencyNanos / 1_000_000.0;
+    }
+
+    /**
+     * @return How long the count and first page of the last shown query took to load, part of its latency.
+     */
+    public double getLastQueryMillis() {
+        return lastQueryNanos / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LazyBookTableModel[rows=%d, queries=%d, superseded=%d, avgLatency=%.1fms, "
+                        + "maxLatency=%.1fms, lastLatency=%.1fms, lastQuery=%.1fms]",
+                rowCount, completedQueries, supersededQueries, getAverageLatencyMillis(), getMaxLatencyMillis(),
+                getLastLatencyMillis(), getLastQueryMillis());
+    }
+
+    private void storePage(int pageIndex, List<Book> page) {
+        pages.put(pageIndex, new ArrayList<>(page));
+        if (!page.isEmpty()) {
+            lastBookOfPage.put(pageIndex, page.get(page.size() - 1));
+        }
+        updateShownIds();
+    }
+
+    /**
+     * Publishes the ids of the books on loaded pages, so only changes to those are collected.
+     */
+    private void updateShownIds() {
+        Set<Integer> ids = new HashSet<>();
+        for (List<Book> page : pages.values()) {
+            for (Book book : page) {
+                ids.add(book.getId());
+            }
+        }
+        shownIds = ids;
+    }
+
+    /**
+     * Applies the changes collected since the last frame to the loaded pages.
+     */
+    private void flushChanges() {
+        Map<Integer, Book> updates;
+        Set<Integer> deletions;
+        synchronized (pendingUpdates) {
+            flushScheduled.set(false);
+            updates = new HashMap<>(pendingUpdates);
+            deletions = new HashSet<>(pendingDeletions);
+            pendingUpdates.clear();
+            pendingDeletions.clear();
+        }
+
+        List<Integer> updatedRows = new ArrayList<>();
+        List<Integer> deletedRows = new ArrayList<>();
+        for (Map.Entry<Integer, List<Book>> entry : pages.entrySet()) {
+            List<Book> page = entry.getValue();
+            int firstRow = entry.getKey() * pageSize;
+            for (int i = 0; i < page.size(); i++) {
+                Book shown = page.get(i);
+                Book current = updates.get(shown.getId());
+                if (deletions.contains(shown.getId())) {
+                    deletedRows.add(firstRow + i);
+                } else if (current != null && !sameRow(shown, current)) {
+                    page.set(i, current);
+                    updatedRows.add(firstRow + i);
+                }
+            }
+        }
+        for (Book current : updates.values()) {
+            if (selectedBooks.containsKey(current.getId())) {
+                if (current.getQuantity() > 0) {
+                    selectedBooks.put(current.getId(), current);
+                } else {
+                    selectedBooks.remove(current.getId());
+                }
+            }
+        }
+        selectedBooks.keySet().removeAll(deletions);
+
+        updatedRows.sort(null);
+        for (int i = 0; i < updatedRows.size(); ) {
+            int first = updatedRows.get(i);
+            int last = first;
+            while (++i < updatedRows.size() && updatedRows.get(i) == last + 1) {
+                last++;
+            }
+            fireTableRowsUpdated(first, last);
+        }
+        deletedRows.sort(Collections.reverseOrder());
+        for (int row : deletedRows) {
+            removeRow(row);
+            fireTableRowsDeleted(row, row);
+        }
+        if (!deletedRows.isEmpty()) {
+            updateShownIds();
+        }
+    }
+
+    /**
+     * Removes a row from its page and moves the following loaded rows up by one, pulling the first book of
+     * each following loaded page into the end of the page before it.
+     */
+    private void removeRow(int row) {
+        int pageIndex = row / pageSize;
+        List<Book> removedFrom = pages.get(pageIndex);
+        rowCount--;
+        if (removedFrom == null) {
+            // Dropped by a removal further down in the same flush: the row is gone with it, and the pages
+            // after it no longer start where they did.
+            pages.keySet().removeIf(index -> index > pageIndex);
+            lastBookOfPage.keySet().removeIf(index -> index >= pageIndex);
+            return;
+        }
+        removedFrom.remove(row % pageSize);
+        int last = pageIndex;
+        while (pages.containsKey(last + 1) && !pages.get(last + 1).isEmpty()) {
+            pages.get(last).add(pages.get(last + 1).remove(0));
+            last++;
+        }
+        for (int index = pageIndex; index <= last; index++) {
+            List<Book> page = pages.get(index);
+            if (!page.isEmpty()) {
+                lastBookOfPage.put(index, page.get(page.size() - 1));
+            }
+        }
+        List<Book> tail = pages.get(last);
+        int firstStale = tail.isEmpty() || (long) last * pageSize + tail.size() < rowCount ? last : last + 1;
+        // A short page is reloaded from the book before it when shown again, and pages after a gap start one
+        // book later than before.
+        pages.keySet().removeIf(index -> index >= firstStale);
+        lastBookOfPage.keySet().removeIf(index -> index >= firstStale);
+    }
+
+    /**
+     * @return true if the table would show the same values for both copies of a book.
+     */
+    private static boolean sameRow(Book shown, Book current) {
+        return shown.getQuantity() == current.getQuantity() && shown.getPrice() == current.getPrice()
+                && Objects.equals(shown.getTitle(), current.getTitle())
+                && Objects.equals(shown.getAuthor(), current.getAuthor())
+                && shown.getLanguage() == current.getLanguage() && shown.getCategory() == current.getCategory();
+    }
+}